@@ -0,0 +1,34 @@
+-- Home timeline (fan-out-on-write): one row per (reader, post)
+CREATE TABLE IF NOT EXISTS timeline_entries (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    post_id UUID NOT NULL REFERENCES posts(id) ON DELETE CASCADE,
+    author_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    created_at TIMESTAMP NOT NULL,
+    UNIQUE(user_id, post_id)
+);
+
+-- Feed reads are a range scan on (user_id, created_at)
+CREATE INDEX IF NOT EXISTS idx_timeline_user_created ON timeline_entries(user_id, created_at, post_id);
+CREATE INDEX IF NOT EXISTS idx_timeline_post ON timeline_entries(post_id);
+CREATE INDEX IF NOT EXISTS idx_timeline_user_author ON timeline_entries(user_id, author_id);
+
+-- Backfill: author's own posts
+INSERT INTO timeline_entries (user_id, post_id, author_id, created_at)
+SELECT p.user_id, p.id, p.user_id, p.created_at
+FROM posts p
+WHERE p.is_deleted = FALSE
+ON CONFLICT (user_id, post_id) DO NOTHING;
+
+-- Backfill: friends' posts (both directions of the friends table)
+INSERT INTO timeline_entries (user_id, post_id, author_id, created_at)
+SELECT f.user_b, p.id, p.user_id, p.created_at
+FROM posts p JOIN friends f ON f.user_a = p.user_id
+WHERE p.is_deleted = FALSE
+ON CONFLICT (user_id, post_id) DO NOTHING;
+
+INSERT INTO timeline_entries (user_id, post_id, author_id, created_at)
+SELECT f.user_a, p.id, p.user_id, p.created_at
+FROM posts p JOIN friends f ON f.user_b = p.user_id
+WHERE p.is_deleted = FALSE
+ON CONFLICT (user_id, post_id) DO NOTHING;
@@ -0,0 +1,4 @@
+-- Keyset (cursor) pagination on (created_at, id): newest-first range scans without OFFSET
+CREATE INDEX IF NOT EXISTS idx_posts_user_deleted_created_id ON posts(user_id, is_deleted, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_posts_visibility_deleted_created_id ON posts(visibility, is_deleted, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_posts_deleted_created_id ON posts(is_deleted, created_at, id);
@@ -0,0 +1,9 @@
+-- Denormalized counters: feed không còn phải đếm post_reactions / comments mỗi lần render
+ALTER TABLE posts
+    ADD COLUMN IF NOT EXISTS reaction_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS comment_count BIGINT NOT NULL DEFAULT 0;
+
+-- Backfill từ dữ liệu hiện có
+UPDATE posts p
+SET reaction_count = (SELECT COUNT(*) FROM post_reactions r WHERE r.post_id = p.id),
+    comment_count = (SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id AND c.is_deleted = FALSE);
@@ -0,0 +1,4 @@
+-- Preview reactions mới nhất theo từng post (row_number() OVER (PARTITION BY post_id ORDER BY created_at DESC))
+CREATE INDEX IF NOT EXISTS idx_post_reactions_post_created ON post_reactions(post_id, created_at);
+-- hasReacted cho cả trang feed: WHERE user_id = ? AND post_id IN (...)
+CREATE INDEX IF NOT EXISTS idx_post_reactions_user_post ON post_reactions(user_id, post_id);
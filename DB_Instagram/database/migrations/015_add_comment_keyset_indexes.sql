@@ -0,0 +1,4 @@
+-- Keyset pagination cho comments gốc: WHERE post_id = ? AND parent_comment IS NULL ORDER BY created_at DESC, id DESC
+CREATE INDEX IF NOT EXISTS idx_comments_post_parent_created_id ON comments(post_id, parent_comment, created_at, id);
+-- Replies theo thứ tự cũ nhất trước + COUNT replies GROUP BY parent_comment
+CREATE INDEX IF NOT EXISTS idx_comments_parent_created_id ON comments(parent_comment, created_at, id);
@@ -0,0 +1,32 @@
+-- Inbox state per (user, peer): last message + unread counter, maintained on send / read / delete
+CREATE TABLE IF NOT EXISTS conversation_state (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    peer_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    last_message_id UUID REFERENCES messages(id) ON DELETE SET NULL,
+    last_message_at TIMESTAMP,
+    unread_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE(user_id, peer_id)
+);
+
+-- Inbox is a single range scan on (user_id, last_message_at)
+CREATE INDEX IF NOT EXISTS idx_conversation_state_user_last ON conversation_state(user_id, last_message_at DESC, peer_id);
+
+-- Backfill: latest message per (user, peer) in both directions, unread = messages from peer not yet read
+INSERT INTO conversation_state (user_id, peer_id, last_message_id, last_message_at, unread_count, updated_at)
+SELECT c.user_id, c.peer_id, c.id, c.created_at,
+       (SELECT COUNT(*) FROM messages u
+        WHERE u.to_user = c.user_id AND u.from_user = c.peer_id AND u.is_read = FALSE),
+       CURRENT_TIMESTAMP
+FROM (
+    SELECT DISTINCT ON (x.user_id, x.peer_id) x.user_id, x.peer_id, x.id, x.created_at
+    FROM (
+        SELECT m.from_user AS user_id, m.to_user AS peer_id, m.id, m.created_at FROM messages m
+        UNION ALL
+        SELECT m.to_user AS user_id, m.from_user AS peer_id, m.id, m.created_at FROM messages m
+        WHERE m.from_user <> m.to_user
+    ) x
+    ORDER BY x.user_id, x.peer_id, x.created_at DESC, x.id DESC
+) c
+ON CONFLICT (user_id, peer_id) DO NOTHING;
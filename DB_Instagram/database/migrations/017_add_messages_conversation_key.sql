@@ -0,0 +1,9 @@
+-- Canonical key of a DM thread: "<smaller uuid>:<larger uuid>" (same rule as Messages.conversationKey)
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS conversation_key VARCHAR(73);
+
+UPDATE messages
+SET conversation_key = LEAST(from_user::text, to_user::text) || ':' || GREATEST(from_user::text, to_user::text)
+WHERE conversation_key IS NULL;
+
+-- History pages are a range scan on (conversation_key, created_at, id) in either direction
+CREATE INDEX IF NOT EXISTS idx_messages_conversation_created_id ON messages(conversation_key, created_at, id);
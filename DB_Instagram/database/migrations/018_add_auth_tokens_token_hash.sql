@@ -0,0 +1,15 @@
+-- Refresh token được tra cứu theo SHA-256 hex (64 ký tự) thay vì so sánh cả chuỗi JWT trong cột TEXT
+ALTER TABLE auth_tokens ADD COLUMN IF NOT EXISTS token_hash CHAR(64);
+
+UPDATE auth_tokens
+SET token_hash = encode(sha256(convert_to(token, 'UTF8')), 'hex')
+WHERE token_hash IS NULL AND token IS NOT NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_auth_tokens_token_hash ON auth_tokens(token_hash);
+
+-- Token mới chỉ lưu hash, không lưu JWT gốc
+ALTER TABLE auth_tokens ALTER COLUMN token DROP NOT NULL;
+UPDATE auth_tokens SET token = NULL WHERE token_hash IS NOT NULL;
+
+-- Giới hạn số token active mỗi user: scan (user_id, revoked) theo created_at mới nhất trước
+CREATE INDEX IF NOT EXISTS idx_auth_tokens_user_active_created ON auth_tokens(user_id, revoked, created_at DESC);
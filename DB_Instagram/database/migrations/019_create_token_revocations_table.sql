@@ -0,0 +1,10 @@
+-- Watermark thu hồi access token theo user: mọi token có iat trước revoked_before bị từ chối.
+-- Tách khỏi auth_tokens vì job purge xóa token đã revoke sau 24h, còn watermark phải giữ tới khi access token cũ hết hạn.
+CREATE TABLE IF NOT EXISTS token_revocations (
+    user_id UUID PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    revoked_before TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Node mới khởi động / các node polling chỉ đọc các watermark thay đổi gần đây
+CREATE INDEX IF NOT EXISTS idx_token_revocations_updated_at ON token_revocations(updated_at);
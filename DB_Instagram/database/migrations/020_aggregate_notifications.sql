@@ -0,0 +1,65 @@
+-- Notification gộp: post_reaction / comment chỉ còn 1 dòng cho mỗi (user_id, type, object_id = post),
+-- giữ số người tác động và vài actor gần nhất ("A, B và 12 người khác đã thích bài viết của bạn")
+ALTER TABLE notifications
+    ADD COLUMN IF NOT EXISTS object_id UUID,
+    ADD COLUMN IF NOT EXISTS group_object_id UUID,
+    ADD COLUMN IF NOT EXISTS actor_count INT NOT NULL DEFAULT 1,
+    ADD COLUMN IF NOT EXISTS recent_actor_ids TEXT;
+
+-- Gộp các dòng cũ (1 dòng / actor / sự kiện) theo postId trong payload.
+-- Lấy postId bằng regex thay vì payload::json: payload cũ được ghép chuỗi tay, 1 dòng không phải JSON hợp lệ
+-- sẽ làm hỏng cả migration; dòng không tìm được postId thì giữ nguyên
+CREATE TEMP TABLE notification_group_backfill AS
+WITH legacy AS (
+    SELECT id, user_id, type, actor_id, is_read, created_at, post_id AS object_id
+    FROM (
+        SELECT id, user_id, type, actor_id, is_read, created_at, object_id,
+               CAST(substring(payload::text FROM '"postId":"([0-9a-fA-F-]{36})"') AS UUID) AS post_id
+        FROM notifications
+        WHERE type IN ('post_reaction', 'comment')
+    ) parsed
+    WHERE object_id IS NULL
+      AND post_id IS NOT NULL
+),
+actor_latest AS (
+    SELECT user_id, type, object_id, actor_id, MAX(created_at) AS last_at,
+           ROW_NUMBER() OVER (PARTITION BY user_id, type, object_id ORDER BY MAX(created_at) DESC) AS actor_rank
+    FROM legacy
+    GROUP BY user_id, type, object_id, actor_id
+),
+keeper AS (
+    SELECT DISTINCT ON (user_id, type, object_id) id, user_id, type, object_id
+    FROM legacy
+    ORDER BY user_id, type, object_id, created_at DESC, id DESC
+)
+SELECT k.id AS keeper_id, k.user_id, k.type, k.object_id,
+       (SELECT COUNT(DISTINCT l.actor_id) FROM legacy l
+        WHERE l.user_id = k.user_id AND l.type = k.type AND l.object_id = k.object_id) AS actor_count,
+       (SELECT BOOL_AND(l.is_read) FROM legacy l
+        WHERE l.user_id = k.user_id AND l.type = k.type AND l.object_id = k.object_id) AS is_read,
+       (SELECT string_agg(a.actor_id::text, ',' ORDER BY a.last_at DESC) FROM actor_latest a
+        WHERE a.user_id = k.user_id AND a.type = k.type AND a.object_id = k.object_id AND a.actor_rank <= 3) AS recent_actor_ids
+FROM keeper k;
+
+UPDATE notifications n
+SET object_id = b.object_id,
+    group_object_id = b.object_id,
+    actor_count = GREATEST(b.actor_count, 1),
+    recent_actor_ids = b.recent_actor_ids,
+    is_read = COALESCE(b.is_read, FALSE)
+FROM notification_group_backfill b
+WHERE n.id = b.keeper_id;
+
+DELETE FROM notifications n
+USING notification_group_backfill b
+WHERE n.user_id = b.user_id
+  AND n.type = b.type
+  AND n.object_id IS NULL
+  AND lower(substring(n.payload::text FROM '"postId":"([0-9a-fA-F-]{36})"')) = b.object_id::text;
+
+DROP TABLE notification_group_backfill;
+
+-- 1 dòng gộp cho mỗi (user, type, object): insert đồng thời bị chặn, service lock dòng này khi cập nhật.
+-- group_object_id chỉ có ở dòng gộp nên index thường (không partial) là đủ, chạy được cả trên MySQL
+CREATE UNIQUE INDEX IF NOT EXISTS uq_notifications_group
+    ON notifications(user_id, type, group_object_id);
@@ -0,0 +1,53 @@
+-- Đối tượng chính của notification thành cột có kiểu (object_type, object_id) thay vì tìm bằng payload LIKE '%"postId":"..."%'
+-- post_reaction / comment -> post, comment_tag -> comment, friend_request -> friend_request, message_new -> message
+ALTER TABLE notifications ADD COLUMN IF NOT EXISTS object_type VARCHAR(32);
+
+-- Backfill theo lô 5000 dòng (theo id), commit sau mỗi lô để không giữ lock lâu trên bảng lớn.
+-- Chạy ngoài transaction (psql autocommit) vì DO block có COMMIT.
+-- Lấy id bằng regex thay vì payload::json: payload cũ được ghép chuỗi tay, có thể không phải JSON hợp lệ.
+DO $$
+DECLARE
+    last_id UUID := '00000000-0000-0000-0000-000000000000';
+    batch_last UUID;
+BEGIN
+    LOOP
+        SELECT MAX(id) INTO batch_last
+        FROM (
+            SELECT id FROM notifications
+            WHERE id > last_id
+            ORDER BY id
+            LIMIT 5000
+        ) batch;
+
+        EXIT WHEN batch_last IS NULL;
+
+        UPDATE notifications n
+        SET object_type = t.object_type,
+            object_id = COALESCE(n.object_id, t.object_id)
+        FROM (
+            SELECT id,
+                   CASE type
+                       WHEN 'post_reaction' THEN 'post'
+                       WHEN 'comment' THEN 'post'
+                       WHEN 'comment_tag' THEN 'comment'
+                       WHEN 'friend_request' THEN 'friend_request'
+                       WHEN 'message_new' THEN 'message'
+                   END AS object_type,
+                   CAST(substring(payload::text FROM CASE type
+                       WHEN 'post_reaction' THEN '"postId":"([0-9a-fA-F-]{36})"'
+                       WHEN 'comment' THEN '"postId":"([0-9a-fA-F-]{36})"'
+                       WHEN 'comment_tag' THEN '"commentId":"([0-9a-fA-F-]{36})"'
+                       WHEN 'friend_request' THEN '"requestId":"([0-9a-fA-F-]{36})"'
+                       WHEN 'message_new' THEN '"messageId":"([0-9a-fA-F-]{36})"'
+                   END) AS UUID) AS object_id
+            FROM notifications
+            WHERE id > last_id AND id <= batch_last
+              AND object_type IS NULL
+              AND type IN ('post_reaction', 'comment', 'comment_tag', 'friend_request', 'message_new')
+        ) t
+        WHERE n.id = t.id;
+
+        last_id := batch_last;
+        COMMIT;
+    END LOOP;
+END $$;
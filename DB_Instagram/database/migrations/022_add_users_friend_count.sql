@@ -0,0 +1,9 @@
+-- Số bạn bè denormalized: đọc feed chỉ cần lọc bạn bè "nổi tiếng" (fan-out-on-read) theo cột này,
+-- không còn COUNT(*) trên friends cho từng người bạn mỗi lần đọc
+ALTER TABLE users ADD COLUMN IF NOT EXISTS friend_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE users u
+SET friend_count = (SELECT COUNT(*) FROM friends f WHERE f.user_a = u.id OR f.user_b = u.id);
+
+-- Chỉ vài user vượt ngưỡng feed.fanout.max-friends: range scan nhỏ trên index này
+CREATE INDEX IF NOT EXISTS idx_users_friend_count ON users(friend_count);
@@ -0,0 +1,8 @@
+-- Thời điểm revoke: job purge giữ token đã revoke thêm 1 khoảng tính từ lúc revoke, không phải từ lúc tạo
+ALTER TABLE auth_tokens ADD COLUMN IF NOT EXISTS revoked_at TIMESTAMP;
+
+-- Token đã revoke trước migration không biết thời điểm revoke: tính từ lúc chạy migration (giữ thêm đủ 1 khoảng)
+UPDATE auth_tokens SET revoked_at = CURRENT_TIMESTAMP WHERE revoked = TRUE AND revoked_at IS NULL;
+
+-- Purge tìm token revoke đủ lâu bằng range scan trên revoked_at (token active có revoked_at NULL)
+CREATE INDEX IF NOT EXISTS idx_auth_tokens_revoked_at ON auth_tokens(revoked_at);
@@ -0,0 +1,71 @@
+package com.data.db_instagram.handler;
+
+import com.data.db_instagram.dto.response.MessageResponse;
+import com.data.db_instagram.dto.response.UserInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh fan-out 1 sự kiện realtime:
+ * - perRecipient: mỗi người nhận serialize lại payload (cách cũ), decorator encode UTF-8 lại khi tính độ dài.
+ * - shared: serialize 1 lần thành TextMessage giữ sẵn bytes, mọi người nhận dùng chung frame.
+ * Chạy: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameSerializationBenchmark {
+
+    @Param({"1", "10", "1000"})
+    private int recipients;
+
+    // Cấu hình giống ObjectMapper của Spring Boot (ngày dạng ISO)
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private Map<String, Object> payload;
+
+    @Setup
+    public void setUp() {
+        UserInfo from = UserInfo.builder().id(UUID.randomUUID()).email("alice@example.com").build();
+        UserInfo to = UserInfo.builder().id(UUID.randomUUID()).email("bob@example.com").build();
+        MessageResponse message = MessageResponse.builder()
+                .id(UUID.randomUUID())
+                .fromUserId(from.getId())
+                .toUserId(to.getId())
+                .content("Tối nay đi ăn không? Mình đặt bàn lúc 7h nhé")
+                .isRead(false)
+                .createdAt(new Date())
+                .fromUser(from)
+                .toUser(to)
+                .media(new ArrayList<>())
+                .reactions(new ArrayList<>())
+                .build();
+        payload = Map.of("type", "new_message", "message", message);
+    }
+
+    @Benchmark
+    public void perRecipient(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < recipients; i++) {
+            TextMessage frame = new TextMessage(objectMapper.writeValueAsString(payload));
+            blackhole.consume(frame.getPayloadLength());
+        }
+    }
+
+    @Benchmark
+    public void shared(Blackhole blackhole) throws Exception {
+        TextMessage frame = new TextMessage(objectMapper.writeValueAsBytes(payload));
+        for (int i = 0; i < recipients; i++) {
+            blackhole.consume(frame.getPayloadLength());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.dto.request.LoginRequest;
+import com.data.db_instagram.exception.HttpTooManyRequests;
+import com.data.db_instagram.model.Auth_tokens;
+import com.data.db_instagram.model.Users;
+import com.data.db_instagram.repository.IUserRepository;
+import com.data.db_instagram.repository.ProfilesRepository;
+import com.data.db_instagram.security.jwt.JwtProvider;
+import com.data.db_instagram.services.impl.AuthServiceImpl;
+import com.data.db_instagram.services.impl.PasswordHashingServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * AuthServiceImpl.login end-to-end (BCrypt trên pool băm + JWT + lưu refresh token), repository là stub trong bộ nhớ.
+ * - login: 1 client, chi phí 1 lần đăng nhập theo cost BCrypt.
+ * - loginStorm: 32 client cùng lúc trên pool = số CPU; request bị từ chối (429) kết thúc ngay nên p99 bị chặn
+ *   bởi hash-timeout thay vì tăng theo độ dài hàng đợi.
+ * Chạy: ./gradlew jmh -PjmhIncludes=LoginBenchmark (xem p0.99 trong kết quả SampleTime)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoginBenchmark {
+
+    @Param({"10", "12"})
+    private int bcryptStrength;
+
+    private PasswordHashingServiceImpl hashingService;
+    private AuthServiceImpl authService;
+    private LoginRequest request;
+
+    @Setup
+    public void setUp() {
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt",
+                Map.of("bcrypt", new BCryptPasswordEncoder(bcryptStrength)));
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        hashingService = new PasswordHashingServiceImpl(encoder, new SimpleMeterRegistry(), 0, 64, 5000, 1);
+
+        Users user = new Users();
+        user.setId(UUID.randomUUID());
+        user.setEmail("bench@example.com");
+        user.setPassword_hash(encoder.encode("Password123!"));
+        user.setIs_active(true);
+
+        IUserRepository userRepository = stub(IUserRepository.class, Map.of(
+                "findByEmailOrPhone", args -> Optional.of(user),
+                "save", args -> args[0]));
+        ProfilesRepository profilesRepository = stub(ProfilesRepository.class, Map.of(
+                "findByUserId", args -> Optional.empty()));
+        RefreshTokenStore refreshTokenStore = new RefreshTokenStore() {
+            @Override
+            public void save(UUID userId, String refreshToken, Date expiresAt, String deviceInfo) {
+            }
+
+            @Override
+            public Optional<Auth_tokens> find(String refreshToken) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void revoke(String refreshToken) {
+            }
+
+            @Override
+            public void revokeAll(UUID userId) {
+            }
+
+            @Override
+            public int purge() {
+                return 0;
+            }
+        };
+
+        TokenRevocationService tokenRevocationService = new TokenRevocationService() {
+            @Override
+            public void revokeAccessTokens(UUID userId) {
+            }
+
+            @Override
+            public boolean isRevoked(UUID userId, Date issuedAt) {
+                return false;
+            }
+        };
+
+        authService = new AuthServiceImpl(userRepository, profilesRepository, refreshTokenStore, hashingService,
+                jwtProvider(), tokenRevocationService);
+        request = new LoginRequest();
+        request.setEmail("bench@example.com");
+        request.setPassword("Password123!");
+    }
+
+    @TearDown
+    public void tearDown() {
+        hashingService.shutdown();
+    }
+
+    @Benchmark
+    public Object login() {
+        return authService.login(request);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void loginStorm(Blackhole blackhole) {
+        try {
+            blackhole.consume(authService.login(request));
+        } catch (HttpTooManyRequests e) {
+            blackhole.consume(e);
+        }
+    }
+
+    private static JwtProvider jwtProvider() {
+        JwtProvider jwtProvider = new JwtProvider();
+        set(jwtProvider, "SECRET_KEY", Base64.getEncoder().encodeToString(new byte[32]));
+        set(jwtProvider, "EXPIRED_ACCESS", 3600L);
+        set(jwtProvider, "EXPIRED_REFRESH", 604800L);
+        Method init = ReflectionUtils.findMethod(JwtProvider.class, "init");
+        ReflectionUtils.makeAccessible(init);
+        ReflectionUtils.invokeMethod(init, jwtProvider);
+        return jwtProvider;
+    }
+
+    private static void set(Object target, String field, Object value) {
+        Field f = ReflectionUtils.findField(target.getClass(), field);
+        ReflectionUtils.makeAccessible(f);
+        ReflectionUtils.setField(f, target, value);
+    }
+
+    // Repository stub: chỉ các method login dùng tới, còn lại ném lỗi
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package com.data.db_instagram.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test đóng (closed-loop): concurrency client gửi GET liên tục tới url trong durationSeconds,
+ * in ra throughput, p50/p99 và số lỗi. Chạy 2 lần trên cùng máy/DB để so sánh:
+ * - Platform thread: ./gradlew bootRun
+ * - Virtual thread:  VIRTUAL_THREADS=true ./gradlew bootRun -PjavaVersion=21
+ * rồi ./gradlew loadTest -Purl=... -Ptoken=... -Pconcurrency=... -PdurationSeconds=...
+ * Nên dùng endpoint đọc DB (vd: /api/v1/posts/feed) và concurrency lớn hơn 200 (pool Tomcat mặc định)
+ * để thấy khác biệt; 503 là request bị ConcurrencyLimitFilter từ chối.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String url = args[0];
+        String token = args[1];
+        int concurrency = Integer.parseInt(args[2]);
+        long durationMs = Long.parseLong(args[3]) * 1000;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .GET();
+        if (!token.isEmpty()) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        HttpRequest request = builder.build();
+
+        AtomicLong errors = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        List<long[]> latenciesPerWorker = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + durationMs;
+
+        for (int i = 0; i < concurrency; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            Thread worker = new Thread(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    long started = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 503) {
+                            rejected.incrementAndGet();
+                        } else if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        } else {
+                            recorder.record(System.nanoTime() - started);
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+                synchronized (latenciesPerWorker) {
+                    latenciesPerWorker.add(recorder.toArray());
+                }
+            }, "load-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long[] latencies = latenciesPerWorker.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        double seconds = durationMs / 1000.0;
+        System.out.printf("url=%s concurrency=%d duration=%.0fs%n", url, concurrency, seconds);
+        System.out.printf("ok=%d errors=%d rejected(503)=%d throughput=%.1f req/s%n",
+                latencies.length, errors.get(), rejected.get(), latencies.length / seconds);
+        if (latencies.length > 0) {
+            System.out.printf("p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    // Mỗi worker ghi vào mảng riêng, không tranh chấp giữa các thread
+    private static final class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        void record(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
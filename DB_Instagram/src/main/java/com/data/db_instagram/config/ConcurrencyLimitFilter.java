@@ -0,0 +1,110 @@
+package com.data.db_instagram.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Giới hạn số request API chạy đồng thời khi Tomcat dùng virtual thread (Java 21, spring.threads.virtual.enabled=true):
+ * - Không còn pool 200 thread chặn lại, nên số request giữ/chờ connection JDBC phải được chặn bằng semaphore
+ *   có số permit bằng pool Hikari (app.concurrency.max-requests).
+ * - Permit = pool chỉ đúng khi mỗi request dùng tối đa 1 connection: không dùng REQUIRES_NEW / transaction lồng
+ *   (insert-if-absent của conversation_state, notification gộp chạy trên connection của caller). Nếu thêm đường
+ *   lấy connection thứ 2 thì phải đặt max-requests nhỏ hơn pool, nếu không mọi request có thể cùng chờ connection thứ 2.
+ * - Chờ permit tối đa app.concurrency.acquire-timeout-ms rồi trả 503, thay vì để hàng nghìn virtual thread
+ *   chờ Hikari tới connection-timeout.
+ * - Upload (Cloudinary, không dùng DB lâu), WebSocket và actuator không bị tính.
+ */
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final ObjectMapper objectMapper;
+    private final Counter rejected;
+
+    public ConcurrencyLimitFilter(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.concurrency.max-requests:${spring.datasource.hikari.maximum-pool-size:10}}") int maxRequests,
+            @Value("${app.concurrency.acquire-timeout-ms:5000}") long acquireTimeoutMs
+    ) {
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(maxRequests, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        Gauge.builder("http.concurrency.available", permits, Semaphore::availablePermits)
+                .description("Free request permits (sized to the JDBC pool)")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("http.concurrency.rejected")
+                .description("Requests rejected after waiting for a permit")
+                .register(meterRegistry);
+        log.info("Virtual threads enabled, limiting concurrent API requests to {}", maxRequests);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !path.startsWith("/api/") || path.startsWith("/api/v1/upload");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            writeErrorResponse(response);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void writeErrorResponse(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Retry-After", "1");
+
+        Map<String, Object> error = new HashMap<>();
+        error.put("timestamp", Instant.now().toString());
+        error.put("status", HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        error.put("error", HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase());
+        error.put("message", "Server is busy, please retry");
+
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+}
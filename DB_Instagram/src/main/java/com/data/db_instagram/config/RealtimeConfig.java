@@ -0,0 +1,76 @@
+package com.data.db_instagram.config;
+
+import com.data.db_instagram.services.PresenceDirectory;
+import com.data.db_instagram.services.RealtimeBroker;
+import com.data.db_instagram.services.impl.InMemoryPresenceDirectory;
+import com.data.db_instagram.services.impl.InMemoryRealtimeBroker;
+import com.data.db_instagram.services.impl.TcpRealtimeBroker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class RealtimeConfig {
+
+    // Mặc định: 1 node, chỉ giao cho socket local
+    @Bean
+    @ConditionalOnProperty(name = "realtime.broker", havingValue = "memory", matchIfMissing = true)
+    public RealtimeBroker inMemoryRealtimeBroker(PresenceDirectory presenceDirectory) {
+        return new InMemoryRealtimeBroker("local", presenceDirectory);
+    }
+
+    // Các node chuyển frame cho nhau qua TCP. Cần 1 PresenceDirectory dùng chung giữa các JVM (DB/Redis) -
+    // hiện chỉ có InMemoryPresenceDirectory (theo từng JVM) nên chưa chạy được nhiều node thật sau load balancer.
+    // Mặc định chỉ nghe trên loopback; chạy nhiều máy thì bind vào địa chỉ mạng nội bộ, không public
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "realtime.broker", havingValue = "tcp")
+    public RealtimeBroker tcpRealtimeBroker(
+            PresenceDirectory presenceDirectory,
+            MeterRegistry meterRegistry,
+            @Value("${realtime.tcp.bind-address:127.0.0.1}") String bindAddress,
+            @Value("${realtime.tcp.advertised-host:localhost}") String advertisedHost,
+            @Value("${realtime.tcp.port:7601}") int port,
+            @Value("${realtime.tcp.shared-secret:}") String sharedSecret,
+            @Value("${realtime.tcp.peer-queue-capacity:10000}") int peerQueueCapacity
+    ) throws IOException {
+        if (presenceDirectory instanceof InMemoryPresenceDirectory) {
+            throw new IllegalStateException("realtime.broker=tcp requires a PresenceDirectory shared between nodes; "
+                    + "InMemoryPresenceDirectory only sees sessions of its own JVM");
+        }
+        TcpRealtimeBroker broker = new TcpRealtimeBroker(presenceDirectory, bindAddress, advertisedHost, port,
+                sharedSecret, peerQueueCapacity);
+        FunctionCounter.builder("realtime.tcp.dropped", broker, TcpRealtimeBroker::getDroppedFrames)
+                .description("Frames dropped because a peer queue was full or the peer was unreachable")
+                .register(meterRegistry);
+        return broker;
+    }
+
+    // Executor drain các SessionOutbox: virtual thread khi chạy Java 21 với spring.threads.virtual.enabled=true
+    // (ghi socket chậm không giữ platform thread), ngược lại pool cố định websocket.outbound.threads
+    @Bean
+    public Executor webSocketSendExecutor(
+            Environment environment,
+            @Value("${websocket.outbound.threads:4}") int sendThreads
+    ) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return new VirtualThreadTaskExecutor("ws-send-");
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(sendThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ws-send-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package com.data.db_instagram.config;
+
+import com.data.db_instagram.repository.TokenRevocationsRepository;
+import com.data.db_instagram.services.TokenRevocationChannel;
+import com.data.db_instagram.services.impl.DbPollingTokenRevocationChannel;
+import com.data.db_instagram.services.impl.InMemoryTokenRevocationChannel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TokenRevocationConfig {
+
+    // Mặc định: 1 node, watermark chỉ cần cập nhật cache local
+    @Bean
+    @ConditionalOnProperty(name = "security.revocation.channel", havingValue = "memory", matchIfMissing = true)
+    public TokenRevocationChannel inMemoryTokenRevocationChannel() {
+        return new InMemoryTokenRevocationChannel();
+    }
+
+    // Nhiều node: mỗi node poll token_revocations, trễ tối đa security.revocation.poll-ms
+    @Bean
+    @ConditionalOnProperty(name = "security.revocation.channel", havingValue = "db")
+    public TokenRevocationChannel dbPollingTokenRevocationChannel(
+            TokenRevocationsRepository tokenRevocationsRepository,
+            @Value("${security.revocation.poll-overlap-ms:5000}") long overlapMs
+    ) {
+        return new DbPollingTokenRevocationChannel(tokenRevocationsRepository, overlapMs);
+    }
+}
@@ -2,6 +2,7 @@ package com.data.db_instagram.controller;
 
 import com.data.db_instagram.dto.request.CreateCommentRequest;
 import com.data.db_instagram.dto.response.CommentResponse;
+import com.data.db_instagram.dto.response.CursorPageResponse;
 import com.data.db_instagram.dto.response.ResponseWrapper;
 import com.data.db_instagram.security.principal.MyUserDetails;
 import com.data.db_instagram.services.CommentService;
@@ -52,6 +53,24 @@ public class CommentController {
                         .build());
     }
 
+    // Keyset pagination: truyền nextCursor của trang trước để lấy trang tiếp theo
+    @GetMapping("/cursor")
+    public ResponseEntity<?> getPostCommentsByCursor(
+            @PathVariable UUID postId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal MyUserDetails userDetails
+    ) {
+        UUID userId = userDetails.getId();
+        CursorPageResponse<CommentResponse> comments = commentService.getPostCommentsByCursor(postId, userId, cursor, size);
+        return ResponseEntity.ok(
+                ResponseWrapper.builder()
+                        .status(HttpStatus.OK)
+                        .code(HttpStatus.OK.value())
+                        .data(comments)
+                        .build());
+    }
+
     @DeleteMapping("/{commentId}")
     public ResponseEntity<?> deleteComment(
             @PathVariable UUID postId,
@@ -83,5 +102,22 @@ public class CommentController {
                         .data(replies)
                         .build());
     }
-}
 
+    @GetMapping("/{commentId}/replies/cursor")
+    public ResponseEntity<?> getCommentRepliesByCursor(
+            @PathVariable UUID postId,
+            @PathVariable UUID commentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal MyUserDetails userDetails
+    ) {
+        UUID userId = userDetails.getId();
+        CursorPageResponse<CommentResponse> replies = commentService.getCommentRepliesByCursor(commentId, userId, cursor, size);
+        return ResponseEntity.ok(
+                ResponseWrapper.builder()
+                        .status(HttpStatus.OK)
+                        .code(HttpStatus.OK.value())
+                        .data(replies)
+                        .build());
+    }
+}
@@ -3,6 +3,7 @@ package com.data.db_instagram.controller;
 import com.data.db_instagram.dto.request.ReactToMessageRequest;
 import com.data.db_instagram.dto.request.SendMessageRequest;
 import com.data.db_instagram.dto.response.ConversationInfo;
+import com.data.db_instagram.dto.response.CursorPageResponse;
 import com.data.db_instagram.dto.response.MessageResponse;
 import com.data.db_instagram.dto.response.ResponseWrapper;
 import com.data.db_instagram.security.principal.MyUserDetails;
@@ -57,9 +58,23 @@ public class MessageController {
     @GetMapping("/conversation/{otherUserId}")
     public ResponseEntity<?> getConversation(
             @PathVariable UUID otherUserId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size,
             @AuthenticationPrincipal MyUserDetails userDetails
     ) {
         UUID currentUserId = userDetails.getId();
+        // Có before/after/size: trả về 1 trang theo cursor; không có: toàn bộ lịch sử (client cũ)
+        if (before != null || after != null || size != null) {
+            CursorPageResponse<MessageResponse> page = messageService.getConversationByCursor(
+                    currentUserId, otherUserId, before, after, size != null ? size : 30);
+            return ResponseEntity.ok(
+                    ResponseWrapper.builder()
+                            .status(HttpStatus.OK)
+                            .code(HttpStatus.OK.value())
+                            .data(page)
+                            .build());
+        }
         List<MessageResponse> messages = messageService.getConversation(currentUserId, otherUserId);
         return ResponseEntity.ok(
                 ResponseWrapper.builder()
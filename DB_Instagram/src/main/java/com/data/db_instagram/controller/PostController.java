@@ -2,6 +2,7 @@ package com.data.db_instagram.controller;
 
 import com.data.db_instagram.dto.request.CreatePostRequest;
 import com.data.db_instagram.dto.request.UpdatePostRequest;
+import com.data.db_instagram.dto.response.CursorPageResponse;
 import com.data.db_instagram.dto.response.PostResponse;
 import com.data.db_instagram.dto.response.ResponseWrapper;
 import com.data.db_instagram.security.principal.MyUserDetails;
@@ -131,5 +132,53 @@ public class PostController {
                         .data(reels)
                         .build());
     }
-}
 
+    @GetMapping("/feed/cursor")
+    public ResponseEntity<?> getFriendsPostsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal MyUserDetails userDetails
+    ) {
+        UUID userId = userDetails.getId();
+        CursorPageResponse<PostResponse> posts = postService.getFriendsPostsByCursor(userId, cursor, size);
+        return ResponseEntity.ok(
+                ResponseWrapper.builder()
+                        .status(HttpStatus.OK)
+                        .code(HttpStatus.OK.value())
+                        .data(posts)
+                        .build());
+    }
+
+    @GetMapping("/user/{userId}/cursor")
+    public ResponseEntity<?> getUserPostsByCursor(
+            @PathVariable UUID userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal MyUserDetails userDetails
+    ) {
+        UUID currentUserId = userDetails.getId();
+        CursorPageResponse<PostResponse> posts = postService.getUserPostsByCursor(userId, currentUserId, cursor, size);
+        return ResponseEntity.ok(
+                ResponseWrapper.builder()
+                        .status(HttpStatus.OK)
+                        .code(HttpStatus.OK.value())
+                        .data(posts)
+                        .build());
+    }
+
+    @GetMapping("/reels/cursor")
+    public ResponseEntity<?> getReelsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal MyUserDetails userDetails
+    ) {
+        UUID userId = userDetails.getId();
+        CursorPageResponse<PostResponse> reels = postService.getReelsByCursor(userId, cursor, size);
+        return ResponseEntity.ok(
+                ResponseWrapper.builder()
+                        .status(HttpStatus.OK)
+                        .code(HttpStatus.OK.value())
+                        .data(reels)
+                        .build());
+    }
+}
@@ -2,6 +2,7 @@ package com.data.db_instagram.controller;
 
 import com.data.db_instagram.dto.response.ResponseWrapper;
 import com.data.db_instagram.dto.response.UploadResponse;
+import com.data.db_instagram.exception.HttpServiceUnavailable;
 import com.data.db_instagram.services.CloudinaryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -35,6 +36,9 @@ public class UploadController {
                             .data(response)
                             .build()
             );
+        } catch (HttpServiceUnavailable e) {
+            // Hết permit upload: GlobalExceptionHandler trả 503 + Retry-After
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ResponseWrapper.builder()
@@ -63,6 +67,8 @@ public class UploadController {
                             .data(response)
                             .build()
             );
+        } catch (HttpServiceUnavailable e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ResponseWrapper.builder()
@@ -92,6 +98,8 @@ public class UploadController {
                             .data(response)
                             .build()
             );
+        } catch (HttpServiceUnavailable e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ResponseWrapper.builder()
@@ -0,0 +1,23 @@
+package com.data.db_instagram.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+// Frame client gửi lên qua /ws/messages
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class RealtimeFrameRequest {
+    private String type; // typing | presence | read
+
+    private UUID userId; // typing/read: user bên kia của conversation
+
+    private Boolean isTyping; // typing
+
+    private String status; // presence: online | away | offline
+}
@@ -0,0 +1,23 @@
+package com.data.db_instagram.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> items;
+    
+    // Cursor để lấy trang tiếp theo (null nếu đã hết dữ liệu)
+    private String nextCursor;
+    private boolean hasMore;
+    
+    // Cursor theo chiều ngược lại (vd: tin nhắn mới hơn trang hiện tại), null nếu endpoint không hỗ trợ
+    private String prevCursor;
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 @Data
@@ -23,5 +24,13 @@ public class NotificationResponse {
     
     // Actor info (người gây ra notification)
     private UserInfo actor;
+
+    // Đối tượng chính (post, comment, friend_request, message)
+    private String objectType;
+    private UUID objectId;
+
+    // Notification gộp: tổng số actor + vài actor gần nhất (mới nhất trước)
+    private Integer actorCount;
+    private List<UserInfo> actors;
 }
 
@@ -0,0 +1,34 @@
+package com.data.db_instagram.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sự kiện cần đẩy realtime tới client. Service chỉ publish qua ApplicationEventPublisher,
+ * việc ghi socket do RealtimeEventDispatcher làm sau khi transaction commit.
+ * Sự kiện thường được ghi vào RealtimeEventLog (có seq, replay khi client kết nối lại);
+ * sự kiện ephemeral (typing, presence) chỉ gửi cho ai đang online.
+ */
+@Getter
+@AllArgsConstructor
+public class RealtimeEvent {
+    private final Collection<UUID> recipients;
+    private final Object payload;
+    private final boolean ephemeral;
+
+    public RealtimeEvent(Collection<UUID> recipients, Object payload) {
+        this(recipients, payload, false);
+    }
+
+    public static RealtimeEvent to(UUID recipient, Object payload) {
+        return new RealtimeEvent(List.of(recipient), payload);
+    }
+
+    public static RealtimeEvent ephemeral(Collection<UUID> recipients, Object payload) {
+        return new RealtimeEvent(recipients, payload, true);
+    }
+}
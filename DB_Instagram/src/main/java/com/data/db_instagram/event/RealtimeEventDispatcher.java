@@ -0,0 +1,105 @@
+package com.data.db_instagram.event;
+
+import com.data.db_instagram.handler.MessageWebSocketHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pipeline sự kiện realtime:
+ * - Chỉ nhận sự kiện sau khi transaction commit (AFTER_COMMIT): client không bao giờ thấy id chưa commit,
+ *   và connection DB đã được trả về pool trước khi ghi socket. Publish ngoài transaction thì gửi ngay (fallbackExecution).
+ * - Listener chỉ bỏ vào hàng đợi có giới hạn rồi trả về; 1 thread riêng lấy ra theo batch và fan-out qua WebSocket.
+ * - Metrics: realtime.events.queued (độ dài hàng đợi), realtime.events.dropped (hàng đợi đầy).
+ */
+@Component
+@Slf4j
+public class RealtimeEventDispatcher {
+    private final MessageWebSocketHandler webSocketHandler;
+    private final BlockingQueue<RealtimeEvent> queue;
+    private final int batchSize;
+    private final Counter droppedEvents;
+    private Thread dispatcherThread;
+
+    public RealtimeEventDispatcher(
+            MessageWebSocketHandler webSocketHandler,
+            MeterRegistry meterRegistry,
+            @Value("${realtime.events.queue-capacity:10000}") int queueCapacity,
+            @Value("${realtime.events.batch-size:256}") int batchSize
+    ) {
+        this.webSocketHandler = webSocketHandler;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        Gauge.builder("realtime.events.queued", queue, BlockingQueue::size)
+                .description("Realtime events waiting to be dispatched")
+                .register(meterRegistry);
+        this.droppedEvents = Counter.builder("realtime.events.dropped")
+                .description("Realtime events dropped because the dispatch queue was full")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcherThread = new Thread(this::dispatchLoop, "realtime-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcherThread != null) {
+            dispatcherThread.interrupt();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRealtimeEvent(RealtimeEvent event) {
+        if (!queue.offer(event)) {
+            droppedEvents.increment();
+            log.warn("Realtime event queue is full, dropping event for {}", event.getRecipients());
+        }
+    }
+
+    private void dispatchLoop() {
+        List<RealtimeEvent> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                for (RealtimeEvent event : batch) {
+                    dispatch(event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Mỗi sự kiện serialize đúng 1 lần, cùng frame được fan-out cho mọi người nhận
+    private void dispatch(RealtimeEvent event) {
+        List<String> recipients = new ArrayList<>(event.getRecipients().size());
+        for (UUID recipient : event.getRecipients()) {
+            recipients.add(recipient.toString());
+        }
+        try {
+            webSocketHandler.sendMessageToUsers(recipients, event.getPayload(), !event.isEphemeral());
+        } catch (Exception e) {
+            log.warn("Failed to dispatch realtime event to users {}: {}", recipients, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.data.db_instagram.exception;
+
+public class HttpServiceUnavailable extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public HttpServiceUnavailable(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,14 @@
+package com.data.db_instagram.exception;
+
+public class HttpTooManyRequests extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public HttpTooManyRequests(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
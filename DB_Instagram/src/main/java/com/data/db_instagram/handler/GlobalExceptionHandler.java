@@ -5,7 +5,10 @@ import com.data.db_instagram.exception.HttpBadRequest;
 import com.data.db_instagram.exception.HttpConflict;
 import com.data.db_instagram.exception.HttpForbidden;
 import com.data.db_instagram.exception.HttpNotFound;
+import com.data.db_instagram.exception.HttpServiceUnavailable;
+import com.data.db_instagram.exception.HttpTooManyRequests;
 import com.data.db_instagram.exception.HttpUnauthorized;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -138,6 +141,34 @@ public class GlobalExceptionHandler
         );
     }
 
+    @ExceptionHandler(HttpTooManyRequests.class)
+    public ResponseEntity<?> handleHttpTooManyRequests(HttpTooManyRequests ex)
+    {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(
+                ResponseWrapper.builder()
+                        .data(ex.getMessage())
+                        .code(HttpStatus.TOO_MANY_REQUESTS.value())
+                        .status(HttpStatus.TOO_MANY_REQUESTS)
+                        .build()
+        );
+    }
+
+    @ExceptionHandler(HttpServiceUnavailable.class)
+    public ResponseEntity<?> handleHttpServiceUnavailable(HttpServiceUnavailable ex)
+    {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(
+                ResponseWrapper.builder()
+                        .data(ex.getMessage())
+                        .code(HttpStatus.SERVICE_UNAVAILABLE.value())
+                        .status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .build()
+        );
+    }
+
     /**
      * Generic exception handler for all unexpected errors
      * This catches any exception not handled by specific handlers above
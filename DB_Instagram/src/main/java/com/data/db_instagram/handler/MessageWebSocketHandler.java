@@ -1,31 +1,162 @@
 package com.data.db_instagram.handler;
 
+import com.data.db_instagram.dto.request.RealtimeFrameRequest;
+import com.data.db_instagram.services.RealtimeBroker;
+import com.data.db_instagram.services.RealtimeEventLog;
+import com.data.db_instagram.services.RealtimeInboundService;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Registry WebSocket theo user (nhiều thiết bị cùng lúc): giao frame qua RealtimeBroker tới mọi node,
+ * mỗi session gửi bất đồng bộ qua SessionOutbox.
+ */
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class MessageWebSocketHandler extends TextWebSocketHandler {
     
-    private final Map<String, WebSocketSession> userSessions = new ConcurrentHashMap<>();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Mỗi user giữ 1 tập session copy-on-write (ít thay đổi, đọc nhiều khi fan-out);
+    // đóng kết nối chỉ gỡ đúng session đó, các thiết bị khác vẫn nhận tin
+    private final Map<String, Set<SessionOutbox>> userSessions = new ConcurrentHashMap<>();
+    private final AtomicInteger totalSessions = new AtomicInteger();
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary sessionsPerUser;
+    private final Counter droppedMessages;
+    private final Counter slowSessionsClosed;
+    private final Counter messagesIn;
+    private final Counter messagesOut;
+    private final Counter reapedSessions;
+    private final Timer sendLatency;
+    private final Executor sendExecutor;
+    private final int bufferLimit;
+    private final int bufferSizeBytes;
+    private final long sendTimeLimitMs;
+    private final SessionOutbox.OverflowStrategy overflowStrategy;
+    private final RealtimeBroker realtimeBroker;
+    private final RealtimeInboundService inboundService;
+    private final RealtimeEventLog eventLog;
+    private final long idleTimeoutMs;
+    // Tốc độ message in/out (message/giây) tính giữa 2 lần heartbeat
+    private volatile double inboundRate;
+    private volatile double outboundRate;
+    private double lastInCount;
+    private double lastOutCount;
+    private long lastRateAt = System.currentTimeMillis();
+
+    public MessageWebSocketHandler(
+            MeterRegistry meterRegistry,
+            RealtimeBroker realtimeBroker,
+            ObjectMapper objectMapper,
+            RealtimeInboundService inboundService,
+            RealtimeEventLog eventLog,
+            @Qualifier("webSocketSendExecutor") Executor sendExecutor,
+            @Value("${websocket.outbound.buffer-limit:256}") int bufferLimit,
+            @Value("${websocket.outbound.buffer-size-bytes:524288}") int bufferSizeBytes,
+            @Value("${websocket.outbound.send-time-limit-ms:10000}") long sendTimeLimitMs,
+            @Value("${websocket.outbound.overflow:CLOSE}") SessionOutbox.OverflowStrategy overflowStrategy,
+            @Value("${websocket.heartbeat.idle-timeout-ms:75000}") long idleTimeoutMs
+    ) {
+        this.realtimeBroker = realtimeBroker;
+        this.objectMapper = objectMapper;
+        this.inboundService = inboundService;
+        this.eventLog = eventLog;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.bufferLimit = bufferLimit;
+        this.bufferSizeBytes = bufferSizeBytes;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.overflowStrategy = overflowStrategy;
+        this.sendExecutor = sendExecutor;
+
+        // Tổng hợp lại ở actuator endpoint /actuator/websocket (WebSocketMetricsEndpoint)
+        Gauge.builder("websocket.sessions", totalSessions, AtomicInteger::get)
+                .description("Open WebSocket sessions on this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.users", userSessions, Map::size)
+                .description("Users with at least one open WebSocket session on this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.buffered", this, MessageWebSocketHandler::getBufferedMessageCount)
+                .description("Messages waiting in per-session outbound buffers")
+                .register(meterRegistry);
+        this.sessionsPerUser = DistributionSummary.builder("websocket.user.sessions")
+                .description("Open sessions of a user, recorded when a session connects")
+                .register(meterRegistry);
+        this.droppedMessages = Counter.builder("websocket.outbound.dropped")
+                .description("Oldest messages dropped because a session buffer was full")
+                .register(meterRegistry);
+        this.slowSessionsClosed = Counter.builder("websocket.outbound.slow.closed")
+                .description("Sessions closed for exceeding the buffer or send time limit")
+                .register(meterRegistry);
+        this.messagesIn = Counter.builder("websocket.messages.in")
+                .description("Frames received from clients")
+                .register(meterRegistry);
+        this.messagesOut = Counter.builder("websocket.messages.out")
+                .description("Frames written to client sockets")
+                .register(meterRegistry);
+        this.reapedSessions = Counter.builder("websocket.sessions.reaped")
+                .description("Sessions closed by the heartbeat after the idle timeout")
+                .register(meterRegistry);
+        this.sendLatency = Timer.builder("websocket.outbound.send.latency")
+                .description("Time to write one frame to a client socket")
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        realtimeBroker.onDeliver(this::deliverLocal);
+        eventLog.onEvicted(this::releasePresence);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String userId = (String) session.getAttributes().get("userId");
         if (userId != null) {
-            userSessions.put(userId, session);
-            log.info("User {} connected. Total connections: {}", userId, userSessions.size());
+            // Hàng đợi có giới hạn cho session này, drain trên webSocketSendExecutor (pool cố định hoặc virtual thread)
+            SessionOutbox outbox = new SessionOutbox(session, sendExecutor, bufferLimit, sendTimeLimitMs, bufferSizeBytes,
+                    overflowStrategy, droppedMessages::increment, slowSessionsClosed::increment, this::recordSent);
+            // Kết nối lại với ?lastSeq=N: replay frame bị lỡ rồi gửi {"type":"sync"},
+            // hoặc {"type":"resync_required"} khi khoảng trống quá lớn (client tải lại qua REST)
+            Long lastSeq = (Long) session.getAttributes().get("lastSeq");
+            // Replay và đăng ký session trong khóa của log: frame mới chỉ tới sau phần replay, không mất, không đảo thứ tự
+            eventLog.replay(userId, lastSeq, replay -> {
+                // Replay không được vượt outbox, nếu không thì cũng coi như cần resync
+                boolean resyncRequired = replay.isResyncRequired() || replay.getFrames().size() >= bufferLimit;
+                if (resyncRequired) {
+                    outbox.enqueue(toFrame(Map.of("type", "resync_required", "latestSeq", replay.getLatestSeq())));
+                } else {
+                    replay.getFrames().forEach(outbox::enqueue);
+                    outbox.enqueue(toFrame(Map.of("type", "sync", "latestSeq", replay.getLatestSeq(),
+                            "replayed", replay.getFrames().size())));
+                }
+                addSession(userId, outbox);
+            });
+            int sessionCount = getSessionCount(userId);
+            sessionsPerUser.record(sessionCount);
+            log.info("User {} connected ({} sessions). Total connections: {}", userId, sessionCount, totalSessions.get());
         } else {
             log.warn("Connection established without userId");
             session.close(CloseStatus.BAD_DATA);
@@ -36,33 +167,95 @@ public class MessageWebSocketHandler extends TextWebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         String userId = (String) session.getAttributes().get("userId");
         if (userId != null) {
-            userSessions.remove(userId);
-            log.info("User {} disconnected. Total connections: {}", userId, userSessions.size());
+            removeSession(userId, session);
+            log.info("User {} disconnected. Total connections: {}", userId, totalSessions.get());
         }
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        // Handle incoming messages from client (if needed)
-        // For now, we only send messages from server to client
-        log.debug("Received message from client: {}", message.getPayload());
+        String userId = (String) session.getAttributes().get("userId");
+        if (userId == null) {
+            return;
+        }
+
+        messagesIn.increment();
+        touch(userId, session);
+
+        // Frame client gửi lên (typing, presence, read) do RealtimeInboundService xử lý; frame lỗi chỉ bị bỏ qua, không đóng kết nối (exception ném ra ở đây sẽ đóng session)
+        try {
+            RealtimeFrameRequest frame = objectMapper.readValue(message.getPayload(), RealtimeFrameRequest.class);
+            inboundService.handle(UUID.fromString(userId), frame);
+        } catch (Exception e) {
+            log.debug("Ignoring realtime frame from user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        String userId = (String) session.getAttributes().get("userId");
+        if (userId != null) {
+            touch(userId, session);
+        }
     }
 
     /**
-     * Send message to a specific user
+     * Heartbeat: ping session còn sống, đóng và gỡ session idle quá lâu hoặc đã đóng mà chưa được gỡ
      */
-    public void sendMessageToUser(String userId, Object message) {
-        WebSocketSession session = userSessions.get(userId);
-        if (session != null && session.isOpen()) {
-            try {
-                String jsonMessage = objectMapper.writeValueAsString(message);
-                session.sendMessage(new TextMessage(jsonMessage));
-                log.debug("Message sent to user {}: {}", userId, jsonMessage);
-            } catch (Exception e) {
-                log.error("Error sending message to user {}: {}", userId, e.getMessage());
+    @Scheduled(
+            initialDelayString = "${websocket.heartbeat.interval-ms:25000}",
+            fixedDelayString = "${websocket.heartbeat.interval-ms:25000}"
+    )
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        int reaped = 0;
+        for (Map.Entry<String, Set<SessionOutbox>> entry : userSessions.entrySet()) {
+            for (SessionOutbox outbox : entry.getValue()) {
+                if (!outbox.isOpen()) {
+                    removeSession(entry.getKey(), outbox.getDelegate());
+                } else if (outbox.isIdle(now, idleTimeoutMs)) {
+                    // Half-open: close có thể không bao giờ tới afterConnectionClosed nên gỡ luôn khỏi registry
+                    outbox.closeIdle();
+                    removeSession(entry.getKey(), outbox.getDelegate());
+                    reapedSessions.increment();
+                    reaped++;
+                } else {
+                    outbox.ping();
+                }
             }
-        } else {
-            log.debug("User {} is not connected or session is closed", userId);
+        }
+        updateRates(now);
+        if (reaped > 0) {
+            log.info("Reaped {} idle WebSocket sessions. Total connections: {}", reaped, totalSessions.get());
+        }
+    }
+
+    /**
+     * Send message to all open sessions (devices) of a specific user, trên mọi node.
+     * Chỉ đưa vào hàng đợi của từng session rồi trả về, không chờ client nhận.
+     */
+    public void sendMessageToUser(String userId, Object message) {
+        sendMessageToUsers(List.of(userId), message);
+    }
+
+    /**
+     * Send the same message to many users: serialize 1 lần rồi fan-out cùng 1 frame
+     */
+    public void sendMessageToUsers(Collection<String> userIds, Object message) {
+        sendMessageToUsers(userIds, message, true);
+    }
+
+    /**
+     * replayable = true: node giữ socket của người nhận gắn seq và ghi vào event log của nó để replay khi kết nối lại.
+     * false (typing, presence): chỉ gửi cho session đang mở.
+     */
+    public void sendMessageToUsers(Collection<String> userIds, Object message, boolean replayable) {
+        TextMessage frame = toFrame(message);
+        if (frame == null) {
+            return;
+        }
+        for (String userId : userIds) {
+            realtimeBroker.publish(userId, frame, replayable);
         }
     }
 
@@ -70,17 +263,55 @@ public class MessageWebSocketHandler extends TextWebSocketHandler {
      * Broadcast message to multiple users
      */
     public void sendMessageToUsers(String[] userIds, Object message) {
-        for (String userId : userIds) {
-            sendMessageToUser(userId, message);
+        sendMessageToUsers(Arrays.asList(userIds), message);
+    }
+
+    /**
+     * Serialize payload thành frame dùng chung, null nếu không serialize được.
+     * TextMessage tạo từ byte[] giữ sẵn bytes nên decorator/broker không phải encode lại UTF-8.
+     */
+    public TextMessage toFrame(Object message) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsBytes(message));
+        } catch (Exception e) {
+            log.error("Error serializing realtime message: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Giao frame cho các session của user trên node này (được broker gọi)
+     */
+    public void deliverLocal(String userId, TextMessage frame, boolean replayable) {
+        if (replayable) {
+            // seq thuộc về node giữ socket nên lastSeq của client luôn khớp log ở đây;
+            // vẫn ghi khi user vừa mất kết nối (presence còn giữ tới khi log bị bỏ) để replay khi kết nối lại
+            eventLog.append(userId, frame, sequenced -> enqueueLocal(userId, sequenced));
+        } else {
+            enqueueLocal(userId, frame);
+        }
+    }
+
+    private void enqueueLocal(String userId, TextMessage frame) {
+        Set<SessionOutbox> sessions = userSessions.get(userId);
+        if (sessions == null || sessions.isEmpty()) {
+            log.debug("User {} is not connected to this node", userId);
+            return;
+        }
+
+        for (SessionOutbox outbox : sessions) {
+            if (!outbox.enqueue(frame)) {
+                removeSession(userId, outbox.getDelegate());
+            }
         }
     }
 
     /**
-     * Check if user is connected
+     * Check if user has at least one open session
      */
     public boolean isUserConnected(String userId) {
-        WebSocketSession session = userSessions.get(userId);
-        return session != null && session.isOpen();
+        Set<SessionOutbox> sessions = userSessions.get(userId);
+        return sessions != null && sessions.stream().anyMatch(SessionOutbox::isOpen);
     }
 
     /**
@@ -89,5 +320,111 @@ public class MessageWebSocketHandler extends TextWebSocketHandler {
     public int getConnectedUsersCount() {
         return userSessions.size();
     }
-}
 
+    /**
+     * Get number of open sessions of a user
+     */
+    public int getSessionCount(String userId) {
+        return userSessions.getOrDefault(userId, Collections.emptySet()).size();
+    }
+
+    /**
+     * Get number of open sessions on this node
+     */
+    public int getTotalSessionCount() {
+        return totalSessions.get();
+    }
+
+    /**
+     * Get number of messages waiting in all outbound buffers on this node
+     */
+    public int getBufferedMessageCount() {
+        int buffered = 0;
+        for (Set<SessionOutbox> sessions : userSessions.values()) {
+            for (SessionOutbox outbox : sessions) {
+                buffered += outbox.getBufferDepth();
+            }
+        }
+        return buffered;
+    }
+
+    /**
+     * Messages received per second, measured between the last two heartbeats
+     */
+    public double getInboundRate() {
+        return inboundRate;
+    }
+
+    /**
+     * Messages written per second, measured between the last two heartbeats
+     */
+    public double getOutboundRate() {
+        return outboundRate;
+    }
+
+    private synchronized void updateRates(long now) {
+        double seconds = (now - lastRateAt) / 1000.0;
+        if (seconds <= 0) {
+            return;
+        }
+        double inCount = messagesIn.count();
+        double outCount = messagesOut.count();
+        inboundRate = (inCount - lastInCount) / seconds;
+        outboundRate = (outCount - lastOutCount) / seconds;
+        lastInCount = inCount;
+        lastOutCount = outCount;
+        lastRateAt = now;
+    }
+
+    private void touch(String userId, WebSocketSession session) {
+        for (SessionOutbox outbox : userSessions.getOrDefault(userId, Collections.emptySet())) {
+            if (outbox.getDelegate() == session) {
+                outbox.touch();
+                return;
+            }
+        }
+    }
+
+    private void recordSent(long nanos) {
+        messagesOut.increment();
+        sendLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // compute/computeIfPresent giữ thao tác thêm/gỡ atomic theo user, tránh mất session khi connect/disconnect đồng thời
+    private void addSession(String userId, SessionOutbox outbox) {
+        userSessions.compute(userId, (key, sessions) -> {
+            if (sessions == null) {
+                // Session đầu tiên của user trên node này
+                realtimeBroker.userConnected(userId);
+            }
+            Set<SessionOutbox> result = sessions != null ? sessions : new CopyOnWriteArraySet<>();
+            result.add(outbox);
+            totalSessions.incrementAndGet();
+            return result;
+        });
+    }
+
+    // Gỡ theo đúng session gốc (so sánh identity), xóa entry của user khi không còn session nào.
+    // Presence chưa bị gỡ: node vẫn nhận và ghi log frame của user cho tới khi log bị bỏ (releasePresence)
+    private void removeSession(String userId, WebSocketSession session) {
+        userSessions.computeIfPresent(userId, (key, sessions) -> {
+            if (sessions.removeIf(outbox -> outbox.getDelegate() == session)) {
+                totalSessions.decrementAndGet();
+            }
+            return sessions.isEmpty() ? null : sessions;
+        });
+        if (!userSessions.containsKey(userId)) {
+            eventLog.retain(userId);
+        }
+    }
+
+    // Log của user bị bỏ: gỡ presence nếu user không còn session trên node này (cùng compute với addSession)
+    private void releasePresence(String userId) {
+        userSessions.compute(userId, (key, sessions) -> {
+            if (sessions == null) {
+                realtimeBroker.userDisconnected(userId);
+            }
+            return sessions;
+        });
+    }
+}
@@ -0,0 +1,187 @@
+package com.data.db_instagram.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Hàng đợi gửi của 1 WebSocket session:
+ * - enqueue() chỉ bỏ message vào hàng đợi rồi trả về ngay, thread gọi (request HTTP) không bị chặn bởi client chậm.
+ * - Mỗi session có tối đa 1 task drain trên executor nên thứ tự message được giữ nguyên.
+ * - Hàng đợi có giới hạn: khi đầy thì đóng session (CLOSE) hoặc bỏ message cũ nhất (DROP_OLDEST),
+ *   client sẽ tải lại dữ liệu qua REST khi kết nối lại.
+ * - Session được bọc trong ConcurrentWebSocketSessionDecorator để các thread khác (vd: ping) gửi an toàn
+ *   và áp dụng giới hạn thời gian gửi.
+ * - lastActivityAt cập nhật khi client gửi frame hoặc trả pong, dùng để dọn kết nối half-open.
+ *   Session SockJS có heartbeat riêng nên không ping và không bị dọn theo idle.
+ */
+@Slf4j
+public class SessionOutbox {
+    public enum OverflowStrategy { CLOSE, DROP_OLDEST }
+
+    private final ConcurrentWebSocketSessionDecorator session;
+    private final Executor executor;
+    private final int bufferLimit;
+    private final long sendTimeLimitMs;
+    private final OverflowStrategy overflowStrategy;
+    private final Runnable onDropped;
+    private final Runnable onSlowClose;
+    private final LongConsumer onSent;
+    private final boolean heartbeatSupported;
+
+    private final Deque<TextMessage> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Thời điểm bắt đầu lần gửi đang chạy (0 = không gửi), dùng để phát hiện client bị treo
+    private volatile long sendStartedAt;
+    private volatile long lastActivityAt = System.currentTimeMillis();
+
+    public SessionOutbox(WebSocketSession session, Executor executor, int bufferLimit, long sendTimeLimitMs,
+                         int bufferSizeBytes, OverflowStrategy overflowStrategy,
+                         Runnable onDropped, Runnable onSlowClose, LongConsumer onSent) {
+        this.session = new ConcurrentWebSocketSessionDecorator(session, (int) sendTimeLimitMs, bufferSizeBytes,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+        this.executor = executor;
+        this.bufferLimit = bufferLimit;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.overflowStrategy = overflowStrategy;
+        this.onDropped = onDropped;
+        this.onSlowClose = onSlowClose;
+        this.onSent = onSent;
+        this.heartbeatSupported = !(session instanceof SockJsSession);
+    }
+
+    /**
+     * Đưa message vào hàng đợi, trả về false nếu session đã đóng hoặc bị đóng vì quá tải
+     */
+    public boolean enqueue(TextMessage message) {
+        if (!session.isOpen()) {
+            return false;
+        }
+
+        long startedAt = sendStartedAt;
+        if (startedAt != 0 && System.currentTimeMillis() - startedAt > sendTimeLimitMs) {
+            onSlowClose.run();
+            close("send time limit exceeded");
+            return false;
+        }
+
+        if (depth.get() >= bufferLimit) {
+            if (overflowStrategy == OverflowStrategy.CLOSE) {
+                onSlowClose.run();
+                close("outbound buffer full");
+                return false;
+            }
+            if (queue.pollFirst() != null) {
+                depth.decrementAndGet();
+                onDropped.run();
+            }
+        }
+
+        queue.offerLast(message);
+        depth.incrementAndGet();
+        schedule();
+        return true;
+    }
+
+    /**
+     * Client vừa gửi frame hoặc pong
+     */
+    public void touch() {
+        lastActivityAt = System.currentTimeMillis();
+    }
+
+    /**
+     * true nếu client không phản hồi quá idleTimeoutMs (chỉ áp dụng cho WebSocket thuần)
+     */
+    public boolean isIdle(long now, long idleTimeoutMs) {
+        return heartbeatSupported && now - lastActivityAt > idleTimeoutMs;
+    }
+
+    /**
+     * Gửi ping qua decorator (an toàn với thread drain), client trả pong sẽ gọi touch()
+     */
+    public void ping() {
+        if (!heartbeatSupported || !session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new PingMessage());
+        } catch (Exception e) {
+            log.warn("Error pinging session {}: {}", session.getId(), e.getMessage());
+            close("ping failed");
+        }
+    }
+
+    /**
+     * Đóng session không còn phản hồi (half-open)
+     */
+    public void closeIdle() {
+        close("idle timeout");
+    }
+
+    public WebSocketSession getDelegate() {
+        return session.getDelegate();
+    }
+
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    public int getBufferDepth() {
+        return depth.get();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        do {
+            TextMessage message;
+            while ((message = queue.pollFirst()) != null) {
+                depth.decrementAndGet();
+                sendStartedAt = System.currentTimeMillis();
+                long startNanos = System.nanoTime();
+                try {
+                    session.sendMessage(message);
+                    onSent.accept(System.nanoTime() - startNanos);
+                } catch (Exception e) {
+                    log.warn("Error sending to session {}: {}", session.getId(), e.getMessage());
+                    close("send failed");
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+            scheduled.set(false);
+            // Message được thêm sau khi vòng lặp thoát nhưng trước khi bỏ cờ: tự drain tiếp thay vì chờ lần enqueue sau
+        } while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+    }
+
+    private void close(String reason) {
+        while (queue.pollFirst() != null) {
+            depth.decrementAndGet();
+        }
+        try {
+            if (session.isOpen()) {
+                log.warn("Closing WebSocket session {}: {}", session.getId(), reason);
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+        } catch (Exception e) {
+            log.debug("Error closing session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.data.db_instagram.handler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /actuator/websocket: ảnh chụp nhanh trạng thái WebSocket của node này
+ * (kết nối, tốc độ message in/out, độ trễ gửi, frame bị bỏ). Số liệu chi tiết vẫn có ở /actuator/metrics.
+ */
+@Component
+@Endpoint(id = "websocket")
+@RequiredArgsConstructor
+public class WebSocketMetricsEndpoint {
+    private final MessageWebSocketHandler webSocketHandler;
+    private final MeterRegistry meterRegistry;
+
+    @ReadOperation
+    public Map<String, Object> websocket() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", webSocketHandler.getTotalSessionCount());
+        stats.put("users", webSocketHandler.getConnectedUsersCount());
+        stats.put("bufferedMessages", webSocketHandler.getBufferedMessageCount());
+        stats.put("messagesInPerSecond", webSocketHandler.getInboundRate());
+        stats.put("messagesOutPerSecond", webSocketHandler.getOutboundRate());
+        stats.put("messagesIn", count("websocket.messages.in"));
+        stats.put("messagesOut", count("websocket.messages.out"));
+        stats.put("droppedFrames", count("websocket.outbound.dropped"));
+        stats.put("slowSessionsClosed", count("websocket.outbound.slow.closed"));
+        stats.put("idleSessionsReaped", count("websocket.sessions.reaped"));
+        stats.put("sendLatency", sendLatency());
+        return stats;
+    }
+
+    private long count(String name) {
+        Counter counter = meterRegistry.find(name).counter();
+        return counter != null ? (long) counter.count() : 0;
+    }
+
+    private Map<String, Object> sendLatency() {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        Timer timer = meterRegistry.find("websocket.outbound.send.latency").timer();
+        if (timer == null) {
+            return latency;
+        }
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        latency.put("count", snapshot.count());
+        latency.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+        latency.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            latency.put("p" + Math.round(percentile.percentile() * 100) + "Ms", percentile.value(TimeUnit.MILLISECONDS));
+        }
+        return latency;
+    }
+}
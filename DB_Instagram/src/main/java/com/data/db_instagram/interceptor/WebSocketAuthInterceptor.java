@@ -1,6 +1,9 @@
 package com.data.db_instagram.interceptor;
 
 import com.data.db_instagram.security.jwt.JwtProvider;
+import com.data.db_instagram.services.DeactivatedUserCache;
+import com.data.db_instagram.services.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.server.ServerHttpRequest;
@@ -19,6 +22,8 @@ import java.util.UUID;
 public class WebSocketAuthInterceptor implements HandshakeInterceptor {
     
     private final JwtProvider jwtProvider;
+    private final DeactivatedUserCache deactivatedUserCache;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
@@ -40,18 +45,39 @@ public class WebSocketAuthInterceptor implements HandshakeInterceptor {
                 return false;
             }
             
-            if (!jwtProvider.validateToken(token)) {
+            Claims claims = jwtProvider.parseClaims(token);
+            if (claims == null) {
                 log.warn("WebSocket connection rejected: Invalid token");
                 return false;
             }
             
-            UUID userId = jwtProvider.extractUserId(token);
+            UUID userId = JwtProvider.userIdFrom(claims);
             if (userId == null) {
                 log.warn("WebSocket connection rejected: Cannot extract userId from token");
                 return false;
             }
+
+            if (deactivatedUserCache.isDeactivated(userId)) {
+                log.warn("WebSocket connection rejected: User {} is deactivated", userId);
+                return false;
+            }
+
+            if (tokenRevocationService.isRevoked(userId, claims.getIssuedAt())) {
+                log.warn("WebSocket connection rejected: Token of user {} has been revoked", userId);
+                return false;
+            }
             
             attributes.put("userId", userId.toString());
+
+            // Seq cuối client đã nhận, handler replay các sự kiện bị lỡ khi kết nối lại
+            String lastSeq = servletRequest.getServletRequest().getParameter("lastSeq");
+            if (lastSeq != null && !lastSeq.isEmpty()) {
+                try {
+                    attributes.put("lastSeq", Long.parseLong(lastSeq));
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring invalid lastSeq {} for user {}", lastSeq, userId);
+                }
+            }
             log.info("WebSocket connection authenticated for user: {}", userId);
             return true;
         }
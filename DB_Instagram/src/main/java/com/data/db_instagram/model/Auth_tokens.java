@@ -17,8 +17,13 @@ public class Auth_tokens {
     @Column(name = "user_id", nullable = false)
     private UUID user_id;
     
-    @Column(name = "token", columnDefinition = "TEXT", nullable = false)
+    // Cột cũ chứa JWT gốc, token mới chỉ lưu token_hash
+    @Column(name = "token", columnDefinition = "TEXT")
     private String token;
+
+    // SHA-256 hex của refresh token, unique index - dùng để tra cứu/revoke
+    @Column(name = "token_hash", length = 64, unique = true)
+    private String token_hash;
     
     @Column(name = "device_info", columnDefinition = "TEXT")
     private String device_info;
@@ -28,6 +33,10 @@ public class Auth_tokens {
     
     @Column(name = "revoked")
     private Boolean revoked = false;
+
+    // Thời điểm revoke (null khi còn active) - job purge tính thời gian giữ lại từ cột này
+    @Column(name = "revoked_at")
+    private Date revoked_at;
     
     @Column(name = "created_at")
     private Date created_at = new Date();
@@ -0,0 +1,41 @@
+package com.data.db_instagram.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.UUID;
+
+// Trạng thái inbox của từng user với 1 người: message cuối + số tin chưa đọc, để không phải đếm lại từ bảng messages
+@Data
+@Entity
+@Table(name = "conversation_state", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "peer_id"})
+})
+public class Conversation_state {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    // Chủ inbox
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    // Người đang nhắn tin với user_id (bằng user_id nếu tự nhắn tin)
+    @Column(name = "peer_id", nullable = false)
+    private UUID peerId;
+
+    @Column(name = "last_message_id")
+    private UUID lastMessageId;
+
+    // Sao chép từ messages.created_at để sắp xếp inbox theo index (user_id, last_message_at)
+    @Column(name = "last_message_at")
+    private Date lastMessageAt;
+
+    // Số tin peer gửi cho user mà user chưa đọc
+    @Column(name = "unread_count", nullable = false)
+    private Long unreadCount = 0L;
+
+    @Column(name = "updated_at", nullable = false)
+    private Date updatedAt = new Date();
+}
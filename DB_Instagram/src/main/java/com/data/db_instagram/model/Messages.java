@@ -20,6 +20,11 @@ public class Messages {
     @Column(name = "to_user", nullable = false)
     private UUID to_user;
     
+    // Khóa chuẩn của cặp user (không phụ thuộc chiều gửi) để đọc lịch sử chat trên 1 index
+    // (conversation_key, created_at, id) thay vì OR 2 chiều from_user/to_user
+    @Column(name = "conversation_key", length = 73)
+    private String conversation_key;
+    
     @Column(name = "content", columnDefinition = "TEXT")
     private String content;
     
@@ -39,4 +44,18 @@ public class Messages {
     @ManyToOne
     @JoinColumn(name = "to_user", insertable = false, updatable = false)
     private Users toUser;
+    
+    @PrePersist
+    private void assignConversationKey() {
+        if (conversation_key == null) {
+            conversation_key = conversationKey(from_user, to_user);
+        }
+    }
+    
+    // So sánh theo chuỗi để khớp với LEAST/GREATEST(uuid::text) trong migration backfill
+    public static String conversationKey(UUID userA, UUID userB) {
+        String a = userA.toString();
+        String b = userB.toString();
+        return a.compareTo(b) <= 0 ? a + ":" + b : b + ":" + a;
+    }
 }
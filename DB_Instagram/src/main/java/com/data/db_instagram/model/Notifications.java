@@ -8,7 +8,9 @@ import java.util.UUID;
 
 @Data
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "type", "group_object_id"})
+})
 public class Notifications {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -25,10 +27,32 @@ public class Notifications {
     
     @Column(name = "payload", columnDefinition = "JSON")
     private String payload; // chi tiết tùy loại
+
+    // Đối tượng chính của notification (post, comment, friend_request, message) - xem NotificationPayload.
+    // Notification gộp (post_reaction, comment) gộp theo (user_id, type, object_id) với object_id là post id
+    @Column(name = "object_type", length = 32)
+    private String object_type;
+
+    @Column(name = "object_id")
+    private UUID object_id;
+
+    // = object_id với dòng gộp, NULL với notification đơn: unique (user_id, type, group_object_id) chỉ chặn trùng dòng gộp
+    // (NULL không tính là trùng) trên mọi DB, không cần partial index
+    @Column(name = "group_object_id")
+    private UUID group_object_id;
+
+    // Số actor đã gộp vào dòng này; actor_id là actor mới nhất
+    @Column(name = "actor_count", nullable = false)
+    private Integer actor_count = 1;
+
+    // Tối đa vài actor gần nhất, mới nhất trước, phân cách bằng dấu phẩy
+    @Column(name = "recent_actor_ids", columnDefinition = "TEXT")
+    private String recent_actor_ids;
     
     @Column(name = "is_read")
     private Boolean is_read = false;
     
+    // Với dòng gộp: thời điểm actor mới nhất tác động (dòng được đẩy lên đầu danh sách)
     @Column(name = "created_at")
     private Date created_at = new Date();
     
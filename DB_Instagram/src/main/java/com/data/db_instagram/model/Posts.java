@@ -2,6 +2,7 @@ package com.data.db_instagram.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.Date;
 import java.util.UUID;
@@ -35,6 +36,16 @@ public class Posts {
     @Column(name = "is_deleted")
     private Boolean isDeleted = false;
     
+    // Counter denormalized - cập nhật atomic khi react/comment, PostCounterService reconcile định kỳ.
+    // Chỉ đọc qua entity: save() khi sửa/xóa post không ghi đè giá trị đã load (mất increment xảy ra ở giữa)
+    @ColumnDefault("0")
+    @Column(name = "reaction_count", nullable = false, insertable = false, updatable = false)
+    private Long reactionCount = 0L;
+    
+    @ColumnDefault("0")
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false)
+    private Long commentCount = 0L;
+    
     @ManyToOne
     @JoinColumn(name = "user_id", insertable = false, updatable = false)
     private Users user;
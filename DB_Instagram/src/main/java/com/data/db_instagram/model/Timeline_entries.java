@@ -0,0 +1,34 @@
+package com.data.db_instagram.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.UUID;
+
+// Hộp thư feed của từng user (fan-out-on-write): mỗi dòng là 1 post được đẩy vào home timeline của user_id
+@Data
+@Entity
+@Table(name = "timeline_entries", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "post_id"})
+})
+public class Timeline_entries {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    // Chủ timeline (người sẽ thấy post trong feed)
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "post_id", nullable = false)
+    private UUID postId;
+
+    // Tác giả của post - dùng để dọn timeline khi unfriend
+    @Column(name = "author_id", nullable = false)
+    private UUID authorId;
+
+    // Sao chép từ posts.created_at để đọc feed theo range trên index (user_id, created_at)
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+}
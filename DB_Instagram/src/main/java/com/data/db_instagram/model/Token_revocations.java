@@ -0,0 +1,23 @@
+package com.data.db_instagram.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.UUID;
+
+// Access token của user có iat trước revokedBefore không còn hợp lệ (logout khỏi mọi thiết bị)
+@Data
+@Entity
+@Table(name = "token_revocations")
+public class Token_revocations {
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "revoked_before", nullable = false)
+    private Date revokedBefore;
+
+    @Column(name = "updated_at", nullable = false)
+    private Date updatedAt = new Date();
+}
@@ -2,6 +2,7 @@ package com.data.db_instagram.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.Date;
 import java.util.UUID;
@@ -32,4 +33,9 @@ public class Users {
     
     @Column(name = "updated_at")
     private Date updated_at;
+
+    // Số bạn bè denormalized - chỉ đổi qua IUserRepository.incrementFriendCount, save() entity không ghi đè
+    @ColumnDefault("0")
+    @Column(name = "friend_count", nullable = false, insertable = false, updatable = false)
+    private Long friend_count = 0L;
 }
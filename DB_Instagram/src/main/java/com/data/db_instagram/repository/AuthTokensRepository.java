@@ -5,41 +5,56 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface AuthTokensRepository extends JpaRepository<Auth_tokens, UUID> {
-    // Tìm token theo token string
-    Optional<Auth_tokens> findByToken(String token);
-    
-    // Tìm token theo user_id và token
-    Optional<Auth_tokens> findByUser_idAndToken(UUID userId, String token);
+    // Tìm token theo SHA-256 của token string (unique index)
+    @Query("SELECT a FROM Auth_tokens a WHERE a.token_hash = :tokenHash")
+    Optional<Auth_tokens> findByTokenHash(@Param("tokenHash") String tokenHash);
     
     // Tìm tất cả token của user (chưa bị revoke)
     @Query("SELECT a FROM Auth_tokens a WHERE a.user_id = :userId AND a.revoked = false")
     java.util.List<Auth_tokens> findActiveTokensByUserId(@Param("userId") UUID userId);
+
+    // Id token active của user, mới nhất trước - phần vượt giới hạn sẽ bị revoke
+    @Query("SELECT a.id FROM Auth_tokens a WHERE a.user_id = :userId AND a.revoked = false ORDER BY a.created_at DESC, a.id DESC")
+    List<UUID> findActiveIdsNewestFirst(@Param("userId") UUID userId);
     
-    // Đánh dấu token là revoked
+    // Đánh dấu token là revoked (revoke lại token đã revoke không đổi revoked_at)
     @Modifying
-    @Query("UPDATE Auth_tokens a SET a.revoked = true WHERE a.token = :token")
-    void revokeToken(@Param("token") String token);
+    @Query("UPDATE Auth_tokens a SET a.revoked = true, a.revoked_at = CURRENT_TIMESTAMP WHERE a.token_hash = :tokenHash AND a.revoked = false")
+    int revokeByTokenHash(@Param("tokenHash") String tokenHash);
+
+    @Modifying
+    @Query("UPDATE Auth_tokens a SET a.revoked = true, a.revoked_at = CURRENT_TIMESTAMP WHERE a.id IN :ids AND a.revoked = false")
+    int revokeByIds(@Param("ids") Collection<UUID> ids);
     
     // Đánh dấu tất cả token của user là revoked
     @Modifying
-    @Query("UPDATE Auth_tokens a SET a.revoked = true WHERE a.user_id = :userId AND a.revoked = false")
+    @Query("UPDATE Auth_tokens a SET a.revoked = true, a.revoked_at = CURRENT_TIMESTAMP WHERE a.user_id = :userId AND a.revoked = false")
     void revokeAllUserTokens(@Param("userId") UUID userId);
     
-    // Xóa token đã hết hạn
+    // 1 batch id token có thể xóa: đã hết hạn, hoặc đã revoke đủ lâu (giữ lại ngắn hạn để debug/audit)
+    @Query("SELECT a.id FROM Auth_tokens a WHERE a.expires_at < :now OR (a.revoked = true AND a.revoked_at < :revokedBefore)")
+    List<UUID> findPurgeableIds(@Param("now") Date now, @Param("revokedBefore") Date revokedBefore, Pageable pageable);
+
+    // Mỗi batch là 1 transaction ngắn theo primary key, không khóa dải lớn của bảng
     @Modifying
-    @Query("DELETE FROM Auth_tokens a WHERE a.expires_at < :now")
-    void deleteExpiredTokens(@Param("now") Date now);
+    @Transactional
+    @Query("DELETE FROM Auth_tokens a WHERE a.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<UUID> ids);
     
     // Kiểm tra token có hợp lệ không (chưa hết hạn và chưa bị revoke)
-    @Query("SELECT COUNT(a) > 0 FROM Auth_tokens a WHERE a.token = :token AND a.revoked = false AND a.expires_at > :now")
-    boolean isTokenValid(@Param("token") String token, @Param("now") Date now);
+    @Query("SELECT COUNT(a) > 0 FROM Auth_tokens a WHERE a.token_hash = :tokenHash AND a.revoked = false AND a.expires_at > :now")
+    boolean isTokenValid(@Param("tokenHash") String tokenHash, @Param("now") Date now);
 }
 
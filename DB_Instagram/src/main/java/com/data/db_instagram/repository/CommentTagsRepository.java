@@ -2,6 +2,8 @@ package com.data.db_instagram.repository;
 
 import com.data.db_instagram.model.Comment_tags;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,6 +13,10 @@ import java.util.UUID;
 public interface CommentTagsRepository extends JpaRepository<Comment_tags, UUID> {
     List<Comment_tags> findByComment_id(UUID commentId);
     
+    // Batch load tags cho nhiều comment
+    @Query("SELECT ct FROM Comment_tags ct WHERE ct.comment_id IN :commentIds")
+    List<Comment_tags> findByCommentIdIn(@Param("commentIds") List<UUID> commentIds);
+    
     void deleteByComment_id(UUID commentId);
 }
 
@@ -1,11 +1,13 @@
 package com.data.db_instagram.repository;
 
 import com.data.db_instagram.model.Comments;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -20,5 +22,51 @@ public interface CommentsRepository extends JpaRepository<Comments, UUID> {
     // Batch load comment counts for multiple posts - optimized for performance
     @Query("SELECT c.postId, COUNT(c) FROM Comments c WHERE c.postId IN :postIds AND c.isDeleted = false GROUP BY c.postId")
     List<Object[]> countByPostIdInAndIsDeletedFalse(@Param("postIds") List<UUID> postIds);
+    
+    // Batch đếm replies (chưa xóa) cho nhiều comment - 1 query GROUP BY thay vì load từng list replies
+    @Query("SELECT c.parentComment, COUNT(c) FROM Comments c WHERE c.parentComment IN :parentIds AND c.isDeleted = false GROUP BY c.parentComment")
+    List<Object[]> countRepliesByParentCommentIn(@Param("parentIds") List<UUID> parentIds);
+    
+    // User đã có comment gốc khác trên post chưa (kể cả đã xóa: xóa comment không bỏ actor khỏi notification gộp).
+    // Seek theo idx_comments_user (user_id)
+    @Query("SELECT COUNT(c) > 0 FROM Comments c WHERE c.userId = :userId AND c.postId = :postId " +
+           "AND c.parentComment IS NULL AND c.id <> :commentId")
+    boolean existsOtherTopLevelComment(
+            @Param("postId") UUID postId,
+            @Param("userId") UUID userId,
+            @Param("commentId") UUID commentId
+    );
+    
+    // Comments gốc của post (mới nhất trước) - trang đầu
+    @Query("SELECT c FROM Comments c WHERE c.postId = :postId AND c.parentComment IS NULL AND c.isDeleted = false " +
+           "ORDER BY c.createdAt DESC, c.id DESC")
+    List<Comments> findTopLevelLatest(@Param("postId") UUID postId, Pageable pageable);
+    
+    // Comments gốc của post - các trang sau cursor
+    @Query("SELECT c FROM Comments c WHERE c.postId = :postId AND c.parentComment IS NULL AND c.isDeleted = false " +
+           "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id)) " +
+           "ORDER BY c.createdAt DESC, c.id DESC")
+    List<Comments> findTopLevelBefore(
+            @Param("postId") UUID postId,
+            @Param("createdAt") Date createdAt,
+            @Param("id") UUID id,
+            Pageable pageable
+    );
+    
+    // Replies của comment (cũ nhất trước) - trang đầu
+    @Query("SELECT c FROM Comments c WHERE c.parentComment = :parentId AND c.isDeleted = false " +
+           "ORDER BY c.createdAt ASC, c.id ASC")
+    List<Comments> findRepliesEarliest(@Param("parentId") UUID parentId, Pageable pageable);
+    
+    // Replies của comment - các trang sau cursor
+    @Query("SELECT c FROM Comments c WHERE c.parentComment = :parentId AND c.isDeleted = false " +
+           "AND (c.createdAt > :createdAt OR (c.createdAt = :createdAt AND c.id > :id)) " +
+           "ORDER BY c.createdAt ASC, c.id ASC")
+    List<Comments> findRepliesAfter(
+            @Param("parentId") UUID parentId,
+            @Param("createdAt") Date createdAt,
+            @Param("id") UUID id,
+            Pageable pageable
+    );
 }
 
@@ -0,0 +1,59 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.model.Conversation_state;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ConversationStateRepository extends JpaRepository<Conversation_state, UUID>, ConversationStateRepositoryCustom {
+    // Inbox của user: 1 range scan trên index (user_id, last_message_at)
+    @Query("SELECT s FROM Conversation_state s WHERE s.userId = :userId AND s.lastMessageId IS NOT NULL " +
+           "ORDER BY s.lastMessageAt DESC, s.peerId DESC")
+    List<Conversation_state> findInbox(@Param("userId") UUID userId);
+
+    boolean existsByUserIdAndPeerId(UUID userId, UUID peerId);
+
+    // Ghi nhận message mới trong conversation; trả về 0 nếu chưa có dòng state
+    @Modifying
+    @Query("UPDATE Conversation_state s SET s.lastMessageId = :messageId, s.lastMessageAt = :messageAt, " +
+           "s.unreadCount = s.unreadCount + :unreadDelta, s.updatedAt = :now " +
+           "WHERE s.userId = :userId AND s.peerId = :peerId")
+    int recordMessage(
+            @Param("userId") UUID userId,
+            @Param("peerId") UUID peerId,
+            @Param("messageId") UUID messageId,
+            @Param("messageAt") Date messageAt,
+            @Param("unreadDelta") long unreadDelta,
+            @Param("now") Date now
+    );
+
+    // Cộng/trừ unread_count, không để âm
+    @Modifying
+    @Query("UPDATE Conversation_state s SET s.unreadCount = CASE WHEN s.unreadCount + :delta < 0 THEN 0 ELSE s.unreadCount + :delta END, " +
+           "s.updatedAt = :now WHERE s.userId = :userId AND s.peerId = :peerId")
+    int addUnread(@Param("userId") UUID userId, @Param("peerId") UUID peerId, @Param("delta") long delta, @Param("now") Date now);
+
+    @Modifying
+    @Query("UPDATE Conversation_state s SET s.unreadCount = 0, s.updatedAt = :now " +
+           "WHERE s.userId = :userId AND s.peerId = :peerId AND s.unreadCount <> 0")
+    int resetUnread(@Param("userId") UUID userId, @Param("peerId") UUID peerId, @Param("now") Date now);
+
+    // Đặt lại message cuối (vd: sau khi xóa message cuối cùng); messageId null nếu conversation đã trống
+    @Modifying
+    @Query("UPDATE Conversation_state s SET s.lastMessageId = :messageId, s.lastMessageAt = :messageAt, s.updatedAt = :now " +
+           "WHERE s.userId = :userId AND s.peerId = :peerId")
+    int setLastMessage(
+            @Param("userId") UUID userId,
+            @Param("peerId") UUID peerId,
+            @Param("messageId") UUID messageId,
+            @Param("messageAt") Date messageAt,
+            @Param("now") Date now
+    );
+}
@@ -0,0 +1,9 @@
+package com.data.db_instagram.repository;
+
+import java.util.Date;
+import java.util.UUID;
+
+public interface ConversationStateRepositoryCustom {
+    // Tạo dòng state trống (user_id, peer_id) nếu chưa có, trên connection của transaction hiện tại
+    void insertIfAbsent(UUID userId, UUID peerId, Date now);
+}
@@ -0,0 +1,36 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.utils.SqlDialect;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Insert-if-absent bằng native SQL theo dialect: trùng unique (user_id, peer_id) thì bỏ qua, không ném lỗi
+ * nên không làm hỏng transaction của caller (không cần transaction / connection riêng).
+ */
+public class ConversationStateRepositoryCustomImpl implements ConversationStateRepositoryCustom {
+    private static final String INSERT = "INSERT INTO conversation_state (id, user_id, peer_id, unread_count, updated_at) ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void insertIfAbsent(UUID userId, UUID peerId, Date now) {
+        String sql = switch (SqlDialect.of(entityManager)) {
+            case MYSQL -> INSERT + "VALUES (:id, :userId, :peerId, 0, :now) ON DUPLICATE KEY UPDATE id = id";
+            case POSTGRESQL -> INSERT + "VALUES (:id, :userId, :peerId, 0, :now) ON CONFLICT (user_id, peer_id) DO NOTHING";
+            // H2 (test): không chặn được race nhưng đủ cho chạy đơn luồng
+            case OTHER -> INSERT + "SELECT :id, :userId, :peerId, 0, :now WHERE NOT EXISTS " +
+                    "(SELECT 1 FROM conversation_state WHERE user_id = :userId AND peer_id = :peerId)";
+        };
+        entityManager.createNativeQuery(sql)
+                .setParameter("id", UUID.randomUUID())
+                .setParameter("userId", userId)
+                .setParameter("peerId", peerId)
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+}
@@ -26,5 +26,14 @@ public interface FriendRepository extends JpaRepository<Friends, UUID> {
     
     @Query("SELECT COUNT(f) > 0 FROM Friends f WHERE (f.user_a = :userA AND f.user_b = :userB) OR (f.user_a = :userB AND f.user_b = :userA)")
     boolean existsByUserAAndUserB(@Param("userA") UUID userA, @Param("userB") UUID userB);
-}
 
+    // Lấy danh sách id bạn bè của user (không load entity)
+    @Query("SELECT CASE WHEN f.user_a = :userId THEN f.user_b ELSE f.user_a END FROM Friends f WHERE f.user_a = :userId OR f.user_b = :userId")
+    List<UUID> findFriendIds(@Param("userId") UUID userId);
+    
+    // Bạn bè của user có số bạn bè vượt ngưỡng (tác giả "fan-out-on-read"):
+    // quét tập nhỏ users.friend_count > threshold rồi kiểm tra quan hệ bạn bè, không đếm friends lúc đọc
+    @Query("SELECT u.id FROM Users u WHERE u.friend_count > :threshold " +
+           "AND EXISTS (SELECT 1 FROM Friends f WHERE (f.user_a = :userId AND f.user_b = u.id) OR (f.user_b = :userId AND f.user_a = u.id))")
+    List<UUID> findFriendIdsWithFriendCountAbove(@Param("userId") UUID userId, @Param("threshold") long threshold);
+}
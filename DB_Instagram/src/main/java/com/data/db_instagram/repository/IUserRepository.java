@@ -2,6 +2,9 @@ package com.data.db_instagram.repository;
 
 import com.data.db_instagram.model.Users;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,5 +21,18 @@ public interface IUserRepository extends JpaRepository<Users, UUID> {
     List<Users> findByPhoneContaining(String phone);
     List<Users> findByEmailContaining(String email);
     List<Users> findByEmailContainingOrPhoneContaining(String email, String phone);
+
+    // Tập nhỏ (chỉ tài khoản bị khóa) - DeactivatedUserCache nạp định kỳ
+    @Query("SELECT u.id FROM Users u WHERE u.is_active = false")
+    List<UUID> findInactiveUserIds();
+
+    @Query("SELECT u.friend_count FROM Users u WHERE u.id = :userId")
+    Long findFriendCount(@Param("userId") UUID userId);
+
+    // Cập nhật atomic số bạn bè khi kết bạn / hủy kết bạn (không load entity)
+    @Modifying
+    @Query("UPDATE Users u SET u.friend_count = CASE WHEN u.friend_count + :delta < 0 THEN 0 ELSE u.friend_count + :delta END " +
+           "WHERE u.id IN :userIds")
+    int incrementFriendCount(@Param("userIds") List<UUID> userIds, @Param("delta") long delta);
 }
 
@@ -1,23 +1,51 @@
 package com.data.db_instagram.repository;
 
 import com.data.db_instagram.model.Messages;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface MessagesRepository extends JpaRepository<Messages, UUID> {
     
-    // Tìm tất cả tin nhắn giữa 2 user
-    @Query("SELECT m FROM Messages m WHERE " +
-           "(m.from_user = :user1 AND m.to_user = :user2) OR " +
-           "(m.from_user = :user2 AND m.to_user = :user1) " +
-           "ORDER BY m.created_at ASC")
-    List<Messages> findConversationBetweenUsers(@Param("user1") UUID user1, @Param("user2") UUID user2);
+    // Tìm tất cả tin nhắn giữa 2 user (key = Messages.conversationKey)
+    @Query("SELECT m FROM Messages m WHERE m.conversation_key = :conversationKey " +
+           "ORDER BY m.created_at ASC, m.id ASC")
+    List<Messages> findConversation(@Param("conversationKey") String conversationKey);
+    
+    // Keyset pagination lịch sử chat trên index (conversation_key, created_at, id)
+    // Trang mới nhất / cũ hơn cursor: đọc từ mới đến cũ
+    @Query("SELECT m FROM Messages m WHERE m.conversation_key = :conversationKey " +
+           "ORDER BY m.created_at DESC, m.id DESC")
+    List<Messages> findConversationLatest(@Param("conversationKey") String conversationKey, Pageable pageable);
+    
+    @Query("SELECT m FROM Messages m WHERE m.conversation_key = :conversationKey " +
+           "AND (m.created_at < :createdAt OR (m.created_at = :createdAt AND m.id < :id)) " +
+           "ORDER BY m.created_at DESC, m.id DESC")
+    List<Messages> findConversationBefore(
+            @Param("conversationKey") String conversationKey,
+            @Param("createdAt") Date createdAt,
+            @Param("id") UUID id,
+            Pageable pageable
+    );
+    
+    // Tin nhắn mới hơn cursor: đọc từ cũ đến mới
+    @Query("SELECT m FROM Messages m WHERE m.conversation_key = :conversationKey " +
+           "AND (m.created_at > :createdAt OR (m.created_at = :createdAt AND m.id > :id)) " +
+           "ORDER BY m.created_at ASC, m.id ASC")
+    List<Messages> findConversationAfter(
+            @Param("conversationKey") String conversationKey,
+            @Param("createdAt") Date createdAt,
+            @Param("id") UUID id,
+            Pageable pageable
+    );
     
     // Tìm tin nhắn chưa đọc của user
     @Query("SELECT m FROM Messages m WHERE m.to_user = :userId AND m.is_read = false " +
@@ -29,6 +57,12 @@ public interface MessagesRepository extends JpaRepository<Messages, UUID> {
            "m.to_user = :userId AND m.from_user = :fromUserId AND m.is_read = false")
     long countUnreadMessages(@Param("userId") UUID userId, @Param("fromUserId") UUID fromUserId);
     
+    // Đánh dấu đã đọc toàn bộ tin nhắn fromUserId gửi cho userId - 1 câu UPDATE, trả về số dòng đã đổi
+    @Modifying
+    @Query("UPDATE Messages m SET m.is_read = true, m.updated_at = :now " +
+           "WHERE m.to_user = :userId AND m.from_user = :fromUserId AND m.is_read = false")
+    int markAllAsRead(@Param("userId") UUID userId, @Param("fromUserId") UUID fromUserId, @Param("now") Date now);
+    
     // Lấy danh sách user đã nhắn tin với current user (conversations)
     // Tối ưu: chỉ lấy message cuối cùng của mỗi conversation
     @Query("SELECT m FROM Messages m WHERE m.id IN (" +
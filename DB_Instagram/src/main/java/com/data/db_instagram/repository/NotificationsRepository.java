@@ -1,22 +1,43 @@
 package com.data.db_instagram.repository;
 
 import com.data.db_instagram.model.Notifications;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface NotificationsRepository extends JpaRepository<Notifications, UUID> {
+public interface NotificationsRepository extends JpaRepository<Notifications, UUID>, NotificationsRepositoryCustom {
     
     // Tìm tất cả notifications của user, sắp xếp theo thời gian mới nhất
-    @Query("SELECT n FROM Notifications n WHERE n.user_id = :userId " +
+    // (bỏ qua dòng gộp trống actor_count = 0 vừa được tạo trước khi có actor)
+    @Query("SELECT n FROM Notifications n WHERE n.user_id = :userId AND n.actor_count > 0 " +
            "ORDER BY n.created_at DESC")
     List<Notifications> findByUserIdOrderByCreatedAtDesc(@Param("userId") UUID userId);
     
+    // Dòng gộp (user, type, object) - lock để các actor cùng lúc cập nhật count / recent actors tuần tự
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT n FROM Notifications n WHERE n.user_id = :userId AND n.type = :type AND n.group_object_id = :objectId")
+    Optional<Notifications> findGroupForUpdate(
+            @Param("userId") UUID userId,
+            @Param("type") String type,
+            @Param("objectId") UUID objectId
+    );
+
+    @Query("SELECT COUNT(n) > 0 FROM Notifications n WHERE n.user_id = :userId AND n.type = :type AND n.group_object_id = :objectId")
+    boolean existsGroup(
+            @Param("userId") UUID userId,
+            @Param("type") String type,
+            @Param("objectId") UUID objectId
+    );
+    
     // Đếm số notifications chưa đọc
     @Query("SELECT COUNT(n) FROM Notifications n WHERE n.user_id = :userId AND n.is_read = false")
     long countUnreadNotifications(@Param("userId") UUID userId);
@@ -26,6 +47,11 @@ public interface NotificationsRepository extends JpaRepository<Notifications, UU
            "ORDER BY n.created_at DESC")
     List<Notifications> findUnreadNotificationsByUserId(@Param("userId") UUID userId);
     
+    // Đánh dấu đã đọc toàn bộ notifications của user - 1 câu UPDATE, trả về số dòng đã đổi
+    @Modifying
+    @Query("UPDATE Notifications n SET n.is_read = true WHERE n.user_id = :userId AND n.is_read = false")
+    int markAllAsRead(@Param("userId") UUID userId);
+    
     // Tìm notification theo type và actor
     @Query("SELECT n FROM Notifications n WHERE n.user_id = :userId AND n.type = :type AND n.actor_id = :actorId " +
            "ORDER BY n.created_at DESC")
@@ -34,44 +60,4 @@ public interface NotificationsRepository extends JpaRepository<Notifications, UU
             @Param("type") String type,
             @Param("actorId") UUID actorId
     );
-    
-    // Kiểm tra xem đã có notification chưa đọc trong khoảng thời gian gần đây
-    @Query("SELECT COUNT(n) > 0 FROM Notifications n WHERE n.user_id = :userId " +
-           "AND n.type = :type AND n.actor_id = :actorId " +
-           "AND n.payload LIKE :payloadPattern " +
-           "AND n.is_read = false " +
-           "AND n.created_at >= :sinceTime")
-    boolean existsUnreadNotificationRecently(
-            @Param("userId") UUID userId,
-            @Param("actorId") UUID actorId,
-            @Param("type") String type,
-            @Param("payloadPattern") String payloadPattern,
-            @Param("sinceTime") java.util.Date sinceTime
-    );
-    
-    // Tìm notification chưa đọc theo userId, type, actorId và payload pattern
-    @Query("SELECT n FROM Notifications n WHERE n.user_id = :userId " +
-           "AND n.type = :type AND n.actor_id = :actorId " +
-           "AND n.payload LIKE :payloadPattern " +
-           "AND n.is_read = false " +
-           "ORDER BY n.created_at DESC")
-    List<Notifications> findUnreadByUserIdAndTypeAndActorIdAndPayloadLike(
-            @Param("userId") UUID userId,
-            @Param("actorId") UUID actorId,
-            @Param("type") String type,
-            @Param("payloadPattern") String payloadPattern
-    );
-    
-    // Kiểm tra xem đã có notification chưa đọc (không giới hạn thời gian)
-    @Query("SELECT COUNT(n) > 0 FROM Notifications n WHERE n.user_id = :userId " +
-           "AND n.type = :type AND n.actor_id = :actorId " +
-           "AND n.payload LIKE :payloadPattern " +
-           "AND n.is_read = false")
-    boolean existsUnreadNotification(
-            @Param("userId") UUID userId,
-            @Param("actorId") UUID actorId,
-            @Param("type") String type,
-            @Param("payloadPattern") String payloadPattern
-    );
 }
-
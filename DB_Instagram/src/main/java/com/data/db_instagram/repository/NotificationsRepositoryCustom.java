@@ -0,0 +1,9 @@
+package com.data.db_instagram.repository;
+
+import java.util.Date;
+import java.util.UUID;
+
+public interface NotificationsRepositoryCustom {
+    // Tạo dòng gộp trống (actor_count 0, đã đọc) nếu nhóm (user_id, type, objectId) chưa có, trên connection của transaction hiện tại
+    void insertGroupIfAbsent(UUID userId, String type, String objectType, UUID objectId, Date now);
+}
@@ -0,0 +1,40 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.utils.SqlDialect;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Insert-if-absent dòng gộp bằng native SQL theo dialect: trùng unique (user_id, type, group_object_id) thì bỏ qua,
+ * không ném lỗi nên không làm hỏng transaction của caller - giống ConversationStateRepositoryCustomImpl.
+ */
+public class NotificationsRepositoryCustomImpl implements NotificationsRepositoryCustom {
+    private static final String INSERT = "INSERT INTO notifications " +
+            "(id, user_id, type, object_type, object_id, group_object_id, actor_count, is_read, created_at) ";
+    private static final String VALUES = "VALUES (:id, :userId, :type, :objectType, :objectId, :objectId, 0, TRUE, :now)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void insertGroupIfAbsent(UUID userId, String type, String objectType, UUID objectId, Date now) {
+        String sql = switch (SqlDialect.of(entityManager)) {
+            case MYSQL -> INSERT + VALUES + " ON DUPLICATE KEY UPDATE id = id";
+            case POSTGRESQL -> INSERT + VALUES + " ON CONFLICT (user_id, type, group_object_id) DO NOTHING";
+            // H2 (test): không chặn được race nhưng đủ cho chạy đơn luồng
+            case OTHER -> INSERT + "SELECT :id, :userId, :type, :objectType, :objectId, :objectId, 0, TRUE, :now WHERE NOT EXISTS " +
+                    "(SELECT 1 FROM notifications WHERE user_id = :userId AND type = :type AND group_object_id = :objectId)";
+        };
+        entityManager.createNativeQuery(sql)
+                .setParameter("id", UUID.randomUUID())
+                .setParameter("userId", userId)
+                .setParameter("type", type)
+                .setParameter("objectType", objectType)
+                .setParameter("objectId", objectId)
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+}
@@ -23,10 +23,22 @@ public interface PostReactionsRepository extends JpaRepository<Post_reactions, U
     Optional<Post_reactions> findByPostIdAndUserId(UUID postId, UUID userId);
     
     List<Post_reactions> findByPostIdOrderByCreatedAtDesc(UUID postId);
-    // Batch load reactions for multiple posts - optimized for performance
-    List<Post_reactions> findByPostIdInOrderByPostIdAscCreatedAtDesc(List<UUID> postIds);
+    // Preview reactions mới nhất của 1 post - dùng index (post_id, created_at)
+    List<Post_reactions> findFirst5ByPostIdOrderByCreatedAtDesc(UUID postId);
+    // Batch load :limit reactions mới nhất cho mỗi post (row_number theo từng post) - không load toàn bộ reactions
+    @Query("SELECT pr FROM Post_reactions pr WHERE pr.id IN (" +
+           "SELECT ranked.id FROM (" +
+           "  SELECT r.id AS id, row_number() OVER (PARTITION BY r.postId ORDER BY r.createdAt DESC, r.id DESC) AS rn " +
+           "  FROM Post_reactions r WHERE r.postId IN :postIds" +
+           ") ranked WHERE ranked.rn <= :limit) " +
+           "ORDER BY pr.postId, pr.createdAt DESC, pr.id DESC")
+    List<Post_reactions> findLatestByPostIdIn(@Param("postIds") List<UUID> postIds, @Param("limit") long limit);
+    // Những post trong danh sách mà user đã react - range scan trên index (user_id, post_id) (migration 014)
+    @Query("SELECT DISTINCT pr.postId FROM Post_reactions pr WHERE pr.userId = :userId AND pr.postId IN :postIds")
+    List<UUID> findReactedPostIds(@Param("userId") UUID userId, @Param("postIds") List<UUID> postIds);
     long countByPostId(UUID postId);
     boolean existsByPostIdAndUserId(UUID postId, UUID userId);
-    void deleteByPostIdAndUserId(UUID postId, UUID userId);
+    // Trả về số reaction đã xóa (dùng để trừ reaction_count)
+    long deleteByPostIdAndUserId(UUID postId, UUID userId);
 }
 
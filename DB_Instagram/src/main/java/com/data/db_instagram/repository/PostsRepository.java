@@ -4,10 +4,13 @@ import com.data.db_instagram.model.Posts;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,50 +27,132 @@ public interface PostsRepository extends JpaRepository<Posts, UUID> {
     // Tìm post theo ID (chưa xóa)
     Optional<Posts> findByIdAndIsDeletedFalse(UUID id);
     
-    // Tìm posts của bạn bè (friends) - với pagination tối ưu
-    // Hiển thị: posts của chính user, posts public, hoặc posts của bạn bè (bất kỳ visibility)
+    // Đếm số posts của user
+    long countByUserIdAndIsDeletedFalse(UUID userId);
+    
+    // Tìm posts có video (reels) - với pagination tối ưu
     @Query("SELECT DISTINCT p FROM Posts p " +
            "WHERE p.isDeleted = false " +
+           "AND EXISTS (SELECT 1 FROM Post_media pm WHERE pm.postId = p.id AND pm.mediaType = 'video') " +
            "AND (p.userId = :userId " +
            "     OR p.visibility = 'public' " +
            "     OR EXISTS (SELECT 1 FROM Friends f WHERE (f.user_a = :userId AND f.user_b = p.userId) OR (f.user_b = :userId AND f.user_a = p.userId))) " +
            "ORDER BY p.createdAt DESC")
-    Page<Posts> findFriendsPosts(@Param("userId") UUID userId, Pageable pageable);
+    Page<Posts> findReels(@Param("userId") UUID userId, Pageable pageable);
     
-    // Tìm posts của bạn bè (friends) - không pagination (cho backward compatibility)
-    // Hiển thị: posts của chính user, posts public, hoặc posts của bạn bè (bất kỳ visibility)
+    // Tìm posts có video (reels) - không pagination (cho backward compatibility)
     @Query("SELECT DISTINCT p FROM Posts p " +
            "WHERE p.isDeleted = false " +
+           "AND EXISTS (SELECT 1 FROM Post_media pm WHERE pm.postId = p.id AND pm.mediaType = 'video') " +
            "AND (p.userId = :userId " +
            "     OR p.visibility = 'public' " +
            "     OR EXISTS (SELECT 1 FROM Friends f WHERE (f.user_a = :userId AND f.user_b = p.userId) OR (f.user_b = :userId AND f.user_a = p.userId))) " +
            "ORDER BY p.createdAt DESC")
-    List<Posts> findFriendsPosts(@Param("userId") UUID userId);
+    List<Posts> findReels(@Param("userId") UUID userId);
     
-    // Tìm tất cả public posts (chưa xóa)
-    List<Posts> findByVisibilityAndIsDeletedFalseOrderByCreatedAtDesc(String visibility);
+    // Posts mới nhất của một nhóm tác giả (dùng cho fan-out-on-read và backfill timeline)
+    @Query("SELECT p FROM Posts p WHERE p.userId IN :userIds AND p.isDeleted = false " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Posts> findRecentByUserIdIn(@Param("userIds") List<UUID> userIds, Pageable pageable);
     
-    // Đếm số posts của user
-    long countByUserIdAndIsDeletedFalse(UUID userId);
+    @Query("SELECT p FROM Posts p WHERE p.userId IN :userIds AND p.isDeleted = false " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Posts> findRecentByUserIdInBefore(
+            @Param("userIds") List<UUID> userIds,
+            @Param("createdAt") Date createdAt,
+            @Param("id") UUID id,
+            Pageable pageable
+    );
     
-    // Tìm posts có video (reels) - với pagination tối ưu
-    @Query("SELECT DISTINCT p FROM Posts p " +
+    // Keyset pagination theo (created_at, id) - không OFFSET, không COUNT
+    // Posts của user - trang đầu
+    List<Posts> findByUserIdAndIsDeletedFalseOrderByCreatedAtDescIdDesc(UUID userId, Pageable pageable);
+    
+    // Posts của user - các trang sau cursor
+    @Query("SELECT p FROM Posts p WHERE p.userId = :userId AND p.isDeleted = false " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Posts> findUserPostsBefore(
+            @Param("userId") UUID userId,
+            @Param("createdAt") Date createdAt,
+            @Param("id") UUID id,
+            Pageable pageable
+    );
+    
+    // Public posts - trang đầu
+    // ORDER BY lặp lại các cột so sánh bằng để optimizer đi theo index (visibility, is_deleted, created_at, id) mà không cần sort
+    @Query("SELECT p FROM Posts p WHERE p.visibility = :visibility AND p.isDeleted = false " +
+           "ORDER BY p.visibility DESC, p.isDeleted DESC, p.createdAt DESC, p.id DESC")
+    List<Posts> findLatestByVisibility(@Param("visibility") String visibility, Pageable pageable);
+    
+    // Public posts - các trang sau cursor
+    @Query("SELECT p FROM Posts p WHERE p.visibility = :visibility AND p.isDeleted = false " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.visibility DESC, p.isDeleted DESC, p.createdAt DESC, p.id DESC")
+    List<Posts> findByVisibilityBefore(
+            @Param("visibility") String visibility,
+            @Param("createdAt") Date createdAt,
+            @Param("id") UUID id,
+            Pageable pageable
+    );
+    
+    // Reels - trang đầu
+    @Query("SELECT p FROM Posts p " +
            "WHERE p.isDeleted = false " +
            "AND EXISTS (SELECT 1 FROM Post_media pm WHERE pm.postId = p.id AND pm.mediaType = 'video') " +
            "AND (p.userId = :userId " +
            "     OR p.visibility = 'public' " +
            "     OR EXISTS (SELECT 1 FROM Friends f WHERE (f.user_a = :userId AND f.user_b = p.userId) OR (f.user_b = :userId AND f.user_a = p.userId))) " +
-           "ORDER BY p.createdAt DESC")
-    Page<Posts> findReels(@Param("userId") UUID userId, Pageable pageable);
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Posts> findReelsLatest(@Param("userId") UUID userId, Pageable pageable);
     
-    // Tìm posts có video (reels) - không pagination (cho backward compatibility)
-    @Query("SELECT DISTINCT p FROM Posts p " +
+    // Reels - các trang sau cursor
+    @Query("SELECT p FROM Posts p " +
            "WHERE p.isDeleted = false " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
            "AND EXISTS (SELECT 1 FROM Post_media pm WHERE pm.postId = p.id AND pm.mediaType = 'video') " +
            "AND (p.userId = :userId " +
            "     OR p.visibility = 'public' " +
            "     OR EXISTS (SELECT 1 FROM Friends f WHERE (f.user_a = :userId AND f.user_b = p.userId) OR (f.user_b = :userId AND f.user_a = p.userId))) " +
-           "ORDER BY p.createdAt DESC")
-    List<Posts> findReels(@Param("userId") UUID userId);
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Posts> findReelsBefore(
+            @Param("userId") UUID userId,
+            @Param("createdAt") Date createdAt,
+            @Param("id") UUID id,
+            Pageable pageable
+    );
+    
+    // Cập nhật counter atomic ngay trong DB (không read-modify-write), không để counter âm
+    @Modifying
+    @Query("UPDATE Posts p SET p.reactionCount = CASE WHEN p.reactionCount + :delta < 0 THEN 0 ELSE p.reactionCount + :delta END " +
+           "WHERE p.id = :postId")
+    int incrementReactionCount(@Param("postId") UUID postId, @Param("delta") long delta);
+    
+    @Modifying
+    @Query("UPDATE Posts p SET p.commentCount = CASE WHEN p.commentCount + :delta < 0 THEN 0 ELSE p.commentCount + :delta END " +
+           "WHERE p.id = :postId")
+    int incrementCommentCount(@Param("postId") UUID postId, @Param("delta") long delta);
+    
+    // Reconcile counters theo từng batch post id (keyset theo id)
+    @Query("SELECT p.id FROM Posts p ORDER BY p.id")
+    List<UUID> findIdsOrderById(Pageable pageable);
+    
+    @Query("SELECT p.id FROM Posts p WHERE p.id > :afterId ORDER BY p.id")
+    List<UUID> findIdsAfter(@Param("afterId") UUID afterId, Pageable pageable);
+    
+    // Chỉ ghi những post bị lệch counter
+    @Modifying
+    @Transactional
+    @Query("UPDATE Posts p SET p.reactionCount = (SELECT COUNT(r) FROM Post_reactions r WHERE r.postId = p.id) " +
+           "WHERE p.id IN :postIds " +
+           "AND p.reactionCount <> (SELECT COUNT(r) FROM Post_reactions r WHERE r.postId = p.id)")
+    int reconcileReactionCounts(@Param("postIds") List<UUID> postIds);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE Posts p SET p.commentCount = (SELECT COUNT(c) FROM Comments c WHERE c.postId = p.id AND c.isDeleted = false) " +
+           "WHERE p.id IN :postIds " +
+           "AND p.commentCount <> (SELECT COUNT(c) FROM Comments c WHERE c.postId = p.id AND c.isDeleted = false)")
+    int reconcileCommentCounts(@Param("postIds") List<UUID> postIds);
 }
-
@@ -0,0 +1,44 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.model.Timeline_entries;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TimelineEntriesRepository extends JpaRepository<Timeline_entries, UUID> {
+    // Đọc timeline theo range trên index (user_id, created_at) - trả về List để không kéo theo câu COUNT
+    List<Timeline_entries> findByUserIdOrderByCreatedAtDescPostIdDesc(UUID userId, Pageable pageable);
+
+    // Keyset pagination: các entry cũ hơn cursor (created_at, post_id)
+    @Query("SELECT t FROM Timeline_entries t WHERE t.userId = :userId " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.postId < :postId)) " +
+           "ORDER BY t.createdAt DESC, t.postId DESC")
+    List<Timeline_entries> findByUserIdBefore(
+            @Param("userId") UUID userId,
+            @Param("createdAt") Date createdAt,
+            @Param("postId") UUID postId,
+            Pageable pageable
+    );
+
+    // Post ids đã có trong timeline của user (để tránh insert trùng khi backfill)
+    @Query("SELECT t.postId FROM Timeline_entries t WHERE t.userId = :userId AND t.postId IN :postIds")
+    List<UUID> findPostIdsByUserIdAndPostIdIn(@Param("userId") UUID userId, @Param("postIds") List<UUID> postIds);
+
+    // Xóa post khỏi tất cả timeline (khi post bị xóa)
+    @Modifying
+    @Query("DELETE FROM Timeline_entries t WHERE t.postId = :postId")
+    int deleteByPostId(@Param("postId") UUID postId);
+
+    // Xóa posts của author khỏi timeline của user (khi unfriend)
+    @Modifying
+    @Query("DELETE FROM Timeline_entries t WHERE t.userId = :userId AND t.authorId = :authorId")
+    int deleteByUserIdAndAuthorId(@Param("userId") UUID userId, @Param("authorId") UUID authorId);
+}
@@ -0,0 +1,18 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.model.Token_revocations;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TokenRevocationsRepository extends JpaRepository<Token_revocations, UUID> {
+    // Watermark thay đổi sau thời điểm since (index updated_at) - nạp lúc khởi động và khi polling giữa các node
+    @Query("SELECT t FROM Token_revocations t WHERE t.updatedAt > :since ORDER BY t.updatedAt")
+    List<Token_revocations> findUpdatedAfter(@Param("since") Date since);
+}
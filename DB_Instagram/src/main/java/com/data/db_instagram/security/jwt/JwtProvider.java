@@ -3,6 +3,7 @@ package com.data.db_instagram.security.jwt;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -28,21 +29,53 @@ public class JwtProvider {
     @Value("${jwt.expired.refresh:604800}") // Default 7 days if not specified
     private Long EXPIRED_REFRESH;
 
-    public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
+    // Key và parser không đổi sau khi khởi động - build 1 lần, dùng chung (JwtParser thread-safe)
+    private Key signKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        this.signKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+        this.jwtParser = Jwts.parser().setSigningKey(signKey).build();
     }
 
-    public UUID extractUserId(String token) {
-        Claims claims = extractAllClaims(token);
+    /**
+     * Parse + verify chữ ký/hạn token đúng 1 lần; null nếu token không hợp lệ.
+     * Caller đọc subject/userId/type từ Claims trả về thay vì gọi lại extractXxx(token).
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return extractAllClaims(token);
+        } catch (ExpiredJwtException e) {
+            log.debug("Token expired: {}", e.getMessage());
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("Invalid token: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    public static UUID userIdFrom(Claims claims) {
         Object userIdObj = claims.get("userId");
         if (userIdObj instanceof String) {
-            return UUID.fromString((String) userIdObj);
+            try {
+                return UUID.fromString((String) userIdObj);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
         } else if (userIdObj instanceof UUID) {
             return (UUID) userIdObj;
         }
         return null;
     }
 
+    public String extractEmail(String token) {
+        return extractClaim(token, Claims::getSubject);
+    }
+
+    public UUID extractUserId(String token) {
+        return userIdFrom(extractAllClaims(token));
+    }
+
     public Date extractExpiration(String token) {
         return extractClaim(token, Claims::getExpiration);
     }
@@ -57,12 +90,7 @@ public class JwtProvider {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 
     public Boolean isTokenExpired(String token) {
@@ -76,7 +104,7 @@ public class JwtProvider {
 
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser().setSigningKey(getSignKey()).build().parseClaimsJws(token);
+            jwtParser.parseClaimsJws(token);
             return true;
         } catch (ExpiredJwtException e) {
             log.error("Token expired: {}", e.getMessage());
@@ -131,12 +159,7 @@ public class JwtProvider {
                 .setSubject(email)
                 .setIssuedAt(new Date(System.currentTimeMillis())) // iat
                 .setExpiration(new Date(System.currentTimeMillis() + expirationSeconds * 1000))
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
+                .signWith(signKey, SignatureAlgorithm.HS256)
                 .compact();
     }
-
-    private Key getSignKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
 }
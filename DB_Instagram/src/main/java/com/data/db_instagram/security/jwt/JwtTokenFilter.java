@@ -1,7 +1,10 @@
 package com.data.db_instagram.security.jwt;
 
-import com.data.db_instagram.security.principal.MyUserDetailServices;
+import com.data.db_instagram.security.principal.MyUserDetails;
+import com.data.db_instagram.services.DeactivatedUserCache;
+import com.data.db_instagram.services.TokenRevocationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,8 +16,6 @@ import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -23,16 +24,22 @@ import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Xác thực stateless: parse + verify token 1 lần, dựng principal từ claims (userId, email).
+ * Không load user từ DB mỗi request; tài khoản bị khóa được chặn qua DeactivatedUserCache (snapshot trong bộ nhớ),
+ * token phát hành trước lần logout-all bị chặn qua TokenRevocationService (watermark theo user).
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtTokenFilter extends OncePerRequestFilter {
 
-    private final MyUserDetailServices userDetailServices;
+    private final DeactivatedUserCache deactivatedUserCache;
+    private final TokenRevocationService tokenRevocationService;
     private final JwtProvider jwtProvider;
-
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final ObjectMapper objectMapper;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -46,25 +53,30 @@ public class JwtTokenFilter extends OncePerRequestFilter {
                 return;
             }
 
-            if (!jwtProvider.validateToken(token)) {
+            Claims claims = jwtProvider.parseClaims(token);
+            if (claims == null) {
                 writeErrorResponse(response, "Invalid or expired token");
                 return;
             }
 
-            String email = jwtProvider.extractEmail(token);
-            UserDetails userDetails;
-            try {
-                userDetails = userDetailServices.loadUserByUsername(email);
-            } catch (UsernameNotFoundException ex) {
-                writeErrorResponse(response, "User not found");
+            UUID userId = JwtProvider.userIdFrom(claims);
+            String email = claims.getSubject();
+            if (userId == null || email == null) {
+                writeErrorResponse(response, "Invalid token format");
+                return;
+            }
+
+            if (deactivatedUserCache.isDeactivated(userId)) {
+                writeErrorResponse(response, "User account is deactivated");
                 return;
             }
 
-            if (!jwtProvider.validateToken(token, userDetails)) {
-                writeErrorResponse(response, "Token does not match the user");
+            if (tokenRevocationService.isRevoked(userId, claims.getIssuedAt())) {
+                writeErrorResponse(response, "Token has been revoked");
                 return;
             }
 
+            MyUserDetails userDetails = MyUserDetails.fromClaims(userId, email);
             Authentication authentication = new UsernamePasswordAuthenticationToken(
                     userDetails, null, userDetails.getAuthorities()
             );
@@ -99,6 +111,6 @@ public class JwtTokenFilter extends OncePerRequestFilter {
         error.put("error", HttpStatus.valueOf(HttpServletResponse.SC_UNAUTHORIZED).getReasonPhrase());
         error.put("message", message);
 
-        MAPPER.writeValue(response.getOutputStream(), error);
+        objectMapper.writeValue(response.getOutputStream(), error);
     }
 }
@@ -6,9 +6,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.UUID;
 
 @NoArgsConstructor
@@ -19,6 +21,20 @@ public class MyUserDetails implements UserDetails {
     private Users user;
     private Collection<? extends GrantedAuthority> authorities;
 
+    /**
+     * Principal dựng từ claims của access token (userId, sub=email), không load Users từ DB.
+     * Chỉ có id và email; controller chỉ dùng getId() nên không cần các field khác.
+     */
+    public static MyUserDetails fromClaims(UUID userId, String email) {
+        Users user = new Users();
+        user.setId(userId);
+        user.setEmail(email);
+        return MyUserDetails.builder()
+                .user(user)
+                .authorities(Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")))
+                .build();
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
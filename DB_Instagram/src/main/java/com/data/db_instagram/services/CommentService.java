@@ -2,6 +2,7 @@ package com.data.db_instagram.services;
 
 import com.data.db_instagram.dto.request.CreateCommentRequest;
 import com.data.db_instagram.dto.response.CommentResponse;
+import com.data.db_instagram.dto.response.CursorPageResponse;
 
 import java.util.List;
 import java.util.UUID;
@@ -11,5 +12,8 @@ public interface CommentService {
     void deleteComment(UUID userId, UUID commentId);
     List<CommentResponse> getPostComments(UUID postId, UUID currentUserId);
     List<CommentResponse> getCommentReplies(UUID commentId, UUID currentUserId);
+    // Cursor pagination: comments gốc mới nhất trước, replies cũ nhất trước
+    CursorPageResponse<CommentResponse> getPostCommentsByCursor(UUID postId, UUID currentUserId, String cursor, int size);
+    CursorPageResponse<CommentResponse> getCommentRepliesByCursor(UUID commentId, UUID currentUserId, String cursor, int size);
 }
 
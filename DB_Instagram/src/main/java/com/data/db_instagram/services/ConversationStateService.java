@@ -0,0 +1,19 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Messages;
+
+import java.util.UUID;
+
+public interface ConversationStateService {
+    // Cập nhật state của cả 2 phía khi có message mới, gọi trong transaction của sendMessage
+    void onMessageSent(Messages message);
+
+    // Message vừa chuyển từ chưa đọc sang đã đọc
+    void onMessageRead(Messages message);
+
+    // Người nhận đã đọc toàn bộ conversation với peer
+    void onConversationRead(UUID userId, UUID peerId);
+
+    // Message đã bị xóa khỏi DB: sửa unread_count và message cuối của cả 2 phía
+    void onMessageDeleted(Messages message);
+}
@@ -0,0 +1,12 @@
+package com.data.db_instagram.services;
+
+import java.util.UUID;
+
+// Danh sách user bị khóa giữ trong bộ nhớ để JwtTokenFilter kiểm tra mà không query DB mỗi request.
+// Chỉ cập nhật qua refresh định kỳ: khóa / mở khóa is_active có hiệu lực sau tối đa 1 chu kỳ refresh (mặc định 30s)
+public interface DeactivatedUserCache {
+    boolean isDeactivated(UUID userId);
+
+    // Nạp lại toàn bộ từ DB, trả về số user bị khóa
+    int refresh();
+}
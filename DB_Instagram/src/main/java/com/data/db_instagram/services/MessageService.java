@@ -3,6 +3,7 @@ package com.data.db_instagram.services;
 import com.data.db_instagram.dto.request.ReactToMessageRequest;
 import com.data.db_instagram.dto.request.SendMessageRequest;
 import com.data.db_instagram.dto.response.ConversationInfo;
+import com.data.db_instagram.dto.response.CursorPageResponse;
 import com.data.db_instagram.dto.response.MessageResponse;
 
 import java.util.List;
@@ -13,11 +14,15 @@ public interface MessageService {
     
     List<MessageResponse> getConversation(UUID currentUserId, UUID otherUserId);
     
+    // Lịch sử chat theo cursor: before = cũ hơn (mặc định trang mới nhất), after = mới hơn
+    CursorPageResponse<MessageResponse> getConversationByCursor(UUID currentUserId, UUID otherUserId, String before, String after, int size);
+    
     List<ConversationInfo> getConversations(UUID userId);
     
     MessageResponse markAsRead(UUID messageId, UUID userId);
     
-    void markAllAsRead(UUID currentUserId, UUID otherUserId);
+    // Trả về số tin nhắn vừa được đánh dấu đã đọc
+    int markAllAsRead(UUID currentUserId, UUID otherUserId);
     
     MessageResponse reactToMessage(UUID messageId, ReactToMessageRequest request, UUID userId);
     
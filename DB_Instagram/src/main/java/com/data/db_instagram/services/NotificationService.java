@@ -1,18 +1,20 @@
 package com.data.db_instagram.services;
 
 import com.data.db_instagram.dto.response.NotificationResponse;
+import com.data.db_instagram.utils.NotificationPayload;
 
 import java.util.List;
 import java.util.UUID;
 
 public interface NotificationService {
-    void createNotification(UUID userId, UUID actorId, String type, String payload);
-    
-    boolean hasUnreadNotificationRecently(UUID userId, UUID actorId, String type, String payloadPattern, int minutesAgo);
-    
-    boolean hasUnreadNotification(UUID userId, UUID actorId, String type, String payloadPattern);
-    
-    void deleteNotificationByUserIdAndTypeAndActorIdAndPayload(UUID userId, UUID actorId, String type, String payloadPattern);
+    void createNotification(UUID userId, UUID actorId, String type, NotificationPayload payload);
+
+    // Gộp actor vào dòng (userId, type, payload.objectId): đẩy actor lên đầu recent actors, đánh dấu chưa đọc.
+    // newActor = actor chưa từng được đếm trong nhóm (caller biết từ bảng reactions/comments) thì tăng actor_count
+    void addToGroup(UUID userId, UUID actorId, String type, NotificationPayload payload, boolean newActor);
+
+    // Bỏ actor khỏi dòng gộp (vd: unlike); xóa dòng khi không còn actor nào
+    void removeFromGroup(UUID userId, UUID actorId, String type, UUID objectId);
     
     List<NotificationResponse> getNotifications(UUID userId);
     
@@ -20,7 +22,8 @@ public interface NotificationService {
     
     void markAsRead(UUID notificationId, UUID userId);
     
-    void markAllAsRead(UUID userId);
+    // Trả về số notification vừa được đánh dấu đã đọc
+    int markAllAsRead(UUID userId);
     
     void deleteNotification(UUID notificationId, UUID userId);
 }
@@ -0,0 +1,11 @@
+package com.data.db_instagram.services;
+
+// Băm/kiểm tra mật khẩu trên pool giới hạn; hàng đợi đầy thì ném HttpTooManyRequests (429 + Retry-After)
+public interface PasswordHashingService {
+    String encode(String rawPassword);
+
+    boolean matches(String rawPassword, String encodedPassword);
+
+    // true nếu hash cũ (không có prefix {bcrypt} hoặc cost thấp hơn cấu hình) - nên băm lại sau khi login thành công
+    boolean needsRehash(String encodedPassword);
+}
@@ -0,0 +1,13 @@
+package com.data.db_instagram.services;
+
+import java.util.UUID;
+
+public interface PostCounterService {
+    // Cộng/trừ counter ngay trong DB (UPDATE ... SET x = x + delta), gọi trong transaction của thao tác gốc
+    void addReactions(UUID postId, long delta);
+
+    void addComments(UUID postId, long delta);
+
+    // Đếm lại từ post_reactions/comments và sửa các post bị lệch, trả về số post đã sửa
+    int reconcileAll();
+}
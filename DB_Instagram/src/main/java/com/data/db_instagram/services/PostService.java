@@ -2,6 +2,7 @@ package com.data.db_instagram.services;
 
 import com.data.db_instagram.dto.request.CreatePostRequest;
 import com.data.db_instagram.dto.request.UpdatePostRequest;
+import com.data.db_instagram.dto.response.CursorPageResponse;
 import com.data.db_instagram.dto.response.PostResponse;
 
 import java.util.List;
@@ -12,8 +13,14 @@ public interface PostService {
     PostResponse updatePost(UUID userId, UUID postId, UpdatePostRequest request);
     void deletePost(UUID userId, UUID postId);
     PostResponse getPostById(UUID postId, UUID currentUserId);
+    // Home feed: posts của chính user và bạn bè (home timeline). Posts public của người không phải bạn bè
+    // chỉ xuất hiện khi timeline trống (fallback), không trộn vào feed đã có dữ liệu
     List<PostResponse> getFriendsPosts(UUID userId, int page, int size);
     List<PostResponse> getUserPosts(UUID userId, UUID currentUserId, int page, int size);
     List<PostResponse> getReels(UUID userId, int page, int size);
+    // Keyset (cursor) pagination theo (created_at, id) - chi phí trang 50 bằng trang 1
+    CursorPageResponse<PostResponse> getFriendsPostsByCursor(UUID userId, String cursor, int size);
+    CursorPageResponse<PostResponse> getUserPostsByCursor(UUID userId, UUID currentUserId, String cursor, int size);
+    CursorPageResponse<PostResponse> getReelsByCursor(UUID userId, String cursor, int size);
 }
 
@@ -0,0 +1,15 @@
+package com.data.db_instagram.services;
+
+import java.util.Set;
+
+// Danh bạ presence: node nào đang nhận frame của user (có WebSocket, hoặc vừa mất kết nối nhưng còn giữ event log)
+public interface PresenceDirectory {
+    void register(String userId, String nodeId);
+
+    void unregister(String userId, String nodeId);
+
+    // Gỡ toàn bộ user của 1 node (node tắt hoặc mất kết nối)
+    void removeNode(String nodeId);
+
+    Set<String> nodesOf(String userId);
+}
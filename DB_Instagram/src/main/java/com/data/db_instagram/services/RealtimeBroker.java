@@ -0,0 +1,28 @@
+package com.data.db_instagram.services;
+
+import org.springframework.web.socket.TextMessage;
+
+/**
+ * Fan-out realtime giữa các node: MessageWebSocketHandler chỉ giữ socket của node mình,
+ * broker chuyển frame tới node đang giữ socket của user (tra qua PresenceDirectory).
+ */
+public interface RealtimeBroker {
+    String getNodeId();
+
+    // Gửi frame JSON (đã serialize, dùng chung cho nhiều người nhận) tới mọi session của user trên mọi node.
+    // replayable = true: node nhận ghi frame vào event log của nó (gắn seq) trước khi giao cho session
+    void publish(String userId, TextMessage frame, boolean replayable);
+
+    // Callback giao frame cho các session local của node này
+    void onDeliver(LocalDelivery localDelivery);
+
+    // User có session đầu tiên trên node này / node không còn giữ log của user (xem RealtimeEventLog.onEvicted)
+    void userConnected(String userId);
+
+    void userDisconnected(String userId);
+
+    @FunctionalInterface
+    interface LocalDelivery {
+        void deliver(String userId, TextMessage frame, boolean replayable);
+    }
+}
@@ -0,0 +1,36 @@
+package com.data.db_instagram.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Log sự kiện realtime có giới hạn cho từng user, seq tăng dần theo user:
+ * client nhớ seq cuối đã nhận, kết nối lại với ?lastSeq=N để nhận lại phần bị lỡ thay vì tải lại toàn bộ.
+ * Log nằm ở node giữ socket của user: frame được append lúc giao (không phải lúc publish).
+ */
+public interface RealtimeEventLog {
+    // Gắn seq vào frame (JSON object), lưu lại rồi gọi deliver với frame đã gắn seq - trong cùng khóa với replay
+    void append(String userId, TextMessage frame, Consumer<TextMessage> deliver);
+
+    // Chạy onReplay với các frame seq > lastSeq (lastSeq null = không replay); frame mới chỉ được append sau khi onReplay xong
+    void replay(String userId, Long lastSeq, Consumer<Replay> onReplay);
+
+    // Giữ (hoặc tạo) log của user vừa mất session cuối cùng, để frame tới sau đó vẫn được ghi cho lần kết nối lại
+    void retain(String userId);
+
+    // listener nhận userId khi log của user bị bỏ (hết ttl hoặc vượt giới hạn bộ nhớ)
+    void onEvicted(Consumer<String> listener);
+
+    @Getter
+    @AllArgsConstructor
+    class Replay {
+        private final List<TextMessage> frames;
+        private final long latestSeq;
+        // Khoảng trống lớn hơn phần log còn giữ (hoặc seq không thuộc log này): client phải tải lại qua REST
+        private final boolean resyncRequired;
+    }
+}
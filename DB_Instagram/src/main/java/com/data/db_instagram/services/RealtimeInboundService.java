@@ -0,0 +1,11 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.dto.request.RealtimeFrameRequest;
+
+import java.util.UUID;
+
+// Xử lý frame client gửi lên qua WebSocket: typing, presence, read
+public interface RealtimeInboundService {
+    // true nếu frame được chuyển tiếp/xử lý, false nếu bị bỏ (rate limit, trùng trạng thái, sai định dạng)
+    boolean handle(UUID userId, RealtimeFrameRequest frame);
+}
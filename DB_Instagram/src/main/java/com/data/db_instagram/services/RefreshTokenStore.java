@@ -0,0 +1,22 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Auth_tokens;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+// Lưu refresh token dưới dạng SHA-256 (auth_tokens.token_hash), không giữ JWT gốc trong DB
+public interface RefreshTokenStore {
+    // Lưu token mới rồi revoke các token active cũ nhất vượt giới hạn mỗi user
+    void save(UUID userId, String refreshToken, Date expiresAt, String deviceInfo);
+
+    Optional<Auth_tokens> find(String refreshToken);
+
+    void revoke(String refreshToken);
+
+    void revokeAll(UUID userId);
+
+    // Xóa token hết hạn / revoke đủ lâu theo từng batch, trả về số row đã xóa
+    int purge();
+}
@@ -0,0 +1,26 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Posts;
+import com.data.db_instagram.utils.PageCursor;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface TimelineService {
+    // Đẩy post mới vào timeline của tác giả và bạn bè (fan-out-on-write)
+    void fanOutPost(Posts post);
+
+    void removePost(UUID postId);
+
+    // Backfill posts gần đây của nhau khi 2 user trở thành bạn bè
+    void onFriendshipCreated(UUID userA, UUID userB);
+
+    // removedFriendships: số dòng friends vừa xóa (friend_count của mỗi bên đã giảm đúng số này)
+    void onFriendshipRemoved(UUID userA, UUID userB, int removedFriendships);
+
+    // Đọc home timeline (đã loại bỏ post bị xóa), mới nhất trước
+    List<Posts> getTimeline(UUID userId, int page, int size);
+
+    // Keyset pagination: tối đa limit posts cũ hơn cursor (cursor null = trang đầu)
+    List<Posts> getTimelineBefore(UUID userId, PageCursor cursor, int limit);
+}
@@ -0,0 +1,15 @@
+package com.data.db_instagram.services;
+
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Phát watermark thu hồi access token (userId, revokedBefore millis) tới mọi node.
+ * Watermark đã được lưu DB trước khi publish; channel chỉ lo lan truyền, có thể giao trùng hoặc lặp lại.
+ */
+public interface TokenRevocationChannel {
+    void publish(UUID userId, long revokedBeforeMs);
+
+    // Callback cập nhật cache local của node này
+    void onRevoked(BiConsumer<UUID, Long> listener);
+}
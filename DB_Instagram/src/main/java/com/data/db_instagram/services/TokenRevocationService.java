@@ -0,0 +1,12 @@
+package com.data.db_instagram.services;
+
+import java.util.Date;
+import java.util.UUID;
+
+// Thu hồi access token theo watermark (userId, revokedBefore): JwtTokenFilter kiểm tra O(1) trong bộ nhớ
+public interface TokenRevocationService {
+    // Mọi access token của user phát hành tới thời điểm hiện tại không còn hợp lệ
+    void revokeAccessTokens(UUID userId);
+
+    boolean isRevoked(UUID userId, Date issuedAt);
+}
@@ -0,0 +1,18 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.dto.response.UserInfo;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+// Snapshot UserInfo (user + profile) bất biến, dùng chung cho các response builder - cần giá trị khác thì dùng toBuilder()
+public interface UserInfoCache {
+    // null nếu user không tồn tại
+    UserInfo get(UUID userId);
+
+    // Chỉ chứa các user tồn tại; miss được load bằng 1 query users + 1 query profiles
+    Map<UUID, UserInfo> getAll(Collection<UUID> userIds);
+
+    void invalidate(UUID userId);
+}
@@ -6,17 +6,20 @@ import com.data.db_instagram.dto.response.AuthResponse;
 import com.data.db_instagram.dto.response.ProfileInfo;
 import com.data.db_instagram.dto.response.UserInfo;
 import com.data.db_instagram.exception.HttpConflict;
+import com.data.db_instagram.exception.HttpTooManyRequests;
 import com.data.db_instagram.exception.HttpUnauthorized;
 import com.data.db_instagram.model.Auth_tokens;
 import com.data.db_instagram.model.Profiles;
 import com.data.db_instagram.model.Users;
-import com.data.db_instagram.repository.AuthTokensRepository;
 import com.data.db_instagram.repository.ProfilesRepository;
 import com.data.db_instagram.repository.IUserRepository;
 import com.data.db_instagram.security.jwt.JwtProvider;
 import com.data.db_instagram.services.AuthService;
+import com.data.db_instagram.services.PasswordHashingService;
+import com.data.db_instagram.services.RefreshTokenStore;
+import com.data.db_instagram.services.TokenRevocationService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,13 +28,15 @@ import java.util.Date;
 import java.util.UUID;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
     private final IUserRepository userRepository;
     private final ProfilesRepository profilesRepository;
-    private final AuthTokensRepository authTokensRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final RefreshTokenStore refreshTokenStore;
+    private final PasswordHashingService passwordHashing;
     private final JwtProvider jwtProvider;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     @Transactional
@@ -47,7 +52,7 @@ public class AuthServiceImpl implements AuthService {
         Users user = new Users();
         user.setEmail(request.getEmail());
         user.setPhone(request.getPhone());
-        user.setPassword_hash(passwordEncoder.encode(request.getPassword()));
+        user.setPassword_hash(passwordHashing.encode(request.getPassword()));
         user.setIs_active(true);
         user.setCreated_at(new Date());
         user = userRepository.save(user);
@@ -100,10 +105,12 @@ public class AuthServiceImpl implements AuthService {
             throw new HttpUnauthorized("Tài khoản đã bị vô hiệu hóa");
         }
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword_hash())) {
+        if (!passwordHashing.matches(request.getPassword(), user.getPassword_hash())) {
             throw new HttpUnauthorized("Sai mật khẩu");
         }
 
+        rehashIfNeeded(user, request.getPassword());
+
         Profiles profile = profilesRepository.findByUserId(user.getId())
                 .orElse(null);
 
@@ -157,7 +164,7 @@ public class AuthServiceImpl implements AuthService {
         }
 
         // Kiểm tra token trong DB
-        Auth_tokens authToken = authTokensRepository.findByToken(refreshToken)
+        Auth_tokens authToken = refreshTokenStore.find(refreshToken)
                 .orElseThrow(() -> new HttpUnauthorized("Refresh token không tồn tại trong hệ thống"));
 
         // Kiểm tra token đã bị revoke chưa
@@ -184,7 +191,7 @@ public class AuthServiceImpl implements AuthService {
         String newRefreshToken = jwtProvider.generateRefreshToken(user.getEmail(), user.getId());
 
         // Revoke token cũ
-        authTokensRepository.revokeToken(refreshToken);
+        refreshTokenStore.revoke(refreshToken);
 
         // Lưu refresh token mới vào DB
         saveRefreshToken(userId, newRefreshToken, authToken.getDevice_info());
@@ -225,14 +232,32 @@ public class AuthServiceImpl implements AuthService {
     @Transactional
     public void logout(String refreshToken) {
         // Revoke refresh token
-        authTokensRepository.revokeToken(refreshToken);
+        refreshTokenStore.revoke(refreshToken);
     }
 
     @Override
     @Transactional
     public void logoutAll(UUID userId) {
-        // Revoke tất cả token của user
-        authTokensRepository.revokeAllUserTokens(userId);
+        // Revoke tất cả refresh token, access token đang lưu hành bị chặn bằng watermark
+        refreshTokenStore.revokeAll(userId);
+        tokenRevocationService.revokeAccessTokens(userId);
+    }
+
+    /**
+     * Hash cũ (không prefix / cost thấp) được băm lại bằng encoder hiện tại ngay khi biết mật khẩu gốc.
+     * Pool băm đang quá tải thì bỏ qua, lần login sau sẽ thử lại.
+     */
+    private void rehashIfNeeded(Users user, String rawPassword) {
+        if (!passwordHashing.needsRehash(user.getPassword_hash())) {
+            return;
+        }
+        try {
+            user.setPassword_hash(passwordHashing.encode(rawPassword));
+            user.setUpdated_at(new Date());
+            userRepository.save(user);
+        } catch (HttpTooManyRequests e) {
+            log.debug("Skipping password rehash for user {}: hashing pool busy", user.getId());
+        }
     }
 
     /**
@@ -243,15 +268,7 @@ public class AuthServiceImpl implements AuthService {
             // Tính toán thời gian hết hạn dựa trên JWT expiration
             Date expiresAt = jwtProvider.extractExpiration(refreshToken);
 
-            Auth_tokens authToken = new Auth_tokens();
-            authToken.setUser_id(userId);
-            authToken.setToken(refreshToken);
-            authToken.setDevice_info(deviceInfo);
-            authToken.setExpires_at(expiresAt);
-            authToken.setRevoked(false);
-            authToken.setCreated_at(new Date());
-
-            authTokensRepository.save(authToken);
+            refreshTokenStore.save(userId, refreshToken, expiresAt, deviceInfo);
         } catch (Exception e) {
             // Log error nhưng không throw exception để không làm gián đoạn flow đăng nhập
             System.err.println("Error saving refresh token: " + e.getMessage());
@@ -3,9 +3,10 @@ package com.data.db_instagram.services.impl;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import com.data.db_instagram.exception.HttpBadRequest;
+import com.data.db_instagram.exception.HttpServiceUnavailable;
 import com.data.db_instagram.services.CloudinaryService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -13,13 +14,27 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class CloudinaryServiceImpl implements CloudinaryService {
 
     private final Cloudinary cloudinary;
+    // Giới hạn số upload chạy đồng thời (mỗi upload giữ cả file trong heap + 1 kết nối HTTP tới Cloudinary),
+    // cần thiết khi chạy virtual thread vì không còn pool Tomcat giới hạn sẵn.
+    // Chờ permit tối đa acquireTimeoutMs rồi trả 503 (giống ConcurrencyLimitFilter), không xếp hàng vô hạn
+    private final Semaphore uploadPermits;
+    private final long acquireTimeoutMs;
+
+    public CloudinaryServiceImpl(Cloudinary cloudinary,
+                                 @Value("${cloudinary.max-concurrent-uploads:8}") int maxConcurrentUploads,
+                                 @Value("${cloudinary.upload-acquire-timeout-ms:5000}") long acquireTimeoutMs) {
+        this.cloudinary = cloudinary;
+        this.uploadPermits = new Semaphore(maxConcurrentUploads, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
 
     private static final List<String> ALLOWED_IMAGE_TYPES = Arrays.asList(
             "image/jpeg",
@@ -47,15 +62,15 @@ public class CloudinaryServiceImpl implements CloudinaryService {
                     "overwrite", true,
                     "invalidate", true);
 
-            Map<?, ?> uploadResult = cloudinary.uploader().upload(
-                    file.getBytes(),
-                    uploadParams);
+            Map<?, ?> uploadResult = upload(file, uploadParams);
 
             String imageUrl = (String) uploadResult.get("secure_url");
             log.info("Image uploaded successfully to Cloudinary: {}", imageUrl);
 
             return imageUrl;
 
+        } catch (HttpServiceUnavailable e) {
+            throw e;
         } catch (IOException e) {
             log.error("Error uploading image to Cloudinary", e);
             throw new HttpBadRequest("Không thể upload ảnh. Vui lòng thử lại.");
@@ -77,15 +92,15 @@ public class CloudinaryServiceImpl implements CloudinaryService {
                     "invalidate", true
             );
 
-            Map<?, ?> uploadResult = cloudinary.uploader().upload(
-                    file.getBytes(),
-                    uploadParams);
+            Map<?, ?> uploadResult = upload(file, uploadParams);
 
             String videoUrl = (String) uploadResult.get("secure_url");
             log.info("Video uploaded successfully to Cloudinary: {}", videoUrl);
 
             return videoUrl;
 
+        } catch (HttpServiceUnavailable e) {
+            throw e;
         } catch (IOException e) {
             log.error("Error uploading video to Cloudinary", e);
             throw new HttpBadRequest("Không thể upload video. Vui lòng thử lại.");
@@ -95,6 +110,25 @@ public class CloudinaryServiceImpl implements CloudinaryService {
         }
     }
 
+    private Map<?, ?> upload(MultipartFile file, Map<String, Object> uploadParams) throws Exception {
+        boolean acquired;
+        try {
+            acquired = uploadPermits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            log.warn("Rejected upload: no upload permit after {} ms", acquireTimeoutMs);
+            throw new HttpServiceUnavailable("Server is busy, please retry", 1);
+        }
+        try {
+            return cloudinary.uploader().upload(file.getBytes(), uploadParams);
+        } finally {
+            uploadPermits.release();
+        }
+    }
+
     private void validateFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new HttpBadRequest("File không được để trống");
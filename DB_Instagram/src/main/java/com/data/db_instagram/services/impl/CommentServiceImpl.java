@@ -2,42 +2,43 @@ package com.data.db_instagram.services.impl;
 
 import com.data.db_instagram.dto.request.CreateCommentRequest;
 import com.data.db_instagram.dto.response.CommentResponse;
+import com.data.db_instagram.dto.response.CursorPageResponse;
 import com.data.db_instagram.dto.response.UserInfo;
 import com.data.db_instagram.exception.HttpBadRequest;
 import com.data.db_instagram.exception.HttpForbidden;
 import com.data.db_instagram.exception.HttpNotFound;
-import com.data.db_instagram.mapper.UserMapper;
 import com.data.db_instagram.model.Comments;
 import com.data.db_instagram.model.Posts;
-import com.data.db_instagram.model.Profiles;
-import com.data.db_instagram.model.Users;
 import com.data.db_instagram.model.Comment_tags;
 import com.data.db_instagram.repository.CommentsRepository;
 import com.data.db_instagram.repository.CommentTagsRepository;
-import com.data.db_instagram.repository.IUserRepository;
 import com.data.db_instagram.repository.PostsRepository;
-import com.data.db_instagram.repository.ProfilesRepository;
 import com.data.db_instagram.services.CommentService;
 import com.data.db_instagram.services.NotificationService;
+import com.data.db_instagram.services.PostCounterService;
+import com.data.db_instagram.services.UserInfoCache;
+import com.data.db_instagram.utils.NotificationPayload;
+import com.data.db_instagram.utils.PageCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Date;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class CommentServiceImpl implements CommentService {
+    private static final int MAX_PAGE_SIZE = 50;
+
     private final CommentsRepository commentsRepository;
     private final CommentTagsRepository commentTagsRepository;
     private final PostsRepository postsRepository;
-    private final IUserRepository userRepository;
-    private final ProfilesRepository profilesRepository;
-    private final UserMapper userMapper;
+    private final UserInfoCache userInfoCache;
     private final NotificationService notificationService;
+    private final PostCounterService postCounterService;
 
     @Override
     @Transactional
@@ -71,6 +72,7 @@ public class CommentServiceImpl implements CommentService {
         comment.setParentComment(request.getParentCommentId());
         comment.setCreatedAt(new Date());
         comment = commentsRepository.save(comment);
+        postCounterService.addComments(postId, 1);
 
         // Lưu tagged users
         if (request.getTaggedUserIds() != null && !request.getTaggedUserIds().isEmpty()) {
@@ -89,14 +91,14 @@ public class CommentServiceImpl implements CommentService {
             // Chỉ tạo notification cho comment chính (không phải reply)
             // Vì reply sẽ được xử lý riêng nếu cần
             if (request.getParentCommentId() == null) {
-                String payload = "{\"postId\":\"" + postId + "\",\"commentId\":\"" + comment.getId() + "\"}";
-                notificationService.createNotification(postOwnerId, userId, "comment", payload);
+                boolean newActor = !commentsRepository.existsOtherTopLevelComment(postId, userId, comment.getId());
+                notificationService.addToGroup(postOwnerId, userId, "comment", NotificationPayload.comment(postId, comment.getId()), newActor);
             }
         }
 
         // Tạo notification cho các user được tag trong comment
         if (request.getTaggedUserIds() != null && !request.getTaggedUserIds().isEmpty()) {
-            String payload = "{\"postId\":\"" + postId + "\",\"commentId\":\"" + comment.getId() + "\"}";
+            NotificationPayload payload = NotificationPayload.commentTag(postId, comment.getId());
             for (UUID taggedUserId : request.getTaggedUserIds()) {
                 // Chỉ tạo notification nếu không phải chính mình và không phải post owner (đã có notification comment rồi)
                 if (!taggedUserId.equals(userId) && !taggedUserId.equals(postOwnerId)) {
@@ -129,6 +131,7 @@ public class CommentServiceImpl implements CommentService {
         }
 
         // Xóa comment chính
+        long removed = Boolean.TRUE.equals(comment.getIsDeleted()) ? 0 : 1;
         comment.setIsDeleted(true);
         comment.setUpdatedAt(new Date());
         commentsRepository.save(comment);
@@ -142,57 +145,115 @@ public class CommentServiceImpl implements CommentService {
                     reply.setIsDeleted(true);
                     reply.setUpdatedAt(now);
                     commentsRepository.save(reply);
+                    removed++;
                 }
             }
         }
+        postCounterService.addComments(comment.getPostId(), -removed);
     }
 
     @Override
     public List<CommentResponse> getPostComments(UUID postId, UUID currentUserId) {
         List<Comments> comments = commentsRepository.findByPostIdAndParentCommentIsNullAndIsDeletedFalseOrderByCreatedAtDesc(postId);
-        return comments.stream()
-                .map(comment -> buildCommentResponse(comment, currentUserId))
-                .collect(Collectors.toList());
+        return buildCommentResponses(comments, currentUserId);
     }
 
     @Override
     public List<CommentResponse> getCommentReplies(UUID commentId, UUID currentUserId) {
         List<Comments> replies = commentsRepository.findByParentCommentAndIsDeletedFalseOrderByCreatedAtAsc(commentId);
-        return replies.stream()
-                .map(reply -> buildCommentResponse(reply, currentUserId))
-                .collect(Collectors.toList());
+        return buildCommentResponses(replies, currentUserId);
+    }
+
+    @Override
+    public CursorPageResponse<CommentResponse> getPostCommentsByCursor(UUID postId, UUID currentUserId, String cursor, int size) {
+        int limit = normalizeSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Comments> comments = pageCursor == null
+                ? commentsRepository.findTopLevelLatest(postId, pageable)
+                : commentsRepository.findTopLevelBefore(postId, pageCursor.getCreatedAt(), pageCursor.getId(), pageable);
+        return buildCursorPage(comments, limit, currentUserId);
+    }
+
+    @Override
+    public CursorPageResponse<CommentResponse> getCommentRepliesByCursor(UUID commentId, UUID currentUserId, String cursor, int size) {
+        int limit = normalizeSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Comments> replies = pageCursor == null
+                ? commentsRepository.findRepliesEarliest(commentId, pageable)
+                : commentsRepository.findRepliesAfter(commentId, pageCursor.getCreatedAt(), pageCursor.getId(), pageable);
+        return buildCursorPage(replies, limit, currentUserId);
+    }
+
+    // Đọc dư 1 dòng để biết còn trang sau hay không
+    private CursorPageResponse<CommentResponse> buildCursorPage(List<Comments> comments, int limit, UUID currentUserId) {
+        boolean hasMore = comments.size() > limit;
+        List<Comments> page = hasMore ? comments.subList(0, limit) : comments;
+
+        String nextCursor = null;
+        if (hasMore) {
+            Comments last = page.get(page.size() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return CursorPageResponse.<CommentResponse>builder()
+                .items(buildCommentResponses(page, currentUserId))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
     }
 
     private CommentResponse buildCommentResponse(Comments comment, UUID currentUserId) {
-        Users user = userRepository.findById(comment.getUserId())
-                .orElse(null);
-        Profiles profile = user != null ? profilesRepository.findByUserId(user.getId()).orElse(null) : null;
-        UserInfo userInfo = userMapper.toUserInfo(user, profile);
-
-        // Count replies
-        long replyCount = commentsRepository.findByParentCommentAndIsDeletedFalseOrderByCreatedAtAsc(comment.getId()).size();
-
-        // Get tagged user IDs
-        List<UUID> taggedUserIds = commentTagsRepository.findByComment_id(comment.getId())
-                .stream()
-                .map(Comment_tags::getTagged_user_id)
+        return buildCommentResponses(Collections.singletonList(comment), currentUserId).get(0);
+    }
+
+    // Batch build: 1 query đếm replies, 1 query tags, user info lấy theo lô từ cache - tránh N+1 query
+    private List<CommentResponse> buildCommentResponses(List<Comments> comments, UUID currentUserId) {
+        if (comments.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<UUID> commentIds = comments.stream().map(Comments::getId).collect(Collectors.toList());
+        Set<UUID> userIds = comments.stream().map(Comments::getUserId).collect(Collectors.toSet());
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(userIds);
+
+        // Replies chỉ có 1 cấp, nên chỉ cần đếm cho comment gốc
+        List<UUID> topLevelIds = comments.stream()
+                .filter(comment -> comment.getParentComment() == null)
+                .map(Comments::getId)
                 .collect(Collectors.toList());
+        Map<UUID, Long> replyCountMap = new HashMap<>();
+        if (!topLevelIds.isEmpty()) {
+            for (Object[] row : commentsRepository.countRepliesByParentCommentIn(topLevelIds)) {
+                replyCountMap.put((UUID) row[0], (Long) row[1]);
+            }
+        }
 
-        return CommentResponse.builder()
-                .id(comment.getId())
-                .postId(comment.getPostId())
-                .userId(comment.getUserId())
-                .parentCommentId(comment.getParentComment())
-                .content(comment.getContent())
-                .imageUrl(comment.getImageUrl())
-                .createdAt(comment.getCreatedAt())
-                .updatedAt(comment.getUpdatedAt())
-                .user(userInfo)
-                .replyCount(replyCount)
-                .reactionCount(0) // TODO: Add comment reactions if needed
-                .hasReacted(false)
-                .taggedUserIds(taggedUserIds)
-                .build();
+        Map<UUID, List<UUID>> taggedUsersMap = commentTagsRepository.findByCommentIdIn(commentIds).stream()
+                .collect(Collectors.groupingBy(Comment_tags::getComment_id,
+                        Collectors.mapping(Comment_tags::getTagged_user_id, Collectors.toList())));
+
+        return comments.stream()
+                .map(comment -> CommentResponse.builder()
+                        .id(comment.getId())
+                        .postId(comment.getPostId())
+                        .userId(comment.getUserId())
+                        .parentCommentId(comment.getParentComment())
+                        .content(comment.getContent())
+                        .imageUrl(comment.getImageUrl())
+                        .createdAt(comment.getCreatedAt())
+                        .updatedAt(comment.getUpdatedAt())
+                        .user(userInfoMap.get(comment.getUserId()))
+                        .replyCount(replyCountMap.getOrDefault(comment.getId(), 0L))
+                        .reactionCount(0) // TODO: Add comment reactions if needed
+                        .hasReacted(false)
+                        .taggedUserIds(taggedUsersMap.getOrDefault(comment.getId(), new ArrayList<>()))
+                        .build())
+                .collect(Collectors.toList());
     }
-}
 
+    private int normalizeSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+}
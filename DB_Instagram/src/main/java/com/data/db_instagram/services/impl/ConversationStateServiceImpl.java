@@ -0,0 +1,92 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.model.Messages;
+import com.data.db_instagram.repository.ConversationStateRepository;
+import com.data.db_instagram.repository.MessagesRepository;
+import com.data.db_instagram.services.ConversationStateService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bảng conversation_state: mỗi user có 1 dòng cho mỗi người đã nhắn tin với mình.
+ * Inbox đọc thẳng từ bảng này (1 query theo index) thay vì GROUP BY messages + COUNT unread từng conversation.
+ * Mọi thay đổi là UPDATE ... SET x = x + delta trong cùng transaction với thao tác trên messages.
+ */
+@Service
+@RequiredArgsConstructor
+public class ConversationStateServiceImpl implements ConversationStateService {
+    private final ConversationStateRepository conversationStateRepository;
+    private final MessagesRepository messagesRepository;
+
+    @Override
+    @Transactional
+    public void onMessageSent(Messages message) {
+        UUID fromUserId = message.getFrom_user();
+        UUID toUserId = message.getTo_user();
+        Date now = new Date();
+
+        // Tạo dòng state (nếu chưa có) cho cả 2 phía trước khi UPDATE bất kỳ dòng nào
+        ensureState(fromUserId, toUserId, now);
+        if (!fromUserId.equals(toUserId)) {
+            ensureState(toUserId, fromUserId, now);
+        }
+
+        // Phía người gửi: không tăng unread
+        conversationStateRepository.recordMessage(fromUserId, toUserId, message.getId(), message.getCreated_at(), 0, now);
+        if (!fromUserId.equals(toUserId)) {
+            // Phía người nhận: +1 unread nếu message chưa đọc
+            long unreadDelta = Boolean.TRUE.equals(message.getIs_read()) ? 0 : 1;
+            conversationStateRepository.recordMessage(toUserId, fromUserId, message.getId(), message.getCreated_at(), unreadDelta, now);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void onMessageRead(Messages message) {
+        conversationStateRepository.addUnread(message.getTo_user(), message.getFrom_user(), -1, new Date());
+    }
+
+    @Override
+    @Transactional
+    public void onConversationRead(UUID userId, UUID peerId) {
+        conversationStateRepository.resetUnread(userId, peerId, new Date());
+    }
+
+    @Override
+    @Transactional
+    public void onMessageDeleted(Messages message) {
+        UUID fromUserId = message.getFrom_user();
+        UUID toUserId = message.getTo_user();
+        Date now = new Date();
+
+        if (!Boolean.TRUE.equals(message.getIs_read()) && !fromUserId.equals(toUserId)) {
+            conversationStateRepository.addUnread(toUserId, fromUserId, -1, now);
+        }
+
+        // Message bị xóa có thể là message cuối: lấy lại message mới nhất còn lại
+        List<Messages> latest = messagesRepository.findConversationLatest(
+                Messages.conversationKey(fromUserId, toUserId), PageRequest.of(0, 1));
+        UUID lastMessageId = latest.isEmpty() ? null : latest.get(0).getId();
+        Date lastMessageAt = latest.isEmpty() ? null : latest.get(0).getCreated_at();
+        conversationStateRepository.setLastMessage(fromUserId, toUserId, lastMessageId, lastMessageAt, now);
+        if (!fromUserId.equals(toUserId)) {
+            conversationStateRepository.setLastMessage(toUserId, fromUserId, lastMessageId, lastMessageAt, now);
+        }
+    }
+
+    // Chỉ khi 2 người chưa từng nhắn tin: insert-if-absent dòng trống ngay trong transaction này (không lấy thêm connection).
+    // 2 request gửi message đầu tiên cùng lúc: insert sau chờ rồi bỏ qua nhờ unique (user_id, peer_id),
+    // cả 2 đều UPDATE cùng 1 dòng. Dòng trống (lastMessageId null) không hiện trong inbox.
+    private void ensureState(UUID userId, UUID peerId, Date now) {
+        if (conversationStateRepository.existsByUserIdAndPeerId(userId, peerId)) {
+            return;
+        }
+        conversationStateRepository.insertIfAbsent(userId, peerId, now);
+    }
+}
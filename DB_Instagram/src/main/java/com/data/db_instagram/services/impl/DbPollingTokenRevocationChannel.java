@@ -0,0 +1,40 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.model.Token_revocations;
+import com.data.db_instagram.repository.TokenRevocationsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Nhiều node: mỗi node poll bảng token_revocations theo updated_at (security.revocation.poll-ms).
+ * Node thu hồi thấy ngay qua publish local; node khác chậm tối đa 1 chu kỳ poll, không cần hạ tầng thêm.
+ * Đọc lùi 1 khoảng overlap để không bỏ sót row commit muộn hơn updated_at của nó.
+ */
+@Slf4j
+public class DbPollingTokenRevocationChannel extends InMemoryTokenRevocationChannel {
+    private final TokenRevocationsRepository tokenRevocationsRepository;
+    private final long overlapMs;
+    private volatile long lastSeenMs = System.currentTimeMillis();
+
+    public DbPollingTokenRevocationChannel(TokenRevocationsRepository tokenRevocationsRepository, long overlapMs) {
+        this.tokenRevocationsRepository = tokenRevocationsRepository;
+        this.overlapMs = overlapMs;
+    }
+
+    @Scheduled(fixedDelayString = "${security.revocation.poll-ms:2000}")
+    public void poll() {
+        try {
+            List<Token_revocations> changed = tokenRevocationsRepository.findUpdatedAfter(new Date(lastSeenMs - overlapMs));
+            for (Token_revocations revocation : changed) {
+                // Giao lại cho listener local; cache chỉ giữ watermark lớn nhất nên giao trùng không sao
+                super.publish(revocation.getUserId(), revocation.getRevokedBefore().getTime());
+                lastSeenMs = Math.max(lastSeenMs, revocation.getUpdatedAt().getTime());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot poll token revocations: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.repository.IUserRepository;
+import com.data.db_instagram.services.DeactivatedUserCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Snapshot id các user có is_active = false, refresh định kỳ (security.deactivated-users.refresh-ms):
+ * - Hot path (isDeactivated) chỉ đọc Set trong bộ nhớ, không query DB.
+ * - Độ trễ khóa tài khoản = chu kỳ refresh: app không có luồng đổi is_active (đổi trực tiếp trong DB),
+ *   token của user vừa bị khóa vẫn qua được tối đa refresh-ms trên mỗi node.
+ * - Lỗi khi refresh giữ nguyên snapshot cũ thay vì mở cho mọi token.
+ * - Gauge security.deactivated.users = số user đang bị chặn trên node này.
+ */
+@Service
+@Slf4j
+public class DeactivatedUserCacheImpl implements DeactivatedUserCache {
+    private final IUserRepository userRepository;
+    private volatile Set<UUID> deactivated = Set.of();
+
+    public DeactivatedUserCacheImpl(IUserRepository userRepository, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        Gauge.builder("security.deactivated.users", this, cache -> cache.deactivated.size())
+                .description("Deactivated users rejected by the JWT filter without a DB lookup")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isDeactivated(UUID userId) {
+        return deactivated.contains(userId);
+    }
+
+    @Override
+    @Scheduled(
+            initialDelayString = "${security.deactivated-users.initial-delay-ms:0}",
+            fixedDelayString = "${security.deactivated-users.refresh-ms:30000}"
+    )
+    public int refresh() {
+        try {
+            Set<UUID> loaded = Set.copyOf(userRepository.findInactiveUserIds());
+            deactivated = loaded;
+            return loaded.size();
+        } catch (RuntimeException e) {
+            log.warn("Cannot refresh deactivated users, keeping {} cached id(s): {}", deactivated.size(), e.getMessage());
+            return deactivated.size();
+        }
+    }
+}
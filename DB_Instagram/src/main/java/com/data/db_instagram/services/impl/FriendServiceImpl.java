@@ -7,31 +7,37 @@ import com.data.db_instagram.dto.response.FriendInfo;
 import com.data.db_instagram.dto.response.FriendRequestInfo;
 import com.data.db_instagram.dto.response.SearchUserResponse;
 import com.data.db_instagram.dto.response.UserInfo;
+import com.data.db_instagram.event.RealtimeEvent;
 import com.data.db_instagram.exception.HttpBadRequest;
 import com.data.db_instagram.exception.HttpConflict;
 import com.data.db_instagram.exception.HttpForbidden;
 import com.data.db_instagram.exception.HttpNotFound;
-import com.data.db_instagram.mapper.UserMapper;
 import com.data.db_instagram.model.Blocks;
 import com.data.db_instagram.model.Friend_requests;
 import com.data.db_instagram.model.Friends;
-import com.data.db_instagram.model.Profiles;
 import com.data.db_instagram.model.Users;
 import com.data.db_instagram.repository.BlockRepository;
 import com.data.db_instagram.repository.FriendRepository;
 import com.data.db_instagram.repository.FriendRequestRepository;
 import com.data.db_instagram.repository.IUserRepository;
-import com.data.db_instagram.repository.ProfilesRepository;
 import com.data.db_instagram.services.FriendService;
 import com.data.db_instagram.services.NotificationService;
+import com.data.db_instagram.services.TimelineService;
+import com.data.db_instagram.services.UserInfoCache;
+import com.data.db_instagram.utils.NotificationPayload;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -39,25 +45,28 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class FriendServiceImpl implements FriendService {
     private final IUserRepository userRepository;
-    private final ProfilesRepository profilesRepository;
     private final FriendRequestRepository friendRequestRepository;
     private final FriendRepository friendRepository;
     private final BlockRepository blockRepository;
-    private final UserMapper userMapper;
+    private final UserInfoCache userInfoCache;
     private final NotificationService notificationService;
+    private final TimelineService timelineService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public SearchUserResponse searchUsersByPhone(String phone, UUID currentUserId) {
         // Search by both email and phone
         List<Users> users = userRepository.findByEmailContainingOrPhoneContaining(phone, phone);
 
-        List<UserInfo> userInfos = users.stream()
-                .filter(user -> !user.getId().equals(currentUserId))
-                .filter(user -> !isBlocked(currentUserId, user.getId()))
-                .map(user -> {
-                    Profiles profile = profilesRepository.findByUserId(user.getId()).orElse(null);
-                    return userMapper.toUserInfo(user, profile);
-                })
+        List<UUID> userIds = users.stream()
+                .map(Users::getId)
+                .filter(id -> !id.equals(currentUserId))
+                .filter(id -> !isBlocked(currentUserId, id))
+                .collect(Collectors.toList());
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(userIds);
+        List<UserInfo> userInfos = userIds.stream()
+                .map(userInfoMap::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
         return SearchUserResponse.builder()
@@ -112,14 +121,11 @@ public class FriendServiceImpl implements FriendService {
         friendRequest = friendRequestRepository.save(friendRequest);
 
         // Create notification for recipient
-        String payload = "{\"requestId\":\"" + friendRequest.getId() + "\",\"message\":\"" + 
-                (request.getMessage() != null ? request.getMessage().replace("\"", "\\\"") : "") + "\"}";
-        notificationService.createNotification(toUser.getId(), fromUserId, "friend_request", payload);
+        notificationService.createNotification(toUser.getId(), fromUserId, "friend_request",
+                NotificationPayload.friendRequest(friendRequest.getId(), request.getMessage()));
 
         // Build response
-        Users fromUser = userRepository.findById(fromUserId).orElseThrow();
-        Profiles fromProfile = profilesRepository.findByUserId(fromUserId).orElse(null);
-        Profiles toProfile = profilesRepository.findByUserId(toUser.getId()).orElse(null);
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(List.of(fromUserId, toUser.getId()));
 
         return FriendRequestInfo.builder()
                 .id(friendRequest.getId())
@@ -129,8 +135,8 @@ public class FriendServiceImpl implements FriendService {
                 .status(friendRequest.getStatus())
                 .createdAt(friendRequest.getCreated_at())
                 .updatedAt(friendRequest.getUpdated_at())
-                .fromUser(userMapper.toUserInfo(fromUser, fromProfile))
-                .toUser(userMapper.toUserInfo(toUser, toProfile))
+                .fromUser(userInfoMap.get(fromUserId))
+                .toUser(userInfoMap.get(toUser.getId()))
                 .build();
     }
 
@@ -160,13 +166,20 @@ public class FriendServiceImpl implements FriendService {
             friendship.setUser_b(friendRequest.getTo_user());
             friendship.setSince(new Date());
             friendRepository.save(friendship);
+            userRepository.incrementFriendCount(List.of(friendRequest.getFrom_user(), friendRequest.getTo_user()), 1);
+
+            // Đưa posts gần đây của nhau vào home timeline
+            timelineService.onFriendshipCreated(friendRequest.getFrom_user(), friendRequest.getTo_user());
         }
 
+        // Báo cho người gửi lời mời (sau khi commit)
+        eventPublisher.publishEvent(RealtimeEvent.to(friendRequest.getFrom_user(), Map.of(
+                "type", "friend_request_accepted",
+                "requestId", friendRequest.getId(),
+                "userId", friendRequest.getTo_user())));
+
         // Build response
-        Users fromUser = userRepository.findById(friendRequest.getFrom_user()).orElseThrow();
-        Users toUser = userRepository.findById(friendRequest.getTo_user()).orElseThrow();
-        Profiles fromProfile = profilesRepository.findByUserId(friendRequest.getFrom_user()).orElse(null);
-        Profiles toProfile = profilesRepository.findByUserId(friendRequest.getTo_user()).orElse(null);
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(List.of(friendRequest.getFrom_user(), friendRequest.getTo_user()));
 
         return FriendRequestInfo.builder()
                 .id(friendRequest.getId())
@@ -176,8 +189,8 @@ public class FriendServiceImpl implements FriendService {
                 .status(friendRequest.getStatus())
                 .createdAt(friendRequest.getCreated_at())
                 .updatedAt(friendRequest.getUpdated_at())
-                .fromUser(userMapper.toUserInfo(fromUser, fromProfile))
-                .toUser(userMapper.toUserInfo(toUser, toProfile))
+                .fromUser(userInfoMap.get(friendRequest.getFrom_user()))
+                .toUser(userInfoMap.get(friendRequest.getTo_user()))
                 .build();
     }
 
@@ -236,6 +249,10 @@ public class FriendServiceImpl implements FriendService {
 
         // Delete all friendships found (in case of duplicates)
         friendRepository.deleteAll(friendships);
+        userRepository.incrementFriendCount(List.of(userId, friendId), -friendships.size());
+
+        // Dọn posts của nhau khỏi home timeline
+        timelineService.onFriendshipRemoved(userId, friendId, friendships.size());
     }
 
     @Override
@@ -249,12 +266,14 @@ public class FriendServiceImpl implements FriendService {
         allRequests.addAll(incomingRequests);
         allRequests.addAll(outgoingRequests);
 
-        return allRequests.stream().map(request -> {
-            Users fromUser = userRepository.findById(request.getFrom_user()).orElse(null);
-            Users toUser = userRepository.findById(request.getTo_user()).orElse(null);
-            Profiles fromProfile = profilesRepository.findByUserId(request.getFrom_user()).orElse(null);
-            Profiles toProfile = profilesRepository.findByUserId(request.getTo_user()).orElse(null);
+        Set<UUID> userIds = new HashSet<>();
+        for (Friend_requests request : allRequests) {
+            userIds.add(request.getFrom_user());
+            userIds.add(request.getTo_user());
+        }
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(userIds);
 
+        return allRequests.stream().map(request -> {
             return FriendRequestInfo.builder()
                     .id(request.getId())
                     .fromUserId(request.getFrom_user())
@@ -263,17 +282,16 @@ public class FriendServiceImpl implements FriendService {
                     .status(request.getStatus())
                     .createdAt(request.getCreated_at())
                     .updatedAt(request.getUpdated_at())
-                    .fromUser(userMapper.toUserInfo(fromUser, fromProfile))
-                    .toUser(userMapper.toUserInfo(toUser, toProfile))
+                    .fromUser(userInfoMap.get(request.getFrom_user()))
+                    .toUser(userInfoMap.get(request.getTo_user()))
                     .build();
         }).collect(Collectors.toList());
     }
 
     @Override
     public List<FriendInfo> getFriends(UUID userId) {
-        List<Friends> friendships = friendRepository.findByUserAOrUserB(userId);
-
-        return friendships.stream()
+        List<Friends> friendships = friendRepository.findByUserAOrUserB(userId)
+                .stream()
                 .filter(friendship -> {
                     UUID friendUserId = friendship.getUser_a().equals(userId)
                             ? friendship.getUser_b()
@@ -281,19 +299,23 @@ public class FriendServiceImpl implements FriendService {
                     // Filter out blocked users (both directions)
                     return !isBlocked(userId, friendUserId) && !isBlocked(friendUserId, userId);
                 })
+                .collect(Collectors.toList());
+
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(friendships.stream()
+                .map(friendship -> friendship.getUser_a().equals(userId) ? friendship.getUser_b() : friendship.getUser_a())
+                .collect(Collectors.toSet()));
+
+        return friendships.stream()
                 .map(friendship -> {
                     UUID friendUserId = friendship.getUser_a().equals(userId)
                             ? friendship.getUser_b()
                             : friendship.getUser_a();
 
-                    Users friendUser = userRepository.findById(friendUserId).orElse(null);
-                    Profiles friendProfile = profilesRepository.findByUserId(friendUserId).orElse(null);
-
                     return FriendInfo.builder()
                             .id(friendship.getId())
                             .userId(friendUserId)
                             .since(friendship.getSince())
-                            .user(userMapper.toUserInfo(friendUser, friendProfile))
+                            .user(userInfoMap.get(friendUserId))
                             .build();
                 })
                 .collect(Collectors.toList());
@@ -356,17 +378,18 @@ public class FriendServiceImpl implements FriendService {
     @Override
     public List<FriendInfo> getBlockedUsers(UUID blockerId) {
         List<Blocks> blocks = blockRepository.findByBlocker(blockerId);
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(blocks.stream()
+                .map(Blocks::getBlocked)
+                .collect(Collectors.toSet()));
 
         return blocks.stream().map(block -> {
             UUID blockedUserId = block.getBlocked();
-            Users blockedUser = userRepository.findById(blockedUserId).orElse(null);
-            Profiles blockedProfile = profilesRepository.findByUserId(blockedUserId).orElse(null);
 
             return FriendInfo.builder()
                     .id(block.getId())
                     .userId(blockedUserId)
                     .since(block.getCreated_at())
-                    .user(userMapper.toUserInfo(blockedUser, blockedProfile))
+                    .user(userInfoMap.get(blockedUserId))
                     .build();
         }).collect(Collectors.toList());
     }
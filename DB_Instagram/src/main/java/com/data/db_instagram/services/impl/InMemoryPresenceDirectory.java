@@ -0,0 +1,44 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.services.PresenceDirectory;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Presence trong bộ nhớ của JVM: đủ cho 1 node, hoặc nhiều node nhúng trong cùng JVM (test).
+ * Chạy nhiều JVM thật thì cần 1 implementation dùng chung (DB/Redis) thay cho bean này.
+ */
+@Service
+public class InMemoryPresenceDirectory implements PresenceDirectory {
+    private final Map<String, Set<String>> nodesByUser = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(String userId, String nodeId) {
+        nodesByUser.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(nodeId);
+    }
+
+    @Override
+    public void unregister(String userId, String nodeId) {
+        nodesByUser.computeIfPresent(userId, (key, nodes) -> {
+            nodes.remove(nodeId);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+
+    @Override
+    public void removeNode(String nodeId) {
+        for (String userId : nodesByUser.keySet()) {
+            unregister(userId, nodeId);
+        }
+    }
+
+    @Override
+    public Set<String> nodesOf(String userId) {
+        Set<String> nodes = nodesByUser.get(userId);
+        return nodes != null ? Set.copyOf(nodes) : Collections.emptySet();
+    }
+}
@@ -0,0 +1,44 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.services.PresenceDirectory;
+import com.data.db_instagram.services.RealtimeBroker;
+import org.springframework.web.socket.TextMessage;
+
+// Broker 1 node: chỉ giao cho các session local (mặc định, realtime.broker=memory)
+public class InMemoryRealtimeBroker implements RealtimeBroker {
+    private final String nodeId;
+    private final PresenceDirectory presenceDirectory;
+    private volatile LocalDelivery localDelivery = (userId, frame, replayable) -> { };
+
+    public InMemoryRealtimeBroker(String nodeId, PresenceDirectory presenceDirectory) {
+        this.nodeId = nodeId;
+        this.presenceDirectory = presenceDirectory;
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(String userId, TextMessage frame, boolean replayable) {
+        if (presenceDirectory.nodesOf(userId).contains(nodeId)) {
+            localDelivery.deliver(userId, frame, replayable);
+        }
+    }
+
+    @Override
+    public void onDeliver(LocalDelivery localDelivery) {
+        this.localDelivery = localDelivery;
+    }
+
+    @Override
+    public void userConnected(String userId) {
+        presenceDirectory.register(userId, nodeId);
+    }
+
+    @Override
+    public void userDisconnected(String userId) {
+        presenceDirectory.unregister(userId, nodeId);
+    }
+}
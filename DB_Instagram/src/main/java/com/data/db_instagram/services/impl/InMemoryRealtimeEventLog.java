@@ -0,0 +1,170 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.services.RealtimeEventLog;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Log sự kiện trong bộ nhớ của node:
+ * - Mỗi user giữ tối đa realtime.event-log.capacity frame gần nhất (nên <= websocket.outbound.buffer-limit
+ *   để replay không làm đầy outbox); tổng dung lượng mọi log giới hạn theo byte (realtime.event-log.max-bytes),
+ *   log không dùng tới quá ttl hoặc bị đẩy ra khi vượt dung lượng thì bị bỏ.
+ * - seq của log mới bắt đầu từ thời điểm tạo (millis * 1000) nên vẫn tăng dần khi log bị bỏ rồi tạo lại;
+ *   lastSeq của log cũ rơi vào khoảng trống và client nhận tín hiệu resync.
+ * - seq được chèn vào đầu JSON đã serialize ({"seq":N,...}), không serialize lại payload.
+ * Chạy nhiều node thì user kết nối lại vào node khác sẽ nhận resync (log không dùng chung giữa các node).
+ */
+@Service
+public class InMemoryRealtimeEventLog implements RealtimeEventLog {
+    private static final byte[] SEQ_PREFIX = "{\"seq\":".getBytes(StandardCharsets.UTF_8);
+    // Ước lượng phần heap ngoài payload: UserLog + deque, và Entry + TextMessage cho mỗi frame
+    private static final int LOG_OVERHEAD_BYTES = 128;
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final int capacity;
+    private final Cache<String, UserLog> logs;
+    private volatile Consumer<String> evictionListener = userId -> { };
+
+    public InMemoryRealtimeEventLog(
+            @Value("${realtime.event-log.capacity:200}") int capacity,
+            @Value("${realtime.event-log.max-bytes:67108864}") long maxBytes,
+            @Value("${realtime.event-log.ttl-minutes:1440}") long ttlMinutes
+    ) {
+        this.capacity = capacity;
+        this.logs = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String userId, UserLog log) -> log.bytes)
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes))
+                .removalListener((String userId, UserLog log, RemovalCause cause) -> {
+                    if (userId != null && cause.wasEvicted()) {
+                        evictionListener.accept(userId);
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public void append(String userId, TextMessage frame, Consumer<TextMessage> deliver) {
+        byte[] json = frame.asBytes();
+        if (json.length < 2 || json[0] != '{') {
+            // Chỉ JSON object mới gắn được seq
+            deliver.accept(frame);
+            return;
+        }
+
+        UserLog log = logOf(userId);
+        synchronized (log) {
+            long seq = log.nextSeq++;
+            TextMessage sequenced = new TextMessage(withSeq(json, seq));
+            log.add(new Entry(seq, sequenced));
+            if (log.entries.size() > capacity) {
+                log.removeFirst();
+            }
+            // Caffeine chỉ tính lại weight khi ghi vào map: compute để cập nhật dung lượng log (không tạo lại log đã bị bỏ)
+            logs.asMap().computeIfPresent(userId, (key, current) -> current);
+            deliver.accept(sequenced);
+        }
+    }
+
+    @Override
+    public void replay(String userId, Long lastSeq, Consumer<Replay> onReplay) {
+        UserLog log = logOf(userId);
+        synchronized (log) {
+            long latestSeq = log.nextSeq - 1;
+            if (lastSeq == null) {
+                onReplay.accept(new Replay(Collections.emptyList(), latestSeq, false));
+                return;
+            }
+
+            long oldestSeq = log.entries.isEmpty() ? log.nextSeq : log.entries.peekFirst().seq;
+            if (lastSeq > latestSeq || lastSeq < oldestSeq - 1) {
+                onReplay.accept(new Replay(Collections.emptyList(), latestSeq, true));
+                return;
+            }
+
+            List<TextMessage> missed = new ArrayList<>();
+            for (Entry entry : log.entries) {
+                if (entry.seq > lastSeq) {
+                    missed.add(entry.frame);
+                }
+            }
+            onReplay.accept(new Replay(missed, latestSeq, false));
+        }
+    }
+
+    @Override
+    public void retain(String userId) {
+        logOf(userId);
+    }
+
+    @Override
+    public void onEvicted(Consumer<String> listener) {
+        this.evictionListener = listener;
+    }
+
+    private UserLog logOf(String userId) {
+        return logs.get(userId, key -> new UserLog(System.currentTimeMillis() * 1000));
+    }
+
+    // {"seq":N, + phần còn lại sau dấu { (hoặc {"seq":N} nếu object rỗng)
+    static byte[] withSeq(byte[] json, long seq) {
+        byte[] seqBytes = Long.toString(seq).getBytes(StandardCharsets.UTF_8);
+        boolean empty = json[1] == '}';
+        int restLength = json.length - 1;
+        byte[] result = new byte[SEQ_PREFIX.length + seqBytes.length + (empty ? 0 : 1) + restLength];
+        int offset = 0;
+        System.arraycopy(SEQ_PREFIX, 0, result, offset, SEQ_PREFIX.length);
+        offset += SEQ_PREFIX.length;
+        System.arraycopy(seqBytes, 0, result, offset, seqBytes.length);
+        offset += seqBytes.length;
+        if (!empty) {
+            result[offset++] = ',';
+        }
+        System.arraycopy(json, 1, result, offset, restLength);
+        return result;
+    }
+
+    private static final class UserLog {
+        private final Deque<Entry> entries = new ArrayDeque<>();
+        private long nextSeq;
+        // Weight của log trong cache, chỉ đổi trong synchronized (log)
+        private int bytes = LOG_OVERHEAD_BYTES;
+
+        private UserLog(long firstSeq) {
+            this.nextSeq = firstSeq;
+        }
+
+        private void add(Entry entry) {
+            entries.addLast(entry);
+            bytes += entry.frame.getPayloadLength() + ENTRY_OVERHEAD_BYTES;
+        }
+
+        private void removeFirst() {
+            Entry removed = entries.removeFirst();
+            bytes -= removed.frame.getPayloadLength() + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
+    private static final class Entry {
+        private final long seq;
+        private final TextMessage frame;
+
+        private Entry(long seq, TextMessage frame) {
+            this.seq = seq;
+            this.frame = frame;
+        }
+    }
+}
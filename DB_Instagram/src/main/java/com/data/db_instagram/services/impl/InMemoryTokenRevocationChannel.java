@@ -0,0 +1,23 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.services.TokenRevocationChannel;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+// 1 node: giao watermark thẳng cho listener local
+public class InMemoryTokenRevocationChannel implements TokenRevocationChannel {
+    private final List<BiConsumer<UUID, Long>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(UUID userId, long revokedBeforeMs) {
+        listeners.forEach(listener -> listener.accept(userId, revokedBeforeMs));
+    }
+
+    @Override
+    public void onRevoked(BiConsumer<UUID, Long> listener) {
+        listeners.add(listener);
+    }
+}
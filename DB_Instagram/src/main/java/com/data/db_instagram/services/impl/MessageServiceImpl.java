@@ -3,16 +3,25 @@ package com.data.db_instagram.services.impl;
 import com.data.db_instagram.dto.request.ReactToMessageRequest;
 import com.data.db_instagram.dto.request.SendMessageRequest;
 import com.data.db_instagram.dto.response.*;
+import com.data.db_instagram.event.RealtimeEvent;
 import com.data.db_instagram.exception.HttpBadRequest;
 import com.data.db_instagram.exception.HttpForbidden;
 import com.data.db_instagram.exception.HttpNotFound;
-import com.data.db_instagram.mapper.UserMapper;
 import com.data.db_instagram.model.*;
 import com.data.db_instagram.repository.*;
+import com.data.db_instagram.services.ConversationStateService;
 import com.data.db_instagram.services.MessageService;
 import com.data.db_instagram.services.NotificationService;
-import com.data.db_instagram.handler.MessageWebSocketHandler;
+import com.data.db_instagram.services.UserInfoCache;
+import com.data.db_instagram.utils.NotificationPayload;
+import com.data.db_instagram.utils.PageCursor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,14 +32,18 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @lombok.extern.slf4j.Slf4j
 public class MessageServiceImpl implements MessageService {
+    private static final int MAX_PAGE_SIZE = 50;
+
     private final MessagesRepository messagesRepository;
     private final MessageMediaRepository messageMediaRepository;
     private final MessageReactionsRepository messageReactionsRepository;
     private final IUserRepository userRepository;
-    private final ProfilesRepository profilesRepository;
-    private final UserMapper userMapper;
+    private final UserInfoCache userInfoCache;
+    private final ConversationStateRepository conversationStateRepository;
+    private final ConversationStateService conversationStateService;
     private final NotificationService notificationService;
-    private final MessageWebSocketHandler webSocketHandler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
 
     @Override
     @Transactional
@@ -73,37 +86,24 @@ public class MessageServiceImpl implements MessageService {
                 messageMediaRepository.save(media);
             }
         }
+        conversationStateService.onMessageSent(message);
 
-        String payload = "{\"messageId\":\"" + message.getId() + "\"}";
-        notificationService.createNotification(request.getToUserId(), fromUserId, "message_new", payload);
+        notificationService.createNotification(request.getToUserId(), fromUserId, "message_new", NotificationPayload.message(message.getId()));
 
         MessageResponse response = buildMessageResponse(message, fromUserId);
         
-        try {
-            webSocketHandler.sendMessageToUser(
-                request.getToUserId().toString(),
-                Map.of("type", "new_message", "message", response)
-            );
-            log.debug("Message broadcasted via WebSocket to user: {}", request.getToUserId());
-        } catch (Exception e) {
-            log.warn("Failed to broadcast message via WebSocket: {}", e.getMessage());
-        }
-        
-        try {
-            webSocketHandler.sendMessageToUser(
-                fromUserId.toString(),
-                Map.of("type", "message_sent", "message", response)
-            );
-        } catch (Exception e) {
-            log.warn("Failed to send confirmation via WebSocket to sender: {}", e.getMessage());
-        }
+        // Đẩy qua WebSocket sau khi commit (RealtimeEventDispatcher)
+        // Người nhận và người gửi dùng chung 1 bản JSON của message, không serialize 2 lần
+        Object messageJson = toRawJson(response);
+        eventPublisher.publishEvent(RealtimeEvent.to(request.getToUserId(), Map.of("type", "new_message", "message", messageJson)));
+        eventPublisher.publishEvent(RealtimeEvent.to(fromUserId, Map.of("type", "message_sent", "message", messageJson)));
 
         return response;
     }
 
     @Override
     public List<MessageResponse> getConversation(UUID currentUserId, UUID otherUserId) {
-        List<Messages> messages = messagesRepository.findConversationBetweenUsers(currentUserId, otherUserId);
+        List<Messages> messages = messagesRepository.findConversation(Messages.conversationKey(currentUserId, otherUserId));
         if (messages.isEmpty()) {
             return new ArrayList<>();
         }
@@ -112,66 +112,86 @@ public class MessageServiceImpl implements MessageService {
         return buildMessageResponses(messages, currentUserId);
     }
 
+    @Override
+    public CursorPageResponse<MessageResponse> getConversationByCursor(
+            UUID currentUserId, UUID otherUserId, String before, String after, int size) {
+        if (before != null && !before.isBlank() && after != null && !after.isBlank()) {
+            throw new HttpBadRequest("Only one of before/after can be provided");
+        }
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String conversationKey = Messages.conversationKey(currentUserId, otherUserId);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+
+        PageCursor afterCursor = PageCursor.decode(after);
+        if (afterCursor != null) {
+            // Tin nhắn mới hơn cursor (cũ -> mới), nextCursor tiếp tục đi về phía mới hơn
+            List<Messages> newer = messagesRepository.findConversationAfter(
+                    conversationKey, afterCursor.getCreatedAt(), afterCursor.getId(), pageable);
+            boolean hasMore = newer.size() > limit;
+            List<Messages> page = hasMore ? newer.subList(0, limit) : newer;
+            return buildConversationPage(page, hasMore, page.isEmpty() ? null : page.get(page.size() - 1),
+                    page.isEmpty() ? null : page.get(0), currentUserId);
+        }
+
+        // Trang mới nhất hoặc cũ hơn cursor (đọc mới -> cũ rồi đảo lại), nextCursor đi về phía cũ hơn
+        PageCursor beforeCursor = PageCursor.decode(before);
+        List<Messages> older = beforeCursor == null
+                ? messagesRepository.findConversationLatest(conversationKey, pageable)
+                : messagesRepository.findConversationBefore(
+                        conversationKey, beforeCursor.getCreatedAt(), beforeCursor.getId(), pageable);
+        boolean hasMore = older.size() > limit;
+        List<Messages> page = new ArrayList<>(hasMore ? older.subList(0, limit) : older);
+        Collections.reverse(page);
+        return buildConversationPage(page, hasMore, page.isEmpty() ? null : page.get(0),
+                page.isEmpty() ? null : page.get(page.size() - 1), currentUserId);
+    }
+
+    // Items luôn theo thứ tự thời gian tăng dần (giống getConversation)
+    private CursorPageResponse<MessageResponse> buildConversationPage(
+            List<Messages> page, boolean hasMore, Messages nextEdge, Messages prevEdge, UUID currentUserId) {
+        return CursorPageResponse.<MessageResponse>builder()
+                .items(buildMessageResponses(page, currentUserId))
+                .nextCursor(hasMore ? toCursor(nextEdge) : null)
+                .hasMore(hasMore)
+                .prevCursor(prevEdge != null ? toCursor(prevEdge) : null)
+                .build();
+    }
+
+    private String toCursor(Messages message) {
+        return new PageCursor(message.getCreated_at(), message.getId()).encode();
+    }
+
     @Override
     public List<ConversationInfo> getConversations(UUID userId) {
-        // Tối ưu: chỉ lấy message cuối cùng của mỗi conversation
-        List<Messages> lastMessages = messagesRepository.findLastMessagesByUserId(userId);
-        
-        // Extract unique user IDs từ last messages
-        Set<UUID> conversationUserIds = new HashSet<>();
-        Map<UUID, Messages> lastMessageMap = new HashMap<>();
-        
-        for (Messages message : lastMessages) {
-            UUID otherUserId = message.getFrom_user().equals(userId) 
-                ? message.getTo_user() 
-                : message.getFrom_user();
-            conversationUserIds.add(otherUserId);
-            lastMessageMap.put(otherUserId, message);
+        // Inbox đọc từ conversation_state (đã sắp xếp theo message cuối), không COUNT unread từng conversation
+        List<Conversation_state> states = conversationStateRepository.findInbox(userId);
+        if (states.isEmpty()) {
+            return new ArrayList<>();
         }
         
-        List<ConversationInfo> conversations = new ArrayList<>();
-        
-        // Batch load users và profiles để tránh N+1 query
-        List<Users> otherUsers = userRepository.findAllById(conversationUserIds);
-        Map<UUID, Users> userMap = otherUsers.stream()
-            .collect(Collectors.toMap(Users::getId, u -> u));
+        List<UUID> lastMessageIds = states.stream().map(Conversation_state::getLastMessageId).collect(Collectors.toList());
+        Set<UUID> peerIds = states.stream().map(Conversation_state::getPeerId).collect(Collectors.toSet());
         
-        List<Profiles> otherProfiles = profilesRepository.findByUserIdIn(new ArrayList<>(conversationUserIds));
-        Map<UUID, Profiles> profileMap = otherProfiles.stream()
-            .collect(Collectors.toMap(Profiles::getUser_id, p -> p));
+        // Batch build last messages + batch load UserInfo qua cache để tránh N+1 query
+        Map<UUID, MessageResponse> lastMessageMap = buildMessageResponses(messagesRepository.findAllById(lastMessageIds), userId)
+                .stream()
+                .collect(Collectors.toMap(MessageResponse::getId, response -> response));
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(peerIds);
         
-        for (UUID otherUserId : conversationUserIds) {
-            Users otherUser = userMap.get(otherUserId);
-            if (otherUser == null) continue;
-            
-            Profiles otherProfile = profileMap.get(otherUserId);
-            UserInfo otherUserInfo = userMapper.toUserInfo(otherUser, otherProfile);
-            
-            // Get last message từ map
-            Messages lastMessage = lastMessageMap.get(otherUserId);
-            
-            // Get unread count
-            long unreadCount = messagesRepository.countUnreadMessages(userId, otherUserId);
+        List<ConversationInfo> conversations = new ArrayList<>();
+        for (Conversation_state state : states) {
+            UserInfo otherUserInfo = userInfoMap.get(state.getPeerId());
+            if (otherUserInfo == null) continue;
             
-            ConversationInfo conversation = ConversationInfo.builder()
-                    .userId(otherUserId)
+            conversations.add(ConversationInfo.builder()
+                    .userId(state.getPeerId())
                     .user(otherUserInfo)
-                    .lastMessage(lastMessage != null ? buildMessageResponse(lastMessage, userId) : null)
-                    .unreadCount(unreadCount)
-                    .lastMessageAt(lastMessage != null ? lastMessage.getCreated_at() : null)
-                    .build();
-            
-            conversations.add(conversation);
+                    .lastMessage(lastMessageMap.get(state.getLastMessageId()))
+                    .unreadCount(state.getUnreadCount())
+                    .lastMessageAt(state.getLastMessageAt())
+                    .build());
         }
         
-        // Sort by last message time (most recent first)
-        conversations.sort((a, b) -> {
-            if (a.getLastMessageAt() == null && b.getLastMessageAt() == null) return 0;
-            if (a.getLastMessageAt() == null) return 1;
-            if (b.getLastMessageAt() == null) return -1;
-            return b.getLastMessageAt().compareTo(a.getLastMessageAt());
-        });
-        
         return conversations;
     }
 
@@ -185,27 +205,28 @@ public class MessageServiceImpl implements MessageService {
             throw new HttpForbidden("You can only mark your own received messages as read");
         }
 
+        boolean wasUnread = !Boolean.TRUE.equals(message.getIs_read());
         message.setIs_read(true);
         message.setUpdated_at(new Date());
         message = messagesRepository.save(message);
+        if (wasUnread) {
+            conversationStateService.onMessageRead(message);
+            sendReadReceipt(message.getFrom_user(), userId, message.getId(), message.getUpdated_at());
+        }
 
         return buildMessageResponse(message, userId);
     }
 
     @Override
     @Transactional
-    public void markAllAsRead(UUID currentUserId, UUID otherUserId) {
-        List<Messages> unreadMessages = messagesRepository.findConversationBetweenUsers(currentUserId, otherUserId)
-                .stream()
-                .filter(m -> m.getTo_user().equals(currentUserId) && !m.getIs_read())
-                .collect(Collectors.toList());
-
+    public int markAllAsRead(UUID currentUserId, UUID otherUserId) {
         Date now = new Date();
-        for (Messages message : unreadMessages) {
-            message.setIs_read(true);
-            message.setUpdated_at(now);
+        int updated = messagesRepository.markAllAsRead(currentUserId, otherUserId, now);
+        conversationStateService.onConversationRead(currentUserId, otherUserId);
+        if (updated > 0) {
+            sendReadReceipt(otherUserId, currentUserId, null, now);
         }
-        messagesRepository.saveAll(unreadMessages);
+        return updated;
     }
 
     @Override
@@ -264,6 +285,20 @@ public class MessageServiceImpl implements MessageService {
         
         // Delete message
         messagesRepository.delete(message);
+        conversationStateService.onMessageDeleted(message);
+    }
+
+    // Báo cho người gửi biết tin nhắn đã được đọc (messageId null = đã đọc toàn bộ conversation)
+    private void sendReadReceipt(UUID senderId, UUID readerId, UUID messageId, Date readAt) {
+        if (senderId.equals(readerId)) {
+            return;
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "messages_read");
+        event.put("readerId", readerId);
+        event.put("messageId", messageId);
+        event.put("readAt", readAt);
+        eventPublisher.publishEvent(RealtimeEvent.to(senderId, event));
     }
 
     // Batch build messages để tránh N+1 query problem
@@ -272,22 +307,6 @@ public class MessageServiceImpl implements MessageService {
             return new ArrayList<>();
         }
         
-        // Collect all user IDs
-        Set<UUID> userIds = new HashSet<>();
-        for (Messages message : messages) {
-            userIds.add(message.getFrom_user());
-            userIds.add(message.getTo_user());
-        }
-        
-        // Batch load users và profiles
-        List<Users> users = userRepository.findAllById(userIds);
-        Map<UUID, Users> userMap = users.stream()
-                .collect(Collectors.toMap(Users::getId, u -> u));
-        
-        List<Profiles> profiles = profilesRepository.findByUserIdIn(new ArrayList<>(userIds));
-        Map<UUID, Profiles> profileMap = profiles.stream()
-                .collect(Collectors.toMap(Profiles::getUser_id, p -> p));
-        
         // Collect all message IDs for batch loading media, reactions
         List<UUID> messageIds = messages.stream().map(Messages::getId).collect(Collectors.toList());
         
@@ -301,19 +320,16 @@ public class MessageServiceImpl implements MessageService {
         Map<UUID, List<Message_reactions>> reactionsMap = allReactions.stream()
                 .collect(Collectors.groupingBy(Message_reactions::getMessage_id));
         
-        // Collect reaction user IDs
-        Set<UUID> reactionUserIds = allReactions.stream()
-                .map(Message_reactions::getUser_id)
-                .collect(Collectors.toSet());
-        
-        // Batch load reaction users và profiles
-        List<Users> reactionUsers = userRepository.findAllById(reactionUserIds);
-        Map<UUID, Users> reactionUserMap = reactionUsers.stream()
-                .collect(Collectors.toMap(Users::getId, u -> u));
-        
-        List<Profiles> reactionProfiles = profilesRepository.findByUserIdIn(new ArrayList<>(reactionUserIds));
-        Map<UUID, Profiles> reactionProfileMap = reactionProfiles.stream()
-                .collect(Collectors.toMap(Profiles::getUser_id, p -> p));
+        // Người gửi/nhận + người react: lấy từ UserInfoCache
+        Set<UUID> userIds = new HashSet<>();
+        for (Messages message : messages) {
+            userIds.add(message.getFrom_user());
+            userIds.add(message.getTo_user());
+        }
+        for (Message_reactions reaction : allReactions) {
+            userIds.add(reaction.getUser_id());
+        }
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(userIds);
         
         // Batch check reactions for current user
         Set<UUID> reactedMessageIds = new HashSet<>();
@@ -327,27 +343,25 @@ public class MessageServiceImpl implements MessageService {
         return messages.stream()
                 .map(message -> buildMessageResponseOptimized(
                     message,
-                    currentUserId,
-                    userMap,
-                    profileMap,
+                    userInfoMap,
                     mediaMap.getOrDefault(message.getId(), Collections.emptyList()),
                     reactionsMap.getOrDefault(message.getId(), Collections.emptyList()),
-                    reactionUserMap,
-                    reactionProfileMap,
                     reactedMessageIds.contains(message.getId())
                 ))
                 .collect(Collectors.toList());
     }
     
     private MessageResponse buildMessageResponse(Messages message, UUID currentUserId) {
-        Users fromUser = userRepository.findById(message.getFrom_user()).orElse(null);
-        Users toUser = userRepository.findById(message.getTo_user()).orElse(null);
-        
-        Profiles fromProfile = fromUser != null ? profilesRepository.findByUserId(fromUser.getId()).orElse(null) : null;
-        Profiles toProfile = toUser != null ? profilesRepository.findByUserId(toUser.getId()).orElse(null) : null;
+        // Get reactions
+        List<Message_reactions> reactions = messageReactionsRepository.findByMessage_idOrderByCreated_atDesc(message.getId());
         
-        UserInfo fromUserInfo = userMapper.toUserInfo(fromUser, fromProfile);
-        UserInfo toUserInfo = userMapper.toUserInfo(toUser, toProfile);
+        Set<UUID> userIds = new HashSet<>();
+        userIds.add(message.getFrom_user());
+        userIds.add(message.getTo_user());
+        reactions.forEach(r -> userIds.add(r.getUser_id()));
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(userIds);
+        UserInfo fromUserInfo = userInfoMap.get(message.getFrom_user());
+        UserInfo toUserInfo = userInfoMap.get(message.getTo_user());
 
         // Get media
         List<Message_media> mediaList = messageMediaRepository.findByMessage_id(message.getId());
@@ -359,22 +373,14 @@ public class MessageServiceImpl implements MessageService {
                         .build())
                 .collect(Collectors.toList());
 
-        // Get reactions
-        List<Message_reactions> reactions = messageReactionsRepository.findByMessage_idOrderByCreated_atDesc(message.getId());
         List<MessageReactionInfo> reactionInfo = reactions.stream()
-                .map(r -> {
-                    Users rUser = userRepository.findById(r.getUser_id()).orElse(null);
-                    Profiles rProfile = rUser != null ? profilesRepository.findByUserId(rUser.getId()).orElse(null) : null;
-                    UserInfo rUserInfo = userMapper.toUserInfo(rUser, rProfile);
-                    
-                    return MessageReactionInfo.builder()
-                            .id(r.getId())
-                            .userId(r.getUser_id())
-                            .emoji(r.getEmoji() != null ? r.getEmoji() : "❤️")
-                            .createdAt(r.getCreated_at())
-                            .user(rUserInfo)
-                            .build();
-                })
+                .map(r -> MessageReactionInfo.builder()
+                        .id(r.getId())
+                        .userId(r.getUser_id())
+                        .emoji(r.getEmoji() != null ? r.getEmoji() : "❤️")
+                        .createdAt(r.getCreated_at())
+                        .user(userInfoMap.get(r.getUser_id()))
+                        .build())
                 .collect(Collectors.toList());
 
         boolean hasReacted = messageReactionsRepository.existsByMessageIdAndUserId(message.getId(), currentUserId);
@@ -398,23 +404,13 @@ public class MessageServiceImpl implements MessageService {
     // Optimized version sử dụng pre-loaded data để tránh N+1 query
     private MessageResponse buildMessageResponseOptimized(
             Messages message,
-            UUID currentUserId,
-            Map<UUID, Users> userMap,
-            Map<UUID, Profiles> profileMap,
+            Map<UUID, UserInfo> userInfoMap,
             List<Message_media> mediaList,
             List<Message_reactions> reactions,
-            Map<UUID, Users> reactionUserMap,
-            Map<UUID, Profiles> reactionProfileMap,
             boolean hasReacted
     ) {
-        Users fromUser = userMap.get(message.getFrom_user());
-        Users toUser = userMap.get(message.getTo_user());
-        
-        Profiles fromProfile = profileMap.get(message.getFrom_user());
-        Profiles toProfile = profileMap.get(message.getTo_user());
-        
-        UserInfo fromUserInfo = userMapper.toUserInfo(fromUser, fromProfile);
-        UserInfo toUserInfo = userMapper.toUserInfo(toUser, toProfile);
+        UserInfo fromUserInfo = userInfoMap.get(message.getFrom_user());
+        UserInfo toUserInfo = userInfoMap.get(message.getTo_user());
 
         // Build media info
         List<MessageMediaInfo> mediaInfo = mediaList.stream()
@@ -427,19 +423,13 @@ public class MessageServiceImpl implements MessageService {
 
         // Build reactions info
         List<MessageReactionInfo> reactionInfo = reactions.stream()
-                .map(r -> {
-                    Users rUser = reactionUserMap.get(r.getUser_id());
-                    Profiles rProfile = reactionProfileMap.get(r.getUser_id());
-                    UserInfo rUserInfo = userMapper.toUserInfo(rUser, rProfile);
-                    
-                    return MessageReactionInfo.builder()
-                            .id(r.getId())
-                            .userId(r.getUser_id())
-                            .emoji(r.getEmoji() != null ? r.getEmoji() : "❤️")
-                            .createdAt(r.getCreated_at())
-                            .user(rUserInfo)
-                            .build();
-                })
+                .map(r -> MessageReactionInfo.builder()
+                        .id(r.getId())
+                        .userId(r.getUser_id())
+                        .emoji(r.getEmoji() != null ? r.getEmoji() : "❤️")
+                        .createdAt(r.getCreated_at())
+                        .user(userInfoMap.get(r.getUser_id()))
+                        .build())
                 .collect(Collectors.toList());
 
         return MessageResponse.builder()
@@ -457,5 +447,14 @@ public class MessageServiceImpl implements MessageService {
                 .hasReacted(hasReacted)
                 .build();
     }
-}
 
+    // JSON đã serialize sẵn, được ghi nguyên văn khi frame bên ngoài được serialize
+    private Object toRawJson(Object value) {
+        try {
+            return new RawValue(objectMapper.writeValueAsString(value));
+        } catch (JsonProcessingException e) {
+            log.warn("Cannot pre-serialize realtime payload: {}", e.getMessage());
+            return value;
+        }
+    }
+}
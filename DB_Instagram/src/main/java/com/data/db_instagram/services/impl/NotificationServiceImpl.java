@@ -2,72 +2,138 @@ package com.data.db_instagram.services.impl;
 
 import com.data.db_instagram.dto.response.NotificationResponse;
 import com.data.db_instagram.dto.response.UserInfo;
-import com.data.db_instagram.mapper.UserMapper;
+import com.data.db_instagram.event.RealtimeEvent;
 import com.data.db_instagram.model.Notifications;
-import com.data.db_instagram.model.Profiles;
-import com.data.db_instagram.model.Users;
-import com.data.db_instagram.repository.IUserRepository;
 import com.data.db_instagram.repository.NotificationsRepository;
-import com.data.db_instagram.repository.ProfilesRepository;
 import com.data.db_instagram.services.NotificationService;
-import lombok.RequiredArgsConstructor;
+import com.data.db_instagram.services.UserInfoCache;
+import com.data.db_instagram.utils.NotificationPayload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+/**
+ * Notification đơn (message_new, friend_request, comment_tag...) là 1 dòng / sự kiện.
+ * Notification gộp (post_reaction, comment) là 1 dòng / (user_id, type, object_id):
+ * - Actor mới: lock dòng, tăng actor_count, đưa actor lên đầu recent_actor_ids, đánh dấu chưa đọc và đẩy lên đầu danh sách.
+ *   "Mới" do caller quyết định từ bảng nguồn (reactions/comments), recent_actor_ids chỉ giữ vài người nên không dùng để đếm.
+ * - Bài viral chỉ cập nhật 1 dòng thay vì insert 1 dòng mỗi like, getNotifications trả 1 item cho cả nhóm.
+ * - Dòng gộp được tạo trống bằng insert-if-absent trên transaction hiện tại, unique (user_id, type, group_object_id) chặn trùng
+ *   - giống conversation_state.
+ */
 @Service
-@RequiredArgsConstructor
 public class NotificationServiceImpl implements NotificationService {
     private final NotificationsRepository notificationsRepository;
-    private final IUserRepository userRepository;
-    private final ProfilesRepository profilesRepository;
-    private final UserMapper userMapper;
+    private final UserInfoCache userInfoCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${notifications.aggregation.recent-actors:3}")
+    private int recentActorsLimit = 3;
+
+    public NotificationServiceImpl(
+            NotificationsRepository notificationsRepository,
+            UserInfoCache userInfoCache,
+            ApplicationEventPublisher eventPublisher
+    ) {
+        this.notificationsRepository = notificationsRepository;
+        this.userInfoCache = userInfoCache;
+        this.eventPublisher = eventPublisher;
+    }
 
     @Override
     @Transactional
-    public void createNotification(UUID userId, UUID actorId, String type, String payload) {
+    public void createNotification(UUID userId, UUID actorId, String type, NotificationPayload payload) {
         Notifications notification = new Notifications();
         notification.setUser_id(userId);
         notification.setActor_id(actorId);
         notification.setType(type);
-        notification.setPayload(payload);
+        notification.setObject_type(payload.getObjectType());
+        notification.setObject_id(payload.getObjectId());
+        notification.setPayload(payload.toJson());
         notification.setIs_read(false);
         notification.setCreated_at(new Date());
-        notificationsRepository.save(notification);
-    }
+        notification = notificationsRepository.save(notification);
 
-    @Override
-    public boolean hasUnreadNotificationRecently(UUID userId, UUID actorId, String type, String payloadPattern, int minutesAgo) {
-        Date sinceTime = new Date(System.currentTimeMillis() - (minutesAgo * 60 * 1000L));
-        return notificationsRepository.existsUnreadNotificationRecently(
-                userId, actorId, type, payloadPattern, sinceTime);
+        // Friend request, message, tag... đều tạo notification: đẩy realtime sau khi commit
+        publish(notification);
     }
 
     @Override
-    public boolean hasUnreadNotification(UUID userId, UUID actorId, String type, String payloadPattern) {
-        return notificationsRepository.existsUnreadNotification(
-                userId, actorId, type, payloadPattern);
+    @Transactional
+    public void addToGroup(UUID userId, UUID actorId, String type, NotificationPayload payload, boolean newActor) {
+        UUID objectId = payload.getObjectId();
+        Date now = new Date();
+        ensureGroup(userId, type, payload, now);
+        // Dòng vừa bị xóa (unlike cuối cùng / user xóa notification) giữa 2 bước: tạo lại trong transaction này
+        Notifications group = notificationsRepository.findGroupForUpdate(userId, type, objectId)
+                .orElseGet(() -> emptyGroup(userId, type, payload, now));
+        // Actor đã được đếm (vd: comment thêm lần nữa) thì chỉ đẩy lên đầu recent actors
+        if (newActor || group.getActor_count() == 0) {
+            group.setActor_count(group.getActor_count() + 1);
+        }
+
+        List<UUID> recent = recentActorIds(group);
+        recent.remove(actorId);
+        recent.add(0, actorId);
+        group.setRecent_actor_ids(joinActorIds(recent.subList(0, Math.min(recent.size(), recentActorsLimit))));
+        group.setActor_id(actorId);
+        group.setPayload(payload.toJson());
+        group.setIs_read(false);
+        group.setCreated_at(now);
+        group = notificationsRepository.save(group);
+
+        publish(group);
     }
 
     @Override
     @Transactional
-    public void deleteNotificationByUserIdAndTypeAndActorIdAndPayload(UUID userId, UUID actorId, String type, String payloadPattern) {
-        List<Notifications> notifications = notificationsRepository.findUnreadByUserIdAndTypeAndActorIdAndPayloadLike(
-                userId, actorId, type, payloadPattern);
-        if (!notifications.isEmpty()) {
-            notificationsRepository.deleteAll(notifications);
+    public void removeFromGroup(UUID userId, UUID actorId, String type, UUID objectId) {
+        Notifications group = notificationsRepository.findGroupForUpdate(userId, type, objectId).orElse(null);
+        if (group == null) {
+            return;
+        }
+        if (group.getActor_count() <= 1) {
+            notificationsRepository.delete(group);
+            return;
+        }
+
+        List<UUID> recent = recentActorIds(group);
+        recent.remove(actorId);
+        group.setActor_count(group.getActor_count() - 1);
+        group.setRecent_actor_ids(joinActorIds(recent));
+        if (actorId.equals(group.getActor_id()) && !recent.isEmpty()) {
+            group.setActor_id(recent.get(0));
         }
+        notificationsRepository.save(group);
     }
 
     @Override
     public List<NotificationResponse> getNotifications(UUID userId) {
         List<Notifications> notifications = notificationsRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        // Batch load actors (kể cả recent actors của dòng gộp) qua UserInfoCache thay vì query từng notification
+        Set<UUID> actorIds = new HashSet<>();
+        for (Notifications notification : notifications) {
+            if (notification.getActor_id() != null) {
+                actorIds.add(notification.getActor_id());
+            }
+            actorIds.addAll(recentActorIds(notification));
+        }
+        Map<UUID, UserInfo> actorInfoMap = userInfoCache.getAll(actorIds);
         return notifications.stream()
-                .map(this::buildNotificationResponse)
+                .map(notification -> buildNotificationResponse(notification, actorInfoMap))
                 .collect(Collectors.toList());
     }
 
@@ -92,12 +158,8 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     @Transactional
-    public void markAllAsRead(UUID userId) {
-        List<Notifications> unreadNotifications = notificationsRepository.findUnreadNotificationsByUserId(userId);
-        for (Notifications notification : unreadNotifications) {
-            notification.setIs_read(true);
-        }
-        notificationsRepository.saveAll(unreadNotifications);
+    public int markAllAsRead(UUID userId) {
+        return notificationsRepository.markAllAsRead(userId);
     }
 
     @Override
@@ -113,16 +175,48 @@ public class NotificationServiceImpl implements NotificationService {
         notificationsRepository.delete(notification);
     }
 
-    private NotificationResponse buildNotificationResponse(Notifications notification) {
-        Users actor = notification.getActor_id() != null 
-                ? userRepository.findById(notification.getActor_id()).orElse(null)
-                : null;
-        
-        Profiles actorProfile = actor != null 
-                ? profilesRepository.findByUserId(actor.getId()).orElse(null)
-                : null;
-        
-        UserInfo actorInfo = userMapper.toUserInfo(actor, actorProfile);
+    // Chỉ khi nhóm chưa có dòng: insert-if-absent dòng trống (actor_count 0, đã đọc, không hiện trong danh sách) ngay trong
+    // transaction này (không lấy thêm connection) rồi addToGroup mới lock nó. 2 actor đầu tiên cùng lúc: insert sau chờ
+    // rồi bỏ qua nhờ unique (user_id, type, group_object_id), cả 2 cập nhật tuần tự cùng 1 dòng
+    private void ensureGroup(UUID userId, String type, NotificationPayload payload, Date now) {
+        if (notificationsRepository.existsGroup(userId, type, payload.getObjectId())) {
+            return;
+        }
+        notificationsRepository.insertGroupIfAbsent(userId, type, payload.getObjectType(), payload.getObjectId(), now);
+    }
+
+    private static Notifications emptyGroup(UUID userId, String type, NotificationPayload payload, Date now) {
+        Notifications group = new Notifications();
+        group.setUser_id(userId);
+        group.setType(type);
+        group.setObject_type(payload.getObjectType());
+        group.setObject_id(payload.getObjectId());
+        group.setGroup_object_id(payload.getObjectId());
+        group.setActor_count(0);
+        group.setIs_read(true);
+        group.setCreated_at(now);
+        return group;
+    }
+
+    private void publish(Notifications notification) {
+        Map<UUID, UserInfo> actorInfoMap = userInfoCache.getAll(actorIdsOf(notification));
+        NotificationResponse response = buildNotificationResponse(notification, actorInfoMap);
+        eventPublisher.publishEvent(RealtimeEvent.to(notification.getUser_id(), Map.of("type", "new_notification", "notification", response)));
+    }
+
+    private Collection<UUID> actorIdsOf(Notifications notification) {
+        Set<UUID> actorIds = new HashSet<>(recentActorIds(notification));
+        if (notification.getActor_id() != null) {
+            actorIds.add(notification.getActor_id());
+        }
+        return actorIds;
+    }
+
+    private NotificationResponse buildNotificationResponse(Notifications notification, Map<UUID, UserInfo> actorInfoMap) {
+        List<UserInfo> actors = recentActorIds(notification).stream()
+                .map(actorInfoMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
         return NotificationResponse.builder()
                 .id(notification.getId())
@@ -132,8 +226,26 @@ public class NotificationServiceImpl implements NotificationService {
                 .payload(notification.getPayload())
                 .isRead(notification.getIs_read())
                 .createdAt(notification.getCreated_at())
-                .actor(actorInfo)
+                .actor(actorInfoMap.get(notification.getActor_id()))
+                .objectType(notification.getObject_type())
+                .objectId(notification.getObject_id())
+                .actorCount(notification.getActor_count())
+                .actors(actors)
                 .build();
     }
+
+    private static List<UUID> recentActorIds(Notifications notification) {
+        String ids = notification.getRecent_actor_ids();
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return Arrays.stream(ids.split(","))
+                .map(UUID::fromString)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static String joinActorIds(List<UUID> actorIds) {
+        return actorIds.stream().map(UUID::toString).collect(Collectors.joining(","));
+    }
 }
 
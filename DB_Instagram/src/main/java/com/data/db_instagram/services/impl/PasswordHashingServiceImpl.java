@@ -0,0 +1,130 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.exception.HttpTooManyRequests;
+import com.data.db_instagram.services.PasswordHashingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BCrypt chạy trên pool riêng thay vì trên request thread:
+ * - security.password.hash-threads thread (mặc định = số CPU) => CPU dành cho BCrypt có giới hạn,
+ *   các request khác vẫn được phục vụ khi có "login storm".
+ * - Hàng đợi security.password.hash-queue-capacity; đầy hoặc chờ quá security.password.hash-timeout-ms
+ *   thì trả 429 kèm Retry-After thay vì để request xếp hàng vô hạn (p99 dự đoán được).
+ * - Metrics: auth.password.hash (thời gian băm, tag op), auth.password.hash.queue, auth.password.hash.rejected.
+ */
+@Service
+@Slf4j
+public class PasswordHashingServiceImpl implements PasswordHashingService {
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final long retryAfterSeconds;
+    private final Timer encodeTimer;
+    private final Timer matchTimer;
+    private final Counter rejected;
+
+    public PasswordHashingServiceImpl(
+            PasswordEncoder passwordEncoder,
+            MeterRegistry meterRegistry,
+            @Value("${security.password.hash-threads:0}") int threads,
+            @Value("${security.password.hash-queue-capacity:64}") int queueCapacity,
+            @Value("${security.password.hash-timeout-ms:5000}") long timeoutMs,
+            @Value("${security.password.retry-after-seconds:2}") long retryAfterSeconds
+    ) {
+        this.passwordEncoder = passwordEncoder;
+        this.timeoutMs = timeoutMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.encodeTimer = Timer.builder("auth.password.hash").tag("op", "encode")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.matchTimer = Timer.builder("auth.password.hash").tag("op", "match")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.password.hash.rejected")
+                .description("Password hashing requests rejected because the hashing queue was full or too slow")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hash.queue", executor, pool -> pool.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(String rawPassword) {
+        return submit(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return submit(() -> matchTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public boolean needsRehash(String encodedPassword) {
+        // Chỉ đọc prefix / cost trong chuỗi hash, không băm - chạy trực tiếp
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw busy();
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw busy();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw busy();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private HttpTooManyRequests busy() {
+        rejected.increment();
+        return new HttpTooManyRequests("Hệ thống đang bận, vui lòng thử lại sau", retryAfterSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,69 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.repository.PostsRepository;
+import com.data.db_instagram.services.PostCounterService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * reaction_count / comment_count trên bảng posts:
+ * - Được cập nhật atomic cùng transaction với toggleReaction / createComment / deleteComment.
+ * - Job reconcile định kỳ đếm lại theo từng batch post id để sửa lệch (ghi lỗi, race insert trùng, sửa tay trong DB...).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PostCounterServiceImpl implements PostCounterService {
+    private final PostsRepository postsRepository;
+
+    @Value("${posts.counters.reconcile-batch-size:500}")
+    private int batchSize;
+
+    @Override
+    @Transactional
+    public void addReactions(UUID postId, long delta) {
+        if (delta != 0) {
+            postsRepository.incrementReactionCount(postId, delta);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void addComments(UUID postId, long delta) {
+        if (delta != 0) {
+            postsRepository.incrementCommentCount(postId, delta);
+        }
+    }
+
+    @Override
+    @Scheduled(
+            initialDelayString = "${posts.counters.reconcile-initial-delay-ms:600000}",
+            fixedDelayString = "${posts.counters.reconcile-interval-ms:21600000}"
+    )
+    public int reconcileAll() {
+        int repaired = 0;
+        // Mỗi batch là 1 transaction ngắn (@Transactional trên repository) để không khóa cả bảng posts
+        List<UUID> postIds = postsRepository.findIdsOrderById(PageRequest.of(0, batchSize));
+        while (!postIds.isEmpty()) {
+            repaired += postsRepository.reconcileReactionCounts(postIds);
+            repaired += postsRepository.reconcileCommentCounts(postIds);
+            if (postIds.size() < batchSize) {
+                break;
+            }
+            postIds = postsRepository.findIdsAfter(postIds.get(postIds.size() - 1), PageRequest.of(0, batchSize));
+        }
+
+        if (repaired > 0) {
+            log.warn("Post counters reconciled: repaired {} counter(s)", repaired);
+        }
+        return repaired;
+    }
+}
@@ -5,11 +5,13 @@ import com.data.db_instagram.dto.request.UpdatePostRequest;
 import com.data.db_instagram.dto.response.*;
 import com.data.db_instagram.exception.HttpForbidden;
 import com.data.db_instagram.exception.HttpNotFound;
-import com.data.db_instagram.mapper.UserMapper;
 import com.data.db_instagram.model.*;
 import com.data.db_instagram.repository.*;
 import com.data.db_instagram.services.PostService;
 import com.data.db_instagram.services.SavedPostsService;
+import com.data.db_instagram.services.TimelineService;
+import com.data.db_instagram.services.UserInfoCache;
+import com.data.db_instagram.utils.PageCursor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -22,33 +24,33 @@ import java.util.stream.Collectors;
 
 @Service
 public class PostServiceImpl implements PostService {
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_FALLBACK_ROWS = 1000;
+    private static final int REACTION_PREVIEW_SIZE = 5;
+    private static final String SOURCE_TIMELINE = "timeline";
+    private static final String SOURCE_PUBLIC = "public";
+
     private final PostsRepository postsRepository;
     private final PostMediaRepository postMediaRepository;
     private final PostReactionsRepository postReactionsRepository;
-    private final CommentsRepository commentsRepository;
-    private final IUserRepository userRepository;
-    private final ProfilesRepository profilesRepository;
-    private final UserMapper userMapper;
+    private final UserInfoCache userInfoCache;
     private final SavedPostsService savedPostsService;
+    private final TimelineService timelineService;
 
     public PostServiceImpl(
             PostsRepository postsRepository,
             PostMediaRepository postMediaRepository,
             PostReactionsRepository postReactionsRepository,
-            CommentsRepository commentsRepository,
-            IUserRepository userRepository,
-            ProfilesRepository profilesRepository,
-            UserMapper userMapper,
-            @Lazy SavedPostsService savedPostsService
+            UserInfoCache userInfoCache,
+            @Lazy SavedPostsService savedPostsService,
+            TimelineService timelineService
     ) {
         this.postsRepository = postsRepository;
         this.postMediaRepository = postMediaRepository;
         this.postReactionsRepository = postReactionsRepository;
-        this.commentsRepository = commentsRepository;
-        this.userRepository = userRepository;
-        this.profilesRepository = profilesRepository;
-        this.userMapper = userMapper;
+        this.userInfoCache = userInfoCache;
         this.savedPostsService = savedPostsService;
+        this.timelineService = timelineService;
     }
 
     @Override
@@ -87,6 +89,9 @@ public class PostServiceImpl implements PostService {
             }
         }
 
+        // Fan-out-on-write: đẩy post vào timeline của tác giả và bạn bè (cùng transaction với post)
+        timelineService.fanOutPost(post);
+
         return buildPostResponse(post, userId);
     }
 
@@ -154,6 +159,8 @@ public class PostServiceImpl implements PostService {
         post.setIsDeleted(true);
         post.setUpdatedAt(new Date());
         postsRepository.save(post);
+
+        timelineService.removePost(postId);
     }
 
     @Override
@@ -165,35 +172,25 @@ public class PostServiceImpl implements PostService {
 
     @Override
     public List<PostResponse> getFriendsPosts(UUID userId, int page, int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Posts> postsPage = postsRepository.findFriendsPosts(userId, pageable);
-        List<Posts> posts = postsPage.getContent();
+        // Đọc từ home timeline đã tính sẵn thay vì query DISTINCT + EXISTS trên toàn bảng posts
+        List<Posts> posts = timelineService.getTimeline(userId, page, size);
         
-        if (posts.isEmpty()) {
-            // Fallback: lấy posts của user và posts public
-            List<Posts> userPosts = postsRepository.findByUserIdAndIsDeletedFalseOrderByCreatedAtDesc(userId);
-            List<Posts> publicPosts = postsRepository.findByVisibilityAndIsDeletedFalseOrderByCreatedAtDesc("public");
-            Set<UUID> seenIds = new HashSet<>();
-            List<Posts> fallbackPosts = new ArrayList<>();
-            for (Posts post : userPosts) {
-                if (!seenIds.contains(post.getId())) {
-                    fallbackPosts.add(post);
-                    seenIds.add(post.getId());
-                }
-            }
-            for (Posts post : publicPosts) {
-                if (!seenIds.contains(post.getId())) {
-                    fallbackPosts.add(post);
-                    seenIds.add(post.getId());
-                }
-            }
-            fallbackPosts.sort((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()));
-            // Apply pagination manually
-            int start = page * size;
-            int end = Math.min(start + size, fallbackPosts.size());
-            if (start < fallbackPosts.size()) {
-                posts = fallbackPosts.subList(start, end);
+        // Fallback chỉ khi timeline không có entry nào (giống getFriendsPostsByCursor với cursor null);
+        // đi quá trang cuối của timeline không rỗng thì trả danh sách rỗng
+        if (posts.isEmpty() && (page == 0 || timelineService.getTimeline(userId, 0, 1).isEmpty())) {
+            // Fallback: posts của user và posts public, mỗi nguồn chỉ đọc page*size + size dòng đầu theo index
+            // rồi k-way merge - không load toàn bộ bảng posts vào memory
+            int limit = normalizeSize(size);
+            long skip = (long) page * limit;
+            if (skip + limit > MAX_FALLBACK_ROWS) {
+                // Trang quá sâu: dùng /feed/cursor thay vì OFFSET
+                return new ArrayList<>();
             }
+            Pageable window = PageRequest.of(0, (int) skip + limit);
+            posts = mergeNewestFirst(List.of(
+                    postsRepository.findByUserIdAndIsDeletedFalseOrderByCreatedAtDescIdDesc(userId, window),
+                    postsRepository.findLatestByVisibility("public", window)
+            ), skip, limit);
         }
         
         // Batch build để tránh N+1 query
@@ -220,27 +217,122 @@ public class PostServiceImpl implements PostService {
         return buildPostResponses(reels, userId);
     }
 
+    @Override
+    public CursorPageResponse<PostResponse> getFriendsPostsByCursor(UUID userId, String cursor, int size) {
+        int limit = normalizeSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+
+        // Đọc timeline trước; nếu timeline trống ngay từ trang đầu thì chuyển sang nguồn public posts
+        if (pageCursor == null || !SOURCE_PUBLIC.equals(pageCursor.getSource())) {
+            List<Posts> posts = timelineService.getTimelineBefore(userId, pageCursor, limit + 1);
+            if (!posts.isEmpty() || pageCursor != null) {
+                return buildCursorPage(posts, limit, SOURCE_TIMELINE, userId);
+            }
+        }
+
+        List<Posts> publicPosts = pageCursor == null
+                ? postsRepository.findLatestByVisibility("public", PageRequest.of(0, limit + 1))
+                : postsRepository.findByVisibilityBefore("public", pageCursor.getCreatedAt(), pageCursor.getId(), PageRequest.of(0, limit + 1));
+        return buildCursorPage(publicPosts, limit, SOURCE_PUBLIC, userId);
+    }
+
+    @Override
+    public CursorPageResponse<PostResponse> getUserPostsByCursor(UUID userId, UUID currentUserId, String cursor, int size) {
+        int limit = normalizeSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Posts> posts = pageCursor == null
+                ? postsRepository.findByUserIdAndIsDeletedFalseOrderByCreatedAtDescIdDesc(userId, pageable)
+                : postsRepository.findUserPostsBefore(userId, pageCursor.getCreatedAt(), pageCursor.getId(), pageable);
+        return buildCursorPage(posts, limit, null, currentUserId);
+    }
+
+    @Override
+    public CursorPageResponse<PostResponse> getReelsByCursor(UUID userId, String cursor, int size) {
+        int limit = normalizeSize(size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Posts> reels = pageCursor == null
+                ? postsRepository.findReelsLatest(userId, pageable)
+                : postsRepository.findReelsBefore(userId, pageCursor.getCreatedAt(), pageCursor.getId(), pageable);
+        return buildCursorPage(reels, limit, null, userId);
+    }
+
+    // posts được đọc với limit + 1 dòng: dòng thừa chỉ dùng để biết còn trang sau hay không
+    private CursorPageResponse<PostResponse> buildCursorPage(List<Posts> posts, int limit, String source, UUID currentUserId) {
+        boolean hasMore = posts.size() > limit;
+        List<Posts> pagePosts = hasMore ? posts.subList(0, limit) : posts;
+
+        String nextCursor = null;
+        if (hasMore) {
+            Posts last = pagePosts.get(pagePosts.size() - 1);
+            nextCursor = new PageCursor(source, last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return CursorPageResponse.<PostResponse>builder()
+                .items(buildPostResponses(pagePosts, currentUserId))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // K-way merge các nguồn đã sắp xếp (created_at DESC, id DESC), bỏ trùng post id, rồi cắt [skip, skip + limit)
+    private List<Posts> mergeNewestFirst(List<List<Posts>> sources, long skip, int limit) {
+        PriorityQueue<PeekingCursor> heads = new PriorityQueue<>((a, b) -> PageCursor.compareNewestFirst(
+                a.head.getCreatedAt(), a.head.getId(), b.head.getCreatedAt(), b.head.getId()));
+        for (List<Posts> source : sources) {
+            PeekingCursor cursor = new PeekingCursor(source.iterator());
+            if (cursor.head != null) {
+                heads.add(cursor);
+            }
+        }
+
+        Set<UUID> seenIds = new HashSet<>();
+        List<Posts> result = new ArrayList<>(limit);
+        long skipped = 0;
+        while (!heads.isEmpty() && result.size() < limit) {
+            PeekingCursor cursor = heads.poll();
+            Posts post = cursor.head;
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+            if (!seenIds.add(post.getId())) {
+                continue;
+            }
+            if (skipped < skip) {
+                skipped++;
+            } else {
+                result.add(post);
+            }
+        }
+        return result;
+    }
+
+    private static final class PeekingCursor {
+        private final Iterator<Posts> iterator;
+        private Posts head;
+
+        private PeekingCursor(Iterator<Posts> iterator) {
+            this.iterator = iterator;
+            advance();
+        }
+
+        private boolean advance() {
+            head = iterator.hasNext() ? iterator.next() : null;
+            return head != null;
+        }
+    }
+
+    private int normalizeSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
     // Batch build posts để tránh N+1 query problem
     private List<PostResponse> buildPostResponses(List<Posts> posts, UUID currentUserId) {
         if (posts.isEmpty()) {
             return new ArrayList<>();
         }
         
-        // Collect all user IDs
-        Set<UUID> userIds = new HashSet<>();
-        for (Posts post : posts) {
-            userIds.add(post.getUserId());
-        }
-        
-        // Batch load users và profiles
-        List<Users> users = userRepository.findAllById(userIds);
-        Map<UUID, Users> userMap = users.stream()
-                .collect(Collectors.toMap(Users::getId, u -> u));
-        
-        List<Profiles> profiles = profilesRepository.findByUserIdIn(new ArrayList<>(userIds));
-        Map<UUID, Profiles> profileMap = profiles.stream()
-                .collect(Collectors.toMap(Profiles::getUser_id, p -> p));
-        
         // Collect all post IDs for batch loading media, reactions, comments
         List<UUID> postIds = posts.stream().map(Posts::getId).collect(Collectors.toList());
         
@@ -249,65 +341,46 @@ public class PostServiceImpl implements PostService {
         Map<UUID, List<Post_media>> mediaMap = allMedia.stream()
                 .collect(Collectors.groupingBy(Post_media::getPostId));
         
-        // Batch load reactions - optimized: single query instead of N queries
-        List<Post_reactions> allReactions = postReactionsRepository.findByPostIdInOrderByPostIdAscCreatedAtDesc(postIds);
+        // Batch load preview: chỉ REACTION_PREVIEW_SIZE reactions mới nhất mỗi post, không load toàn bộ reactions
+        List<Post_reactions> allReactions = postReactionsRepository.findLatestByPostIdIn(postIds, REACTION_PREVIEW_SIZE);
         Map<UUID, List<Post_reactions>> reactionsMap = allReactions.stream()
                 .collect(Collectors.groupingBy(Post_reactions::getPostId));
         
-        // Collect reaction user IDs
-        Set<UUID> reactionUserIds = allReactions.stream()
-                .map(Post_reactions::getUserId)
-                .collect(Collectors.toSet());
-        
-        // Batch load reaction users và profiles
-        List<Users> reactionUsers = userRepository.findAllById(reactionUserIds);
-        Map<UUID, Users> reactionUserMap = reactionUsers.stream()
-                .collect(Collectors.toMap(Users::getId, u -> u));
+        // hasReacted: 1 query theo (post_id, user_id) cho cả trang
+        Set<UUID> reactedPostIds = currentUserId != null
+            ? new HashSet<>(postReactionsRepository.findReactedPostIds(currentUserId, postIds))
+            : Collections.emptySet();
         
-        List<Profiles> reactionProfiles = profilesRepository.findByUserIdIn(new ArrayList<>(reactionUserIds));
-        Map<UUID, Profiles> reactionProfileMap = reactionProfiles.stream()
-                .collect(Collectors.toMap(Profiles::getUser_id, p -> p));
+        // Tác giả + người react: lấy từ UserInfoCache, chỉ miss mới query users/profiles
+        Set<UUID> userIds = new HashSet<>();
+        for (Posts post : posts) {
+            userIds.add(post.getUserId());
+        }
+        for (Post_reactions reaction : allReactions) {
+            userIds.add(reaction.getUserId());
+        }
+        Map<UUID, UserInfo> userInfoMap = userInfoCache.getAll(userIds);
         
         // Batch check saved posts
         Set<UUID> savedPostIds = currentUserId != null 
             ? savedPostsService.getSavedPostIds(currentUserId, postIds)
             : Collections.emptySet();
         
-        // Batch load comment counts - optimized: single query instead of N queries
-        List<Object[]> commentCountResults = commentsRepository.countByPostIdInAndIsDeletedFalse(postIds);
-        Map<UUID, Long> commentCountMap = new HashMap<>();
-        for (Object[] result : commentCountResults) {
-            UUID postId = (UUID) result[0];
-            Long count = (Long) result[1];
-            commentCountMap.put(postId, count);
-        }
-        // Set default count to 0 for posts without comments
-        for (UUID postId : postIds) {
-            commentCountMap.putIfAbsent(postId, 0L);
-        }
-        
         // Build responses
         return posts.stream()
                 .map(post -> buildPostResponseOptimized(
                     post, 
-                    currentUserId,
-                    userMap,
-                    profileMap,
+                    userInfoMap,
                     mediaMap.getOrDefault(post.getId(), Collections.emptyList()),
                     reactionsMap.getOrDefault(post.getId(), Collections.emptyList()),
-                    reactionUserMap,
-                    reactionProfileMap,
-                    savedPostIds.contains(post.getId()),
-                    commentCountMap.getOrDefault(post.getId(), 0L)
+                    reactedPostIds.contains(post.getId()),
+                    savedPostIds.contains(post.getId())
                 ))
                 .collect(Collectors.toList());
     }
     
     private PostResponse buildPostResponse(Posts post, UUID currentUserId) {
-        Users user = userRepository.findById(post.getUserId())
-                .orElse(null);
-        Profiles profile = user != null ? profilesRepository.findByUserId(user.getId()).orElse(null) : null;
-        UserInfo userInfo = userMapper.toUserInfo(user, profile);
+        UserInfo userInfo = userInfoCache.get(post.getUserId());
 
         // Get media
         List<Post_media> mediaList = postMediaRepository.findByPostIdOrderByOrderIndexAsc(post.getId());
@@ -321,32 +394,28 @@ public class PostServiceImpl implements PostService {
                 .collect(Collectors.toList());
 
         // Get reactions
-        List<Post_reactions> reactions = postReactionsRepository.findByPostIdOrderByCreatedAtDesc(post.getId());
-        long reactionCount = reactions.size();
+        List<Post_reactions> reactions = postReactionsRepository.findFirst5ByPostIdOrderByCreatedAtDesc(post.getId());
+        long reactionCount = post.getReactionCount() != null ? post.getReactionCount() : 0L;
         boolean hasReacted = currentUserId != null && postReactionsRepository.existsByPostIdAndUserId(post.getId(), currentUserId);
         
         // Check if post is saved
         boolean isSaved = currentUserId != null && savedPostsService.isPostSaved(currentUserId, post.getId());
 
         // Get reactions preview (first 5)
+        Map<UUID, UserInfo> reactionUserInfoMap = userInfoCache.getAll(
+                reactions.stream().map(Post_reactions::getUserId).collect(Collectors.toSet()));
         List<ReactionInfo> reactionsPreview = reactions.stream()
-                .limit(5)
-                .map(r -> {
-                    Users rUser = userRepository.findById(r.getUserId()).orElse(null);
-                    Profiles rProfile = rUser != null ? profilesRepository.findByUserId(rUser.getId()).orElse(null) : null;
-                    UserInfo rUserInfo = userMapper.toUserInfo(rUser, rProfile);
-                    return ReactionInfo.builder()
-                            .id(r.getId())
-                            .userId(r.getUserId())
-                            .emoji(r.getEmoji() != null ? r.getEmoji() : "❤️")
-                            .createdAt(r.getCreatedAt())
-                            .user(rUserInfo)
-                            .build();
-                })
+                .map(r -> ReactionInfo.builder()
+                        .id(r.getId())
+                        .userId(r.getUserId())
+                        .emoji(r.getEmoji() != null ? r.getEmoji() : "❤️")
+                        .createdAt(r.getCreatedAt())
+                        .user(reactionUserInfoMap.get(r.getUserId()))
+                        .build())
                 .collect(Collectors.toList());
 
         // Get comment count
-        long commentCount = commentsRepository.countByPostIdAndIsDeletedFalse(post.getId());
+        long commentCount = post.getCommentCount() != null ? post.getCommentCount() : 0L;
 
         return PostResponse.builder()
                 .id(post.getId())
@@ -369,19 +438,13 @@ public class PostServiceImpl implements PostService {
     // Optimized version sử dụng pre-loaded data để tránh N+1 query
     private PostResponse buildPostResponseOptimized(
             Posts post,
-            UUID currentUserId,
-            Map<UUID, Users> userMap,
-            Map<UUID, Profiles> profileMap,
+            Map<UUID, UserInfo> userInfoMap,
             List<Post_media> mediaList,
             List<Post_reactions> reactions,
-            Map<UUID, Users> reactionUserMap,
-            Map<UUID, Profiles> reactionProfileMap,
-            boolean isSaved,
-            long commentCount
+            boolean hasReacted,
+            boolean isSaved
     ) {
-        Users user = userMap.get(post.getUserId());
-        Profiles profile = profileMap.get(post.getUserId());
-        UserInfo userInfo = userMapper.toUserInfo(user, profile);
+        UserInfo userInfo = userInfoMap.get(post.getUserId());
 
         // Build media info
         List<PostMediaInfo> mediaInfo = mediaList.stream()
@@ -393,29 +456,21 @@ public class PostServiceImpl implements PostService {
                         .build())
                 .collect(Collectors.toList());
 
-        long reactionCount = reactions.size();
-        boolean hasReacted = currentUserId != null && reactions.stream()
-                .anyMatch(r -> r.getUserId().equals(currentUserId));
+        // Counter denormalized trên posts thay vì đếm list reactions
+        long reactionCount = post.getReactionCount() != null ? post.getReactionCount() : 0L;
+        long commentCount = post.getCommentCount() != null ? post.getCommentCount() : 0L;
 
-        // Get reactions preview (first 5)
+        // reactions đã được giới hạn sẵn (preview mới nhất)
         List<ReactionInfo> reactionsPreview = reactions.stream()
-                .limit(5)
-                .map(r -> {
-                    Users rUser = reactionUserMap.get(r.getUserId());
-                    Profiles rProfile = reactionProfileMap.get(r.getUserId());
-                    UserInfo rUserInfo = userMapper.toUserInfo(rUser, rProfile);
-                    return ReactionInfo.builder()
-                            .id(r.getId())
-                            .userId(r.getUserId())
-                            .emoji(r.getEmoji() != null ? r.getEmoji() : "❤️")
-                            .createdAt(r.getCreatedAt())
-                            .user(rUserInfo)
-                            .build();
-                })
+                .map(r -> ReactionInfo.builder()
+                        .id(r.getId())
+                        .userId(r.getUserId())
+                        .emoji(r.getEmoji() != null ? r.getEmoji() : "❤️")
+                        .createdAt(r.getCreatedAt())
+                        .user(userInfoMap.get(r.getUserId()))
+                        .build())
                 .collect(Collectors.toList());
 
-        // commentCount is already passed as parameter
-
         return PostResponse.builder()
                 .id(post.getId())
                 .userId(post.getUserId())
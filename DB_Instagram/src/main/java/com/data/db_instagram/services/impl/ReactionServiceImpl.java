@@ -6,7 +6,9 @@ import com.data.db_instagram.model.Posts;
 import com.data.db_instagram.repository.PostReactionsRepository;
 import com.data.db_instagram.repository.PostsRepository;
 import com.data.db_instagram.services.NotificationService;
+import com.data.db_instagram.services.PostCounterService;
 import com.data.db_instagram.services.ReactionService;
+import com.data.db_instagram.utils.NotificationPayload;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,6 +22,7 @@ public class ReactionServiceImpl implements ReactionService {
     private final PostReactionsRepository postReactionsRepository;
     private final PostsRepository postsRepository;
     private final NotificationService notificationService;
+    private final PostCounterService postCounterService;
 
     @Override
     @Transactional
@@ -33,22 +36,20 @@ public class ReactionServiceImpl implements ReactionService {
         boolean hasReacted = !existingReactions.isEmpty();
         
         UUID postOwnerId = post.getUserId();
-        String payload = "{\"postId\":\"" + postId + "\"}";
-        String postIdPattern = "%\"postId\":\"" + postId + "\"%";
         
         if (hasReacted) {
             // Unlike - remove all reactions (handle duplicates)
-            postReactionsRepository.deleteByPostIdAndUserId(postId, userId);
+            long removed = postReactionsRepository.deleteByPostIdAndUserId(postId, userId);
+            postCounterService.addReactions(postId, -removed);
             
-            // Xóa notification tương ứng (nếu có)
+            // Bỏ actor khỏi notification gộp của post (nếu có)
             if (!postOwnerId.equals(userId)) {
-                notificationService.deleteNotificationByUserIdAndTypeAndActorIdAndPayload(
-                        postOwnerId, userId, "post_reaction", postIdPattern);
+                notificationService.removeFromGroup(postOwnerId, userId, "post_reaction", postId);
             }
         } else {
             // Like - add reaction
             // Clean up any duplicates first (defensive programming)
-            postReactionsRepository.deleteByPostIdAndUserId(postId, userId);
+            long removed = postReactionsRepository.deleteByPostIdAndUserId(postId, userId);
             
             Post_reactions reaction = new Post_reactions();
             reaction.setPostId(postId);
@@ -56,16 +57,12 @@ public class ReactionServiceImpl implements ReactionService {
             reaction.setEmoji("❤️");
             reaction.setCreatedAt(new Date());
             postReactionsRepository.save(reaction);
+            postCounterService.addReactions(postId, 1 - removed);
             
-            // Tạo notification cho post owner (chỉ nếu không phải like bài của chính mình)
+            // Gộp vào 1 notification / post cho post owner (chỉ nếu không phải like bài của chính mình)
             if (!postOwnerId.equals(userId)) {
-                // Chỉ tạo notification nếu chưa có notification chưa đọc cho post này
-                boolean hasUnreadNotification = notificationService.hasUnreadNotification(
-                        postOwnerId, userId, "post_reaction", postIdPattern);
-                
-                if (!hasUnreadNotification) {
-                    notificationService.createNotification(postOwnerId, userId, "post_reaction", payload);
-                }
+                // Unlike đã bỏ actor khỏi nhóm nên like luôn là actor mới
+                notificationService.addToGroup(postOwnerId, userId, "post_reaction", NotificationPayload.postReaction(postId), true);
             }
         }
     }
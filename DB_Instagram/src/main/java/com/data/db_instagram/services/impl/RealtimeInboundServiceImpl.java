@@ -0,0 +1,179 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.dto.request.RealtimeFrameRequest;
+import com.data.db_instagram.event.RealtimeEvent;
+import com.data.db_instagram.model.Messages;
+import com.data.db_instagram.repository.FriendRepository;
+import com.data.db_instagram.services.MessageService;
+import com.data.db_instagram.services.RealtimeInboundService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Protocol inbound trên /ws/messages, thay cho việc client poll REST:
+ * - {"type":"typing","userId":peer,"isTyping":true} -> peer nhận {"type":"typing","userId":from,"isTyping":...}
+ * - {"type":"presence","status":"online|away|offline"} -> bạn bè nhận user_online / user_offline
+ * - {"type":"read","userId":peer} -> markAllAsRead(conversation), read receipt đi theo đường cũ của MessageService
+ * Chống spam:
+ * - Rate limit theo user (realtime.inbound.max-frames-per-second), frame vượt ngưỡng bị bỏ.
+ * - Coalesce theo conversation (typing) / theo user (presence): chỉ chuyển tiếp khi trạng thái đổi,
+ *   trạng thái lặp lại chỉ được gửi lại sau khoảng refresh (giữ indicator phía client không hết hạn).
+ * - Metrics: realtime.inbound.frames (tag type, result=forwarded|coalesced|rate_limited|invalid).
+ */
+@Service
+@Slf4j
+public class RealtimeInboundServiceImpl implements RealtimeInboundService {
+    private static final Set<String> KNOWN_TYPES = Set.of("typing", "presence", "read");
+
+    private final MessageService messageService;
+    private final FriendRepository friendRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final int maxFramesPerSecond;
+    private final long typingRefreshMs;
+    private final long presenceRefreshMs;
+    // Trạng thái đã gửi gần nhất theo key coalesce ("typing:<conversation>:<from>", "presence:<user>")
+    private final Cache<String, SentSignal> lastSignals;
+    private final Cache<UUID, RateWindow> rateWindows;
+
+    public RealtimeInboundServiceImpl(
+            MessageService messageService,
+            FriendRepository friendRepository,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${realtime.inbound.max-frames-per-second:20}") int maxFramesPerSecond,
+            @Value("${realtime.inbound.typing-refresh-ms:3000}") long typingRefreshMs,
+            @Value("${realtime.inbound.presence-refresh-ms:30000}") long presenceRefreshMs
+    ) {
+        this.messageService = messageService;
+        this.friendRepository = friendRepository;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.maxFramesPerSecond = maxFramesPerSecond;
+        this.typingRefreshMs = typingRefreshMs;
+        this.presenceRefreshMs = presenceRefreshMs;
+        this.lastSignals = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(Math.max(typingRefreshMs, presenceRefreshMs) * 2))
+                .build();
+        this.rateWindows = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .build();
+    }
+
+    @Override
+    public boolean handle(UUID userId, RealtimeFrameRequest frame) {
+        String type = frame.getType() != null ? frame.getType() : "unknown";
+        if (!rateWindows.get(userId, key -> new RateWindow()).tryAcquire(System.currentTimeMillis(), maxFramesPerSecond)) {
+            // Tag type chỉ nhận giá trị đã biết, tránh client tạo metric tùy ý
+            return record(KNOWN_TYPES.contains(type) ? type : "unknown", "rate_limited", false);
+        }
+
+        switch (type) {
+            case "typing":
+                return handleTyping(userId, frame);
+            case "presence":
+                return handlePresence(userId, frame);
+            case "read":
+                return handleRead(userId, frame);
+            default:
+                log.debug("Ignoring unknown realtime frame type {} from user {}", type, userId);
+                return record("unknown", "invalid", false);
+        }
+    }
+
+    private boolean handleTyping(UUID userId, RealtimeFrameRequest frame) {
+        UUID peerId = frame.getUserId();
+        if (peerId == null || peerId.equals(userId)) {
+            return record("typing", "invalid", false);
+        }
+        boolean typing = Boolean.TRUE.equals(frame.getIsTyping());
+        String key = "typing:" + Messages.conversationKey(userId, peerId) + ":" + userId;
+        // Chỉ trạng thái "đang gõ" cần gửi lại định kỳ, "dừng gõ" lặp lại thì bỏ
+        if (!shouldForward(key, String.valueOf(typing), typing ? typingRefreshMs : Long.MAX_VALUE)) {
+            return record("typing", "coalesced", false);
+        }
+
+        eventPublisher.publishEvent(RealtimeEvent.ephemeral(List.of(peerId), Map.of("type", "typing", "userId", userId, "isTyping", typing)));
+        return record("typing", "forwarded", true);
+    }
+
+    private boolean handlePresence(UUID userId, RealtimeFrameRequest frame) {
+        String status = frame.getStatus();
+        if (!"online".equals(status) && !"away".equals(status) && !"offline".equals(status)) {
+            return record("presence", "invalid", false);
+        }
+        if (!shouldForward("presence:" + userId, status, presenceRefreshMs)) {
+            return record("presence", "coalesced", false);
+        }
+
+        List<UUID> friendIds = friendRepository.findFriendIds(userId);
+        if (!friendIds.isEmpty()) {
+            String eventType = "online".equals(status) ? "user_online" : "user_offline";
+            eventPublisher.publishEvent(RealtimeEvent.ephemeral(friendIds, Map.of("type", eventType, "userId", userId, "status", status)));
+        }
+        return record("presence", "forwarded", true);
+    }
+
+    private boolean handleRead(UUID userId, RealtimeFrameRequest frame) {
+        if (frame.getUserId() == null) {
+            return record("read", "invalid", false);
+        }
+        // Bulk UPDATE + read receipt cho người gửi, giống PUT /conversation/{id}/read-all
+        messageService.markAllAsRead(userId, frame.getUserId());
+        return record("read", "forwarded", true);
+    }
+
+    // compute giữ quyết định gửi/bỏ atomic khi nhiều thiết bị của cùng user gửi frame đồng thời
+    private boolean shouldForward(String key, String value, long refreshMs) {
+        long now = System.currentTimeMillis();
+        boolean[] forward = {false};
+        lastSignals.asMap().compute(key, (k, last) -> {
+            if (last == null || !last.value.equals(value) || now - last.sentAt >= refreshMs) {
+                forward[0] = true;
+                return new SentSignal(value, now);
+            }
+            return last;
+        });
+        return forward[0];
+    }
+
+    private boolean record(String type, String result, boolean handled) {
+        meterRegistry.counter("realtime.inbound.frames", "type", type, "result", result).increment();
+        return handled;
+    }
+
+    private static final class SentSignal {
+        private final String value;
+        private final long sentAt;
+
+        private SentSignal(String value, long sentAt) {
+            this.value = value;
+            this.sentAt = sentAt;
+        }
+    }
+
+    // Cửa sổ cố định 1 giây cho mỗi user
+    private static final class RateWindow {
+        private long windowStart;
+        private int count;
+
+        synchronized boolean tryAcquire(long now, int limit) {
+            if (now - windowStart >= 1000) {
+                windowStart = now;
+                count = 0;
+            }
+            return ++count <= limit;
+        }
+    }
+}
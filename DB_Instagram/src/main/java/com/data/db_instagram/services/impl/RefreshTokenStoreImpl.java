@@ -0,0 +1,153 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.model.Auth_tokens;
+import com.data.db_instagram.repository.AuthTokensRepository;
+import com.data.db_instagram.services.RefreshTokenStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bảng auth_tokens (1 row mỗi lần login / refresh):
+ * - Tra cứu bằng token_hash = SHA-256 hex của JWT (cột cố định 64 ký tự, unique index) thay vì so sánh cột TEXT.
+ * - Mỗi user giữ tối đa auth.refresh-tokens.max-per-user token active, token cũ nhất bị revoke khi login thêm.
+ * - Job purge xóa token hết hạn và token đã revoke quá auth.refresh-tokens.revoked-retention-hours
+ *   theo batch id (auth.refresh-tokens.purge-batch-size), mỗi batch 1 transaction ngắn.
+ * - Metrics: auth.tokens.rows (số row sau lần purge gần nhất), auth.tokens.purged, auth.tokens.purge (thời gian mỗi lần chạy),
+ *   auth.tokens.capped (token bị revoke do vượt giới hạn).
+ */
+@Service
+@Slf4j
+public class RefreshTokenStoreImpl implements RefreshTokenStore {
+    private final AuthTokensRepository authTokensRepository;
+    private final int maxActivePerUser;
+    private final int purgeBatchSize;
+    private final int purgeMaxBatches;
+    private final long revokedRetentionMs;
+    private final AtomicLong tableRows = new AtomicLong();
+    private final Counter purged;
+    private final Counter capped;
+    private final Timer purgeTimer;
+
+    public RefreshTokenStoreImpl(
+            AuthTokensRepository authTokensRepository,
+            MeterRegistry meterRegistry,
+            @Value("${auth.refresh-tokens.max-per-user:10}") int maxActivePerUser,
+            @Value("${auth.refresh-tokens.purge-batch-size:1000}") int purgeBatchSize,
+            @Value("${auth.refresh-tokens.purge-max-batches:200}") int purgeMaxBatches,
+            @Value("${auth.refresh-tokens.revoked-retention-hours:24}") long revokedRetentionHours
+    ) {
+        this.authTokensRepository = authTokensRepository;
+        this.maxActivePerUser = maxActivePerUser;
+        this.purgeBatchSize = purgeBatchSize;
+        this.purgeMaxBatches = purgeMaxBatches;
+        this.revokedRetentionMs = TimeUnit.HOURS.toMillis(revokedRetentionHours);
+        Gauge.builder("auth.tokens.rows", tableRows, AtomicLong::get)
+                .description("Rows in auth_tokens after the last purge")
+                .register(meterRegistry);
+        this.purged = Counter.builder("auth.tokens.purged")
+                .description("Expired or revoked refresh tokens deleted")
+                .register(meterRegistry);
+        this.capped = Counter.builder("auth.tokens.capped")
+                .description("Refresh tokens revoked because the user exceeded the active token limit")
+                .register(meterRegistry);
+        this.purgeTimer = Timer.builder("auth.tokens.purge")
+                .description("Duration of one auth_tokens purge run")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional
+    public void save(UUID userId, String refreshToken, Date expiresAt, String deviceInfo) {
+        Auth_tokens authToken = new Auth_tokens();
+        authToken.setUser_id(userId);
+        authToken.setToken_hash(hash(refreshToken));
+        authToken.setDevice_info(deviceInfo);
+        authToken.setExpires_at(expiresAt);
+        authToken.setRevoked(false);
+        authToken.setCreated_at(new Date());
+        authTokensRepository.saveAndFlush(authToken);
+
+        List<UUID> activeIds = authTokensRepository.findActiveIdsNewestFirst(userId);
+        if (activeIds.size() > maxActivePerUser) {
+            int revoked = authTokensRepository.revokeByIds(activeIds.subList(maxActivePerUser, activeIds.size()));
+            capped.increment(revoked);
+        }
+    }
+
+    @Override
+    public Optional<Auth_tokens> find(String refreshToken) {
+        return authTokensRepository.findByTokenHash(hash(refreshToken));
+    }
+
+    @Override
+    @Transactional
+    public void revoke(String refreshToken) {
+        authTokensRepository.revokeByTokenHash(hash(refreshToken));
+    }
+
+    @Override
+    @Transactional
+    public void revokeAll(UUID userId) {
+        authTokensRepository.revokeAllUserTokens(userId);
+    }
+
+    @Override
+    @Scheduled(
+            initialDelayString = "${auth.refresh-tokens.purge-initial-delay-ms:300000}",
+            fixedDelayString = "${auth.refresh-tokens.purge-interval-ms:3600000}"
+    )
+    public int purge() {
+        long started = System.nanoTime();
+        Date now = new Date();
+        Date revokedBefore = new Date(now.getTime() - revokedRetentionMs);
+        int deleted = 0;
+        // Giới hạn số batch mỗi lần chạy để job không chiếm DB quá lâu, phần còn lại để lần sau
+        for (int batch = 0; batch < purgeMaxBatches; batch++) {
+            List<UUID> ids = authTokensRepository.findPurgeableIds(now, revokedBefore, PageRequest.of(0, purgeBatchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            deleted += authTokensRepository.deleteByIds(ids);
+            if (ids.size() < purgeBatchSize) {
+                break;
+            }
+        }
+
+        purged.increment(deleted);
+        tableRows.set(authTokensRepository.count());
+        purgeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        if (deleted > 0) {
+            log.info("Purged {} refresh token(s), {} row(s) left", deleted, tableRows.get());
+        }
+        return deleted;
+    }
+
+    static String hash(String refreshToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(refreshToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 luôn có trong mọi JRE
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.services.PresenceDirectory;
+import com.data.db_instagram.services.RealtimeBroker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.TextMessage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broker nhiều node qua TCP (realtime.broker=tcp):
+ * - Mỗi node mở 1 cổng TCP, node id = "host:port" nên node khác kết nối thẳng được từ presence.
+ * - publish(): frame cho user ở node khác được ghi vào kết nối TCP tới node đó (giữ kết nối lâu dài, tự kết nối lại).
+ * - Mỗi peer có 1 thread ghi riêng: thread gọi publish không bị chặn, thứ tự frame tới cùng 1 node được giữ nguyên.
+ * - Frame: userId (writeUTF) + replayable (boolean) + độ dài payload (int) + payload UTF-8 (lấy thẳng bytes đã encode sẵn của TextMessage).
+ * - Mỗi kết nối vào phải qua challenge-response HMAC-SHA256 với realtime.tcp.shared-secret trước khi được gửi frame.
+ *   Frame không mã hóa: chỉ bind vào mạng nội bộ giữa các node.
+ */
+@Slf4j
+public class TcpRealtimeBroker implements RealtimeBroker, AutoCloseable {
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int HANDSHAKE_TIMEOUT_MS = 2000;
+    private static final int NONCE_BYTES = 32;
+    // Peer không kết nối được: bỏ frame tới peer đó trong khoảng này thay vì thử connect lại cho từng frame
+    private static final long RECONNECT_BACKOFF_MS = 1000;
+
+    private final PresenceDirectory presenceDirectory;
+    private final SecretKeySpec sharedKey;
+    private final int peerQueueCapacity;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final ServerSocket serverSocket;
+    private final String nodeId;
+    private final ExecutorService readerExecutor;
+    private final Map<String, PeerConnection> peers = new ConcurrentHashMap<>();
+    private volatile LocalDelivery localDelivery = (userId, frame, replayable) -> { };
+    private volatile boolean running = true;
+
+    public TcpRealtimeBroker(PresenceDirectory presenceDirectory, String bindAddress, String advertisedHost, int port,
+                             String sharedSecret, int peerQueueCapacity) throws IOException {
+        if (sharedSecret == null || sharedSecret.isBlank()) {
+            throw new IllegalArgumentException("realtime.tcp.shared-secret is required for realtime.broker=tcp");
+        }
+        this.presenceDirectory = presenceDirectory;
+        this.sharedKey = new SecretKeySpec(sharedSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.peerQueueCapacity = peerQueueCapacity;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName(bindAddress));
+        this.nodeId = advertisedHost + ":" + serverSocket.getLocalPort();
+        this.readerExecutor = Executors.newCachedThreadPool(daemonThreads("realtime-tcp-" + serverSocket.getLocalPort()));
+        readerExecutor.execute(this::acceptLoop);
+        log.info("Realtime TCP broker listening as node {}", nodeId);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(String userId, TextMessage frame, boolean replayable) {
+        for (String targetNode : presenceDirectory.nodesOf(userId)) {
+            if (targetNode.equals(nodeId)) {
+                localDelivery.deliver(userId, frame, replayable);
+            } else {
+                peers.computeIfAbsent(targetNode, PeerConnection::new).send(userId, frame, replayable);
+            }
+        }
+    }
+
+    // Frame bị bỏ vì hàng đợi tới peer đầy hoặc peer không kết nối được
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    @Override
+    public void onDeliver(LocalDelivery localDelivery) {
+        this.localDelivery = localDelivery;
+    }
+
+    @Override
+    public void userConnected(String userId) {
+        presenceDirectory.register(userId, nodeId);
+    }
+
+    @Override
+    public void userDisconnected(String userId) {
+        presenceDirectory.unregister(userId, nodeId);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        presenceDirectory.removeNode(nodeId);
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.debug("Error closing realtime server socket: {}", e.getMessage());
+        }
+        peers.values().forEach(PeerConnection::close);
+        peers.clear();
+        readerExecutor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                readerExecutor.execute(() -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Realtime broker accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Đọc frame từ 1 node khác và giao cho session local (sau khi node đó chứng minh có shared secret)
+    private void readLoop(Socket socket) {
+        try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            if (!authenticatePeer(socket, in)) {
+                log.warn("Realtime peer {} failed authentication", socket.getRemoteSocketAddress());
+                return;
+            }
+            while (running) {
+                String userId = in.readUTF();
+                boolean replayable = in.readBoolean();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                localDelivery.deliver(userId, new TextMessage(payload), replayable);
+            }
+        } catch (EOFException e) {
+            log.debug("Realtime peer {} closed connection", socket.getRemoteSocketAddress());
+        } catch (IOException e) {
+            if (running) {
+                log.warn("Realtime peer {} read failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        }
+    }
+
+    // Phía nhận kết nối: gửi nonce ngẫu nhiên, peer phải trả về HMAC(secret, nonce)
+    private boolean authenticatePeer(Socket socket, DataInputStream in) throws IOException {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        OutputStream out = socket.getOutputStream();
+        out.write(nonce);
+        out.flush();
+        byte[] response = new byte[NONCE_BYTES];
+        in.readFully(response);
+        socket.setSoTimeout(0);
+        return MessageDigest.isEqual(hmac(nonce), response);
+    }
+
+    private byte[] hmac(byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(sharedKey);
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Kết nối đi tới 1 node khác, ghi trên thread riêng của peer.
+    // Hàng đợi có giới hạn (giống SessionOutbox): peer chậm/chết thì frame mới bị bỏ, không giữ heap không giới hạn
+    private final class PeerConnection {
+        private final String peerNodeId;
+        private final ExecutorService writer;
+        private Socket socket;
+        private DataOutputStream out;
+        private long reconnectAt;
+
+        private PeerConnection(String peerNodeId) {
+            this.peerNodeId = peerNodeId;
+            this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(peerQueueCapacity), daemonThreads("realtime-peer-" + peerNodeId),
+                    (task, executor) -> droppedFrames.incrementAndGet());
+        }
+
+        void send(String userId, TextMessage frame, boolean replayable) {
+            writer.execute(() -> write(userId, frame.asBytes(), replayable));
+        }
+
+        private void write(String userId, byte[] payload, boolean replayable) {
+            if (out == null && System.currentTimeMillis() < reconnectAt) {
+                droppedFrames.incrementAndGet();
+                return;
+            }
+            // Kết nối cũ đã đứt thì thử lại 1 lần với kết nối mới; kết nối mới cũng lỗi thì chờ backoff
+            for (int attempt = 0; attempt < 2; attempt++) {
+                boolean freshConnection = out == null;
+                try {
+                    if (freshConnection) {
+                        connect();
+                    }
+                    out.writeUTF(userId);
+                    out.writeBoolean(replayable);
+                    out.writeInt(payload.length);
+                    out.write(payload);
+                    out.flush();
+                    return;
+                } catch (IOException e) {
+                    log.warn("Realtime send to node {} failed: {}", peerNodeId, e.getMessage());
+                    disconnect();
+                    if (freshConnection) {
+                        break;
+                    }
+                }
+            }
+            reconnectAt = System.currentTimeMillis() + RECONNECT_BACKOFF_MS;
+            droppedFrames.incrementAndGet();
+        }
+
+        private void connect() throws IOException {
+            int separator = peerNodeId.lastIndexOf(':');
+            Socket newSocket = new Socket();
+            try {
+                newSocket.connect(new InetSocketAddress(peerNodeId.substring(0, separator),
+                        Integer.parseInt(peerNodeId.substring(separator + 1))), CONNECT_TIMEOUT_MS);
+                newSocket.setTcpNoDelay(true);
+                // Trả lời challenge của node nhận
+                newSocket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                byte[] nonce = new byte[NONCE_BYTES];
+                new DataInputStream(newSocket.getInputStream()).readFully(nonce);
+                newSocket.getOutputStream().write(hmac(nonce));
+                newSocket.setSoTimeout(0);
+            } catch (IOException e) {
+                newSocket.close();
+                throw e;
+            }
+            socket = newSocket;
+            out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+        }
+
+        private void disconnect() {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                log.debug("Error closing realtime peer socket: {}", e.getMessage());
+            }
+            socket = null;
+            out = null;
+        }
+
+        void close() {
+            writer.shutdownNow();
+            disconnect();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.model.Posts;
+import com.data.db_instagram.model.Timeline_entries;
+import com.data.db_instagram.repository.FriendRepository;
+import com.data.db_instagram.repository.IUserRepository;
+import com.data.db_instagram.repository.PostsRepository;
+import com.data.db_instagram.repository.TimelineEntriesRepository;
+import com.data.db_instagram.services.TimelineService;
+import com.data.db_instagram.utils.PageCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Home timeline theo mô hình fan-out-on-write:
+ * - Khi tạo post: ghi post id vào timeline của tác giả và tất cả bạn bè.
+ * - Tác giả có quá nhiều bạn bè (vượt feed.fanout.max-friends) chỉ ghi vào timeline của chính mình;
+ *   posts của họ được kéo về lúc đọc feed (fan-out-on-read) rồi merge với timeline.
+ * - Khi tác giả xuống lại dưới ngưỡng, backfill posts gần đây của họ vào timeline bạn bè
+ *   (chỉ backfillSize posts gần nhất, posts cũ hơn đăng lúc vượt ngưỡng không còn trong home feed).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TimelineServiceImpl implements TimelineService {
+    private static final int MAX_PAGE_SIZE = 50;
+    // Merge với tác giả fan-out-on-read đọc (page + 1) * size dòng mỗi nguồn: trang sâu hơn trả rỗng, dùng /feed/cursor
+    private static final int MAX_MERGE_ROWS = 1000;
+
+    private final TimelineEntriesRepository timelineEntriesRepository;
+    private final FriendRepository friendRepository;
+    private final PostsRepository postsRepository;
+    private final IUserRepository userRepository;
+
+    @Value("${feed.fanout.max-friends:1000}")
+    private long maxFanOutFriends;
+
+    @Value("${feed.fanout.backfill-size:20}")
+    private int backfillSize;
+
+    @Override
+    @Transactional
+    public void fanOutPost(Posts post) {
+        UUID authorId = post.getUserId();
+        List<UUID> recipients = new ArrayList<>();
+        recipients.add(authorId);
+
+        List<UUID> friendIds = friendRepository.findFriendIds(authorId);
+        if (friendIds.size() > maxFanOutFriends) {
+            // Tác giả "nổi tiếng": không fan-out, bạn bè sẽ kéo post khi đọc feed
+            log.debug("Skip fan-out for post {}: author {} has {} friends", post.getId(), authorId, friendIds.size());
+        } else {
+            recipients.addAll(friendIds);
+        }
+
+        List<Timeline_entries> entries = recipients.stream()
+                .distinct()
+                .map(userId -> toEntry(userId, post))
+                .collect(Collectors.toList());
+        timelineEntriesRepository.saveAll(entries);
+    }
+
+    @Override
+    @Transactional
+    public void removePost(UUID postId) {
+        timelineEntriesRepository.deleteByPostId(postId);
+    }
+
+    @Override
+    @Transactional
+    public void onFriendshipCreated(UUID userA, UUID userB) {
+        backfill(userA, userB);
+        backfill(userB, userA);
+    }
+
+    @Override
+    @Transactional
+    public void onFriendshipRemoved(UUID userA, UUID userB, int removedFriendships) {
+        timelineEntriesRepository.deleteByUserIdAndAuthorId(userA, userB);
+        timelineEntriesRepository.deleteByUserIdAndAuthorId(userB, userA);
+
+        for (UUID userId : List.of(userA, userB)) {
+            Long friendCount = userRepository.findFriendCount(userId);
+            if (friendCount != null && friendCount <= maxFanOutFriends && friendCount + removedFriendships > maxFanOutFriends) {
+                resumeFanOut(userId);
+            }
+        }
+    }
+
+    @Override
+    public List<Posts> getTimeline(UUID userId, int page, int size) {
+        int limit = normalizeSize(size);
+        List<UUID> pulledAuthors = findPulledAuthors(userId);
+
+        if (pulledAuthors.isEmpty()) {
+            // Trường hợp thường gặp: chỉ cần đọc 1 range trên timeline
+            List<Timeline_entries> entries = timelineEntriesRepository
+                    .findByUserIdOrderByCreatedAtDescPostIdDesc(userId, PageRequest.of(page, limit));
+            return loadPosts(entries.stream().map(Timeline_entries::getPostId).collect(Collectors.toList()));
+        }
+
+        // Merge timeline với posts của các tác giả fan-out-on-read: mỗi nguồn chỉ đọc (page + 1) * size dòng
+        long window = ((long) page + 1) * limit;
+        if (window > MAX_MERGE_ROWS) {
+            return new ArrayList<>();
+        }
+        List<Timeline_entries> entries = timelineEntriesRepository
+                .findByUserIdOrderByCreatedAtDescPostIdDesc(userId, PageRequest.of(0, (int) window));
+        List<Posts> pulledPosts = postsRepository.findRecentByUserIdIn(pulledAuthors, PageRequest.of(0, (int) window));
+        return loadPosts(mergeNewestFirst(entries, pulledPosts, (long) page * limit, limit));
+    }
+
+    @Override
+    public List<Posts> getTimelineBefore(UUID userId, PageCursor cursor, int limit) {
+        Pageable pageable = PageRequest.of(0, limit);
+        List<Timeline_entries> entries = cursor == null
+                ? timelineEntriesRepository.findByUserIdOrderByCreatedAtDescPostIdDesc(userId, pageable)
+                : timelineEntriesRepository.findByUserIdBefore(userId, cursor.getCreatedAt(), cursor.getId(), pageable);
+
+        List<UUID> pulledAuthors = findPulledAuthors(userId);
+        if (pulledAuthors.isEmpty()) {
+            return loadPosts(entries.stream().map(Timeline_entries::getPostId).collect(Collectors.toList()));
+        }
+
+        List<Posts> pulledPosts = cursor == null
+                ? postsRepository.findRecentByUserIdIn(pulledAuthors, pageable)
+                : postsRepository.findRecentByUserIdInBefore(pulledAuthors, cursor.getCreatedAt(), cursor.getId(), pageable);
+        return loadPosts(mergeNewestFirst(entries, pulledPosts, 0, limit));
+    }
+
+    // Bạn bè có quá nhiều bạn bè (không fan-out khi đăng) - posts của họ được kéo về lúc đọc
+    private List<UUID> findPulledAuthors(UUID userId) {
+        return friendRepository.findFriendIdsWithFriendCountAbove(userId, maxFanOutFriends);
+    }
+
+    // Merge 2 nguồn đã sắp xếp (mới nhất trước), bỏ trùng post id, rồi cắt [skip, skip + limit)
+    private List<UUID> mergeNewestFirst(List<Timeline_entries> entries, List<Posts> pulledPosts, long skip, int limit) {
+        Map<UUID, Date> candidates = new HashMap<>();
+        for (Timeline_entries entry : entries) {
+            candidates.put(entry.getPostId(), entry.getCreatedAt());
+        }
+        for (Posts post : pulledPosts) {
+            candidates.putIfAbsent(post.getId(), post.getCreatedAt());
+        }
+
+        return candidates.entrySet().stream()
+                .sorted((a, b) -> PageCursor.compareNewestFirst(a.getValue(), a.getKey(), b.getValue(), b.getKey()))
+                .skip(skip)
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private int normalizeSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    // Tác giả vừa xuống dưới ngưỡng: bạn bè thôi kéo posts của họ lúc đọc, nên đẩy posts gần đây
+    // (đăng lúc chưa fan-out) vào timeline từng người bạn
+    private void resumeFanOut(UUID authorId) {
+        List<Posts> recentPosts = findRecentPosts(authorId);
+        if (recentPosts.isEmpty()) {
+            return;
+        }
+        for (UUID friendId : friendRepository.findFriendIds(authorId)) {
+            backfill(friendId, recentPosts);
+        }
+    }
+
+    // Đẩy posts gần đây của author vào timeline của user
+    private void backfill(UUID userId, UUID authorId) {
+        backfill(userId, findRecentPosts(authorId));
+    }
+
+    private List<Posts> findRecentPosts(UUID authorId) {
+        return postsRepository.findRecentByUserIdIn(
+                Collections.singletonList(authorId), PageRequest.of(0, backfillSize));
+    }
+
+    private void backfill(UUID userId, List<Posts> recentPosts) {
+        if (recentPosts.isEmpty()) {
+            return;
+        }
+
+        List<UUID> postIds = recentPosts.stream().map(Posts::getId).collect(Collectors.toList());
+        Set<UUID> existing = new HashSet<>(timelineEntriesRepository.findPostIdsByUserIdAndPostIdIn(userId, postIds));
+
+        List<Timeline_entries> entries = recentPosts.stream()
+                .filter(post -> !existing.contains(post.getId()))
+                .map(post -> toEntry(userId, post))
+                .collect(Collectors.toList());
+        timelineEntriesRepository.saveAll(entries);
+    }
+
+    // Load posts theo đúng thứ tự ids, bỏ qua post đã bị xóa
+    private List<Posts> loadPosts(List<UUID> postIds) {
+        if (postIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<UUID, Posts> postMap = postsRepository.findAllById(postIds).stream()
+                .collect(Collectors.toMap(Posts::getId, Function.identity()));
+        return postIds.stream()
+                .map(postMap::get)
+                .filter(post -> post != null && !Boolean.TRUE.equals(post.getIsDeleted()))
+                .collect(Collectors.toList());
+    }
+
+    private Timeline_entries toEntry(UUID userId, Posts post) {
+        Timeline_entries entry = new Timeline_entries();
+        entry.setUserId(userId);
+        entry.setPostId(post.getId());
+        entry.setAuthorId(post.getUserId());
+        entry.setCreatedAt(post.getCreatedAt() != null ? post.getCreatedAt() : new Date());
+        return entry;
+    }
+}
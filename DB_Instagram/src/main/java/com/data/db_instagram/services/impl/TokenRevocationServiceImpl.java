@@ -0,0 +1,107 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.model.Token_revocations;
+import com.data.db_instagram.repository.TokenRevocationsRepository;
+import com.data.db_instagram.services.TokenRevocationChannel;
+import com.data.db_instagram.services.TokenRevocationService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map userId -> watermark (millis): access token có iat trước watermark bị từ chối.
+ * - Entry chỉ cần giữ bằng thời hạn access token (jwt.expired.access): sau đó token cũ đã tự hết hạn,
+ *   nên map chỉ chứa user vừa logout-all gần đây.
+ * - Watermark lưu ở token_revocations; node khởi động nạp các row còn hiệu lực, node đang chạy nhận qua TokenRevocationChannel.
+ * - iat của JWT tính theo giây: watermark làm tròn lên giây kế tiếp để token phát hành cùng giây với lệnh thu hồi cũng bị chặn.
+ * - Metrics: security.revocations.active (số user đang có watermark), security.revocations.rejected.
+ */
+@Service
+@Slf4j
+public class TokenRevocationServiceImpl implements TokenRevocationService {
+    private final TokenRevocationsRepository tokenRevocationsRepository;
+    private final TokenRevocationChannel channel;
+    private final long accessTtlMs;
+    private final Cache<UUID, Long> watermarks;
+    private final Counter rejected;
+
+    public TokenRevocationServiceImpl(
+            TokenRevocationsRepository tokenRevocationsRepository,
+            TokenRevocationChannel channel,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.expired.access}") long accessTtlSeconds
+    ) {
+        this.tokenRevocationsRepository = tokenRevocationsRepository;
+        this.channel = channel;
+        this.accessTtlMs = TimeUnit.SECONDS.toMillis(accessTtlSeconds);
+        // Cộng thêm 1 phút cho lệch đồng hồ giữa các node
+        this.watermarks = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(accessTtlMs).plusMinutes(1))
+                .build();
+        this.rejected = Counter.builder("security.revocations.rejected")
+                .description("Access tokens rejected by a logout-all watermark")
+                .register(meterRegistry);
+        Gauge.builder("security.revocations.active", watermarks, cache -> cache.estimatedSize())
+                .description("Users with a live access token revocation watermark on this node")
+                .register(meterRegistry);
+        channel.onRevoked(this::apply);
+    }
+
+    @PostConstruct
+    void load() {
+        try {
+            Date since = new Date(System.currentTimeMillis() - accessTtlMs);
+            for (Token_revocations revocation : tokenRevocationsRepository.findUpdatedAfter(since)) {
+                apply(revocation.getUserId(), revocation.getRevokedBefore().getTime());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot load token revocations: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    @Transactional
+    public void revokeAccessTokens(UUID userId) {
+        long now = System.currentTimeMillis();
+        long revokedBefore = (now / 1000 + 1) * 1000;
+
+        Token_revocations revocation = tokenRevocationsRepository.findById(userId).orElseGet(Token_revocations::new);
+        revocation.setUserId(userId);
+        revocation.setRevokedBefore(new Date(revokedBefore));
+        revocation.setUpdatedAt(new Date(now));
+        tokenRevocationsRepository.save(revocation);
+
+        channel.publish(userId, revokedBefore);
+    }
+
+    @Override
+    public boolean isRevoked(UUID userId, Date issuedAt) {
+        Long revokedBefore = watermarks.getIfPresent(userId);
+        if (revokedBefore == null) {
+            return false;
+        }
+        // Token không có iat thì không chứng minh được phát hành sau watermark
+        if (issuedAt == null || issuedAt.getTime() < revokedBefore) {
+            rejected.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // Chỉ tăng watermark, giao trùng / sai thứ tự từ channel không làm mở lại token đã thu hồi
+    private void apply(UUID userId, Long revokedBefore) {
+        watermarks.asMap().merge(userId, revokedBefore, Math::max);
+    }
+}
@@ -0,0 +1,103 @@
+package com.data.db_instagram.services.impl;
+
+import com.data.db_instagram.dto.response.UserInfo;
+import com.data.db_instagram.mapper.UserMapper;
+import com.data.db_instagram.model.Profiles;
+import com.data.db_instagram.model.Users;
+import com.data.db_instagram.repository.IUserRepository;
+import com.data.db_instagram.repository.ProfilesRepository;
+import com.data.db_instagram.services.UserInfoCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Cache in-process cho UserInfo theo user id:
+ * - Giới hạn theo số entry (cache.user-info.max-size) và TTL (cache.user-info.ttl-seconds).
+ * - Invalidate local khi user cập nhật profile; các node khác thấy thay đổi sau tối đa TTL.
+ * - Hit/miss/eviction được export qua Micrometer (cache.gets, cache.evictions... với tag cache=userInfo).
+ */
+@Service
+public class UserInfoCacheImpl implements UserInfoCache {
+    private final IUserRepository userRepository;
+    private final ProfilesRepository profilesRepository;
+    private final UserMapper userMapper;
+    private final Cache<UUID, UserInfo> cache;
+
+    public UserInfoCacheImpl(
+            IUserRepository userRepository,
+            ProfilesRepository profilesRepository,
+            UserMapper userMapper,
+            MeterRegistry meterRegistry,
+            @Value("${cache.user-info.max-size:10000}") long maxSize,
+            @Value("${cache.user-info.ttl-seconds:120}") long ttlSeconds
+    ) {
+        this.userRepository = userRepository;
+        this.profilesRepository = profilesRepository;
+        this.userMapper = userMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userInfo");
+    }
+
+    @Override
+    public UserInfo get(UUID userId) {
+        if (userId == null) {
+            return null;
+        }
+        return getAll(Collections.singleton(userId)).get(userId);
+    }
+
+    @Override
+    public Map<UUID, UserInfo> getAll(Collection<UUID> userIds) {
+        Set<UUID> ids = userIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return cache.getAll(ids, this::loadAll);
+    }
+
+    @Override
+    public void invalidate(UUID userId) {
+        if (userId == null) {
+            return;
+        }
+        cache.invalidate(userId);
+        // Request khác có thể load lại bản cũ trước khi transaction commit - xóa thêm 1 lần sau commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    // Batch load các id bị miss - user không tồn tại thì không cache
+    private Map<UUID, UserInfo> loadAll(Set<? extends UUID> userIds) {
+        List<UUID> ids = new ArrayList<>(userIds);
+        Map<UUID, Profiles> profileMap = profilesRepository.findByUserIdIn(ids).stream()
+                .collect(Collectors.toMap(Profiles::getUser_id, p -> p, (a, b) -> a));
+
+        Map<UUID, UserInfo> loaded = new HashMap<>();
+        for (Users user : userRepository.findAllById(ids)) {
+            loaded.put(user.getId(), userMapper.toUserInfo(user, profileMap.get(user.getId())));
+        }
+        return loaded;
+    }
+}
@@ -10,6 +10,7 @@ import com.data.db_instagram.model.Profiles;
 import com.data.db_instagram.model.Users;
 import com.data.db_instagram.repository.ProfilesRepository;
 import com.data.db_instagram.repository.IUserRepository;
+import com.data.db_instagram.services.UserInfoCache;
 import com.data.db_instagram.services.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -25,6 +26,7 @@ public class UserServiceImpl implements UserService {
     private final IUserRepository userRepository;
     private final ProfilesRepository profilesRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserInfoCache userInfoCache;
 
     @Override
     public UserInfo getCurrentUser(UUID userId) {
@@ -131,6 +133,7 @@ public class UserServiceImpl implements UserService {
 
         profile.setUpdated_at(new Date());
         profile = profilesRepository.save(profile);
+        userInfoCache.invalidate(userId);
 
         // Build response
         ProfileInfo profileInfo = ProfileInfo.builder()
@@ -2,6 +2,7 @@ package com.data.db_instagram.utils;
 
 import com.data.db_instagram.exception.HttpUnauthorized;
 import com.data.db_instagram.security.jwt.JwtProvider;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -21,11 +22,12 @@ public class JwtUtils {
             ? authorization.substring(7).trim() 
             : authorization.trim();
 
-        if (!jwtProvider.validateToken(token)) {
+        Claims claims = jwtProvider.parseClaims(token);
+        if (claims == null) {
             throw new HttpUnauthorized("Invalid or expired token");
         }
 
-        UUID userId = jwtProvider.extractUserId(token);
+        UUID userId = JwtProvider.userIdFrom(claims);
         
         if (userId == null) {
             throw new HttpUnauthorized("Invalid token format: userId not found");
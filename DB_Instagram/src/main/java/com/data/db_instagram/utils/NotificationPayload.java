@@ -0,0 +1,77 @@
+package com.data.db_instagram.utils;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Payload của notification: đối tượng chính (object_type, object_id) lưu thành cột riêng để query/index,
+ * phần JSON chỉ dùng để client hiển thị / điều hướng.
+ * JSON được build bằng Jackson nên không cần tự escape chuỗi (vd: lời nhắn friend request có dấu ").
+ */
+@Getter
+public class NotificationPayload {
+    public static final String OBJECT_POST = "post";
+    public static final String OBJECT_COMMENT = "comment";
+    public static final String OBJECT_FRIEND_REQUEST = "friend_request";
+    public static final String OBJECT_MESSAGE = "message";
+
+    private final String objectType;
+    private final UUID objectId;
+    // Chỉ đọc qua toJson(): ObjectNode mutable, không để caller sửa payload sau khi build
+    @Getter(AccessLevel.NONE)
+    private final ObjectNode json = JsonNodeFactory.instance.objectNode();
+
+    private NotificationPayload(String objectType, UUID objectId) {
+        this.objectType = objectType;
+        this.objectId = objectId;
+    }
+
+    // post_reaction: gộp theo post
+    public static NotificationPayload postReaction(UUID postId) {
+        return new NotificationPayload(OBJECT_POST, postId)
+                .put("postId", postId);
+    }
+
+    // comment: gộp theo post, commentId là comment mới nhất
+    public static NotificationPayload comment(UUID postId, UUID commentId) {
+        return new NotificationPayload(OBJECT_POST, postId)
+                .put("postId", postId)
+                .put("commentId", commentId);
+    }
+
+    // comment_tag: mỗi comment là 1 notification riêng
+    public static NotificationPayload commentTag(UUID postId, UUID commentId) {
+        return new NotificationPayload(OBJECT_COMMENT, commentId)
+                .put("postId", postId)
+                .put("commentId", commentId);
+    }
+
+    public static NotificationPayload friendRequest(UUID requestId, String message) {
+        return new NotificationPayload(OBJECT_FRIEND_REQUEST, requestId)
+                .put("requestId", requestId)
+                .put("message", message != null ? message : "");
+    }
+
+    public static NotificationPayload message(UUID messageId) {
+        return new NotificationPayload(OBJECT_MESSAGE, messageId)
+                .put("messageId", messageId);
+    }
+
+    public String toJson() {
+        return json.toString();
+    }
+
+    private NotificationPayload put(String field, UUID value) {
+        json.put(field, value.toString());
+        return this;
+    }
+
+    private NotificationPayload put(String field, String value) {
+        json.put(field, value);
+        return this;
+    }
+}
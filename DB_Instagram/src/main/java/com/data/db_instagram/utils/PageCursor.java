@@ -0,0 +1,60 @@
+package com.data.db_instagram.utils;
+
+import com.data.db_instagram.exception.HttpBadRequest;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Cursor cho keyset pagination theo (created_at, id).
+ * Client chỉ nhận chuỗi base64 "opaque", không phụ thuộc vào cấu trúc bên trong.
+ */
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+    private final String source; // Nguồn dữ liệu đang đọc (vd: timeline, public), có thể null
+    private final Date createdAt;
+    private final UUID id;
+
+    public PageCursor(Date createdAt, UUID id) {
+        this(null, createdAt, id);
+    }
+
+    public String encode() {
+        String raw = (source != null ? source : "") + ":" + createdAt.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            if (parts.length != 3) {
+                throw new HttpBadRequest("Invalid cursor");
+            }
+            String source = parts[0].isEmpty() ? null : parts[0];
+            return new PageCursor(source, new Date(Long.parseLong(parts[1])), UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new HttpBadRequest("Invalid cursor");
+        }
+    }
+
+    /**
+     * So sánh (created_at, id) theo thứ tự "mới nhất trước", khớp với ORDER BY created_at DESC, id DESC.
+     * UUID được so sánh theo chuỗi hex để trùng với thứ tự byte của cột UUID trong DB.
+     */
+    public static int compareNewestFirst(Date createdAtA, UUID idA, Date createdAtB, UUID idB) {
+        int byTime = createdAtB.compareTo(createdAtA);
+        if (byTime != 0) {
+            return byTime;
+        }
+        return idB.toString().compareTo(idA.toString());
+    }
+}
@@ -0,0 +1,28 @@
+package com.data.db_instagram.utils;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+// Database đang chạy, để chọn cú pháp native SQL không có trong chuẩn (insert-if-absent...)
+public enum SqlDialect {
+    MYSQL,
+    POSTGRESQL,
+    OTHER;
+
+    public static SqlDialect of(EntityManager entityManager) {
+        Dialect dialect = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect();
+        if (dialect instanceof MySQLDialect) {
+            return MYSQL;
+        }
+        if (dialect instanceof PostgreSQLDialect) {
+            return POSTGRESQL;
+        }
+        return OTHER;
+    }
+}
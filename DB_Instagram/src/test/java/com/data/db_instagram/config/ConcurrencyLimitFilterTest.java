@@ -0,0 +1,83 @@
+package com.data.db_instagram.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // 1 permit, chờ tối đa 50ms
+        filter = new ConcurrencyLimitFilter(new ObjectMapper(), meterRegistry, 1, 50);
+    }
+
+    @Test
+    void doFilter_PermitsExhausted_Returns503AfterTimeout() throws Exception {
+        // Arrange: request đầu giữ permit duy nhất
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread first = new Thread(() -> {
+            try {
+                filter.doFilter(apiRequest(), new MockHttpServletResponse(), (req, res) -> {
+                    holding.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        first.start();
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        // Act
+        FilterChain chain = mock(FilterChain.class);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(apiRequest(), response, chain);
+        release.countDown();
+        first.join(5000);
+
+        // Assert
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        verifyNoInteractions(chain);
+        assertEquals(1.0, meterRegistry.get("http.concurrency.rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("http.concurrency.available").gauge().value());
+    }
+
+    @Test
+    void doFilter_NonApiPath_BypassesLimit() throws Exception {
+        // Arrange
+        FilterChain chain = mock(FilterChain.class);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/health");
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        verify(chain).doFilter(any(), any());
+        assertEquals(0.0, meterRegistry.get("http.concurrency.rejected").counter().count());
+    }
+
+    private MockHttpServletRequest apiRequest() {
+        return new MockHttpServletRequest("GET", "/api/v1/posts/feed");
+    }
+}
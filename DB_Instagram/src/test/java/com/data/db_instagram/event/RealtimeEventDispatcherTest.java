@@ -0,0 +1,97 @@
+package com.data.db_instagram.event;
+
+import com.data.db_instagram.handler.MessageWebSocketHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:realtimeevents;DB_CLOSE_DELAY=-1")
+@Import({RealtimeEventDispatcher.class, RealtimeEventDispatcherTest.Config.class})
+class RealtimeEventDispatcherTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockitoBean
+    private MessageWebSocketHandler webSocketHandler;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void publishInTransaction_DispatchedOnlyAfterCommit() {
+        // Arrange
+        UUID recipient = UUID.randomUUID();
+        Map<String, Object> payload = Map.of("type", "new_message");
+
+        // Act
+        transactionTemplate.executeWithoutResult(status -> {
+            eventPublisher.publishEvent(RealtimeEvent.to(recipient, payload));
+            // Chưa commit: không được ghi socket
+            verify(webSocketHandler, after(200).never()).sendMessageToUsers(anyCollection(), any(), anyBoolean());
+        });
+
+        // Assert
+        verify(webSocketHandler, timeout(1000)).sendMessageToUsers(List.of(recipient.toString()), payload, true);
+    }
+
+    @Test
+    void publishInRolledBackTransaction_NeverDispatched() {
+        // Act
+        transactionTemplate.executeWithoutResult(status -> {
+            eventPublisher.publishEvent(RealtimeEvent.to(UUID.randomUUID(), Map.of("type", "new_message")));
+            status.setRollbackOnly();
+        });
+
+        // Assert
+        verify(webSocketHandler, after(300).never()).sendMessageToUsers(anyCollection(), any(), anyBoolean());
+    }
+
+    @Test
+    void publishWithoutTransaction_DispatchedToEveryRecipient() {
+        // Arrange
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        // Act
+        eventPublisher.publishEvent(new RealtimeEvent(List.of(first, second), "payload"));
+
+        // Assert
+        // 1 lần gọi cho cả 2 người nhận: payload chỉ serialize 1 lần
+        verify(webSocketHandler, timeout(1000)).sendMessageToUsers(List.of(first.toString(), second.toString()), "payload", true);
+    }
+}
@@ -0,0 +1,309 @@
+package com.data.db_instagram.handler;
+
+import com.data.db_instagram.dto.request.RealtimeFrameRequest;
+import com.data.db_instagram.services.RealtimeInboundService;
+import com.data.db_instagram.services.impl.InMemoryPresenceDirectory;
+import com.data.db_instagram.services.impl.InMemoryRealtimeBroker;
+import com.data.db_instagram.services.impl.InMemoryRealtimeEventLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessageWebSocketHandlerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ObjectMapper objectMapper;
+    private RealtimeInboundService inboundService;
+    private MessageWebSocketHandler handler;
+    private final ExecutorService sendExecutor = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        handler = handler(SessionOutbox.OverflowStrategy.CLOSE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sendExecutor.shutdownNow();
+    }
+
+    @Test
+    void sendMessageToUser_TwoDevices_DeliversToBoth() throws Exception {
+        // Arrange
+        WebSocketSession phone = session("s1", "user-1");
+        WebSocketSession tablet = session("s2", "user-1");
+        connect(phone);
+        connect(tablet);
+
+        // Act
+        handler.sendMessageToUser("user-1", Map.of("type", "new_message"));
+
+        // Assert
+        verify(phone, timeout(1000)).sendMessage(any(TextMessage.class));
+        verify(tablet, timeout(1000)).sendMessage(any(TextMessage.class));
+        assertEquals(2, handler.getSessionCount("user-1"));
+        assertEquals(2.0, meterRegistry.get("websocket.sessions").gauge().value());
+        assertEquals(1.0, meterRegistry.get("websocket.users").gauge().value());
+    }
+
+    @Test
+    void sendMessageToUsers_ManyRecipients_SerializesOnceAndSharesFrame() throws Exception {
+        // Arrange
+        WebSocketSession phone = session("s1", "user-1");
+        WebSocketSession tablet = session("s2", "user-1");
+        WebSocketSession other = session("s3", "user-2");
+        connect(phone);
+        connect(tablet);
+        connect(other);
+        Map<String, Object> payload = Map.of("type", "new_message", "text", "xin chào");
+
+        // Act
+        handler.sendMessageToUsers(List.of("user-1", "user-2", "offline-user"), payload);
+
+        // Assert: chỉ serialize 1 lần; các thiết bị của cùng user dùng chung 1 TextMessage (đã gắn seq của user đó)
+        ArgumentCaptor<TextMessage> phoneFrame = ArgumentCaptor.forClass(TextMessage.class);
+        ArgumentCaptor<TextMessage> otherFrame = ArgumentCaptor.forClass(TextMessage.class);
+        verify(phone, timeout(1000)).sendMessage(phoneFrame.capture());
+        verify(tablet, timeout(1000)).sendMessage(phoneFrame.capture());
+        verify(other, timeout(1000)).sendMessage(otherFrame.capture());
+        assertSame(phoneFrame.getAllValues().get(0), phoneFrame.getAllValues().get(1));
+        assertTrue(otherFrame.getValue().getPayload().startsWith("{\"seq\":"));
+        assertTrue(otherFrame.getValue().getPayload().contains("xin chào"));
+        verify(objectMapper, times(1)).writeValueAsBytes(payload);
+    }
+
+    @Test
+    void handleTextMessage_TypingFrame_RoutedToInboundServiceAndBadFrameIgnored() throws Exception {
+        // Arrange
+        String userId = UUID.randomUUID().toString();
+        UUID peerId = UUID.randomUUID();
+        WebSocketSession phone = session("s1", userId);
+        connect(phone);
+
+        // Act
+        handler.handleTextMessage(phone, new TextMessage("{\"type\":\"typing\",\"userId\":\"" + peerId + "\",\"isTyping\":true,\"extra\":1}"));
+        handler.handleTextMessage(phone, new TextMessage("not json"));
+
+        // Assert
+        ArgumentCaptor<RealtimeFrameRequest> frame = ArgumentCaptor.forClass(RealtimeFrameRequest.class);
+        verify(inboundService, times(1)).handle(eq(UUID.fromString(userId)), frame.capture());
+        assertEquals("typing", frame.getValue().getType());
+        assertEquals(peerId, frame.getValue().getUserId());
+        assertTrue(frame.getValue().getIsTyping());
+        verify(phone, never()).close(any());
+    }
+
+    @Test
+    void afterConnectionEstablished_WithLastSeq_ReplaysOnlyMissedEventsThenSync() throws Exception {
+        // Arrange: user-1 nhận 1 sự kiện khi online, rồi offline trong lúc có thêm 2 sự kiện
+        WebSocketSession before = session("s1", "user-1");
+        connect(before);
+        handler.sendMessageToUser("user-1", Map.of("type", "new_message", "n", 1));
+        ArgumentCaptor<TextMessage> received = ArgumentCaptor.forClass(TextMessage.class);
+        verify(before, timeout(1000)).sendMessage(received.capture());
+        long lastSeq = objectMapper.readTree(received.getValue().getPayload()).get("seq").asLong();
+        handler.afterConnectionClosed(before, CloseStatus.NORMAL);
+        handler.sendMessageToUser("user-1", Map.of("type", "new_message", "n", 2));
+        handler.sendMessageToUser("user-1", Map.of("type", "new_message", "n", 3));
+
+        // Act
+        WebSocketSession resumed = session("s2", "user-1");
+        resumed.getAttributes().put("lastSeq", lastSeq);
+        handler.afterConnectionEstablished(resumed);
+
+        // Assert: n=2, n=3 rồi frame sync
+        ArgumentCaptor<TextMessage> replayed = ArgumentCaptor.forClass(TextMessage.class);
+        verify(resumed, timeout(1000).times(3)).sendMessage(replayed.capture());
+        List<TextMessage> frames = replayed.getAllValues();
+        assertEquals(2, objectMapper.readTree(frames.get(0).getPayload()).get("n").asInt());
+        assertEquals(lastSeq + 1, objectMapper.readTree(frames.get(0).getPayload()).get("seq").asLong());
+        assertEquals(3, objectMapper.readTree(frames.get(1).getPayload()).get("n").asInt());
+        assertEquals("sync", objectMapper.readTree(frames.get(2).getPayload()).get("type").asText());
+        assertEquals(lastSeq + 2, objectMapper.readTree(frames.get(2).getPayload()).get("latestSeq").asLong());
+    }
+
+    @Test
+    void afterConnectionEstablished_GapLargerThanLog_SendsResyncRequired() throws Exception {
+        // Arrange: log giữ 3 sự kiện, user offline bỏ lỡ 5
+        WebSocketSession before = session("s1", "user-1");
+        handler.afterConnectionEstablished(before);
+        ArgumentCaptor<TextMessage> sync = ArgumentCaptor.forClass(TextMessage.class);
+        verify(before, timeout(1000)).sendMessage(sync.capture());
+        long lastSeq = objectMapper.readTree(sync.getValue().getPayload()).get("latestSeq").asLong();
+        handler.afterConnectionClosed(before, CloseStatus.NORMAL);
+        for (int i = 0; i < 5; i++) {
+            handler.sendMessageToUser("user-1", Map.of("type", "new_message", "n", i));
+        }
+
+        // Act
+        WebSocketSession resumed = session("s2", "user-1");
+        resumed.getAttributes().put("lastSeq", lastSeq);
+        handler.afterConnectionEstablished(resumed);
+
+        // Assert
+        ArgumentCaptor<TextMessage> frame = ArgumentCaptor.forClass(TextMessage.class);
+        verify(resumed, timeout(1000)).sendMessage(frame.capture());
+        assertEquals("resync_required", objectMapper.readTree(frame.getValue().getPayload()).get("type").asText());
+        Thread.sleep(100);
+        verify(resumed, times(1)).sendMessage(any());
+    }
+
+    @Test
+    void heartbeat_SilentSession_ReapedWhileResponsiveSessionPinged() throws Exception {
+        // Arrange: idle timeout 50ms, chỉ tablet trả pong
+        handler = handler(SessionOutbox.OverflowStrategy.CLOSE, 50);
+        WebSocketSession phone = session("s1", "user-1");
+        WebSocketSession tablet = session("s2", "user-1");
+        connect(phone);
+        connect(tablet);
+        Thread.sleep(100);
+        handler.handlePongMessage(tablet, new PongMessage());
+
+        // Act
+        handler.heartbeat();
+
+        // Assert
+        verify(phone).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(tablet, never()).close(any());
+        verify(tablet).sendMessage(any(PingMessage.class));
+        assertEquals(1, handler.getSessionCount("user-1"));
+        assertEquals(1.0, meterRegistry.get("websocket.sessions.reaped").counter().count());
+    }
+
+    @Test
+    void afterConnectionClosed_OneDevice_KeepsOtherDeviceConnected() throws Exception {
+        // Arrange
+        WebSocketSession phone = session("s1", "user-1");
+        WebSocketSession tablet = session("s2", "user-1");
+        connect(phone);
+        connect(tablet);
+
+        // Act
+        handler.afterConnectionClosed(phone, CloseStatus.NORMAL);
+        handler.sendMessageToUser("user-1", Map.of("type", "new_message"));
+
+        // Assert
+        verify(tablet, timeout(1000)).sendMessage(any(TextMessage.class));
+        verify(phone, never()).sendMessage(any());
+        assertTrue(handler.isUserConnected("user-1"));
+        assertEquals(1, handler.getTotalSessionCount());
+
+        handler.afterConnectionClosed(tablet, CloseStatus.NORMAL);
+        assertFalse(handler.isUserConnected("user-1"));
+        assertEquals(0, handler.getConnectedUsersCount());
+        assertEquals(0, handler.getTotalSessionCount());
+    }
+
+    @Test
+    void sendMessageToUser_StalledClient_ReturnsImmediatelyAndClosesOnOverflow() throws Exception {
+        // Arrange: client đầu tiên treo ở lần gửi đầu, client thứ hai bình thường
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession stalled = session("s1", "user-1");
+        WebSocketSession healthy = session("s2", "user-2");
+        connect(stalled);
+        connect(healthy);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(stalled).sendMessage(any());
+
+        // Act: buffer limit = 3 → message thứ 5 làm tràn (1 đang gửi + 3 chờ)
+        long started = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            handler.sendMessageToUser("user-1", Map.of("n", i));
+            if (i == 0) {
+                verify(stalled, timeout(1000)).sendMessage(any());
+            }
+        }
+        handler.sendMessageToUser("user-2", Map.of("n", 0));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        release.countDown();
+
+        // Assert
+        assertTrue(elapsedMs < 1000, "Caller blocked for " + elapsedMs + " ms");
+        verify(stalled).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(healthy, timeout(1000)).sendMessage(any(TextMessage.class));
+        assertEquals(0, handler.getSessionCount("user-1"));
+        assertEquals(1.0, meterRegistry.get("websocket.outbound.slow.closed").counter().count());
+    }
+
+    @Test
+    void sendMessageToUser_DropOldestOverflow_KeepsSessionAndCountsDrops() throws Exception {
+        // Arrange
+        handler = handler(SessionOutbox.OverflowStrategy.DROP_OLDEST);
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession stalled = session("s1", "user-1");
+        connect(stalled);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(stalled).sendMessage(any());
+
+        // Act
+        handler.sendMessageToUser("user-1", Map.of("n", 0));
+        verify(stalled, timeout(1000)).sendMessage(any());
+        for (int i = 1; i <= 5; i++) {
+            handler.sendMessageToUser("user-1", Map.of("n", i));
+        }
+        assertEquals(3.0, meterRegistry.get("websocket.outbound.buffered").gauge().value());
+        release.countDown();
+
+        // Assert: 1 đang gửi + 3 message mới nhất, 2 message cũ bị bỏ
+        verify(stalled, timeout(1000).times(4)).sendMessage(any());
+        verify(stalled, never()).close(any());
+        assertEquals(2.0, meterRegistry.get("websocket.outbound.dropped").counter().count());
+        assertEquals(1, handler.getSessionCount("user-1"));
+    }
+
+    private MessageWebSocketHandler handler(SessionOutbox.OverflowStrategy overflowStrategy) {
+        return handler(overflowStrategy, 75_000);
+    }
+
+    private MessageWebSocketHandler handler(SessionOutbox.OverflowStrategy overflowStrategy, long idleTimeoutMs) {
+        meterRegistry = new SimpleMeterRegistry();
+        objectMapper = spy(new ObjectMapper());
+        inboundService = mock(RealtimeInboundService.class);
+        return new MessageWebSocketHandler(meterRegistry, new InMemoryRealtimeBroker("local", new InMemoryPresenceDirectory()),
+                objectMapper, inboundService, new InMemoryRealtimeEventLog(3, 1024 * 1024, 60), sendExecutor, 3, 1024 * 1024, 10_000, overflowStrategy, idleTimeoutMs);
+    }
+
+    // Kết nối và bỏ qua frame sync gửi ngay khi kết nối
+    private void connect(WebSocketSession session) throws Exception {
+        handler.afterConnectionEstablished(session);
+        verify(session, timeout(1000)).sendMessage(any(TextMessage.class));
+        clearInvocations(session);
+    }
+
+    private WebSocketSession session(String id, String userId) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("userId", userId);
+        lenient().when(session.getId()).thenReturn(id);
+        lenient().when(session.getAttributes()).thenReturn(attributes);
+        lenient().when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
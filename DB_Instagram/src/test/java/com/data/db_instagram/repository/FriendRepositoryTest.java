@@ -0,0 +1,81 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.model.Users;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:friends;DB_CLOSE_DELAY=-1")
+class FriendRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FriendRepository friendRepository;
+
+    @Autowired
+    private IUserRepository userRepository;
+
+    @Test
+    void findFriendIdsWithFriendCountAbove_ReturnsOnlyHighFanOutFriends() {
+        // Arrange: reader là bạn của celebrity (3 bạn) và normal (1 bạn); stranger có 3 bạn nhưng không phải bạn reader
+        UUID reader = insertUser();
+        UUID celebrity = insertUser();
+        UUID normal = insertUser();
+        UUID stranger = insertUser();
+        befriend(reader, celebrity);
+        befriend(normal, reader);
+        befriend(celebrity, insertUser());
+        befriend(celebrity, insertUser());
+        for (int i = 0; i < 3; i++) {
+            befriend(stranger, insertUser());
+        }
+
+        // Act
+        List<UUID> pulled = friendRepository.findFriendIdsWithFriendCountAbove(reader, 2);
+
+        // Assert
+        assertEquals(List.of(celebrity), pulled);
+    }
+
+    @Test
+    void incrementFriendCount_EntitySaveDoesNotOverwriteCounter() {
+        // Arrange: entity được load trước khi counter tăng
+        UUID userId = insertUser();
+        Users loaded = userRepository.findById(userId).orElseThrow();
+        userRepository.incrementFriendCount(List.of(userId), 5);
+
+        // Act
+        loaded.setPhone("0900000000");
+        userRepository.saveAndFlush(loaded);
+
+        // Assert
+        assertEquals(5L, jdbcTemplate.queryForObject("SELECT friend_count FROM users WHERE id = ?", Long.class, userId));
+    }
+
+    private void befriend(UUID userA, UUID userB) {
+        jdbcTemplate.update("INSERT INTO friends (id, user_a, user_b, since) VALUES (?, ?, ?, CURRENT_TIMESTAMP)",
+                UUID.randomUUID(), userA, userB);
+        userRepository.incrementFriendCount(List.of(userA, userB), 1);
+    }
+
+    private UUID insertUser() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, is_active, created_at) VALUES (?, ?, 'x', TRUE, CURRENT_TIMESTAMP)",
+                id, id + "@test.local");
+        return id;
+    }
+}
@@ -0,0 +1,119 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.model.Messages;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:messagesrepo;DB_CLOSE_DELAY=-1")
+class MessagesRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessagesRepository messagesRepository;
+
+    private UUID alice;
+    private UUID bob;
+    private UUID carol;
+
+    @BeforeEach
+    void setUp() {
+        alice = insertUser("alice-msg@test.local");
+        bob = insertUser("bob-msg@test.local");
+        carol = insertUser("carol-msg@test.local");
+    }
+
+    @Test
+    void conversationKey_EitherDirection_SameKey() {
+        assertEquals(Messages.conversationKey(alice, bob), Messages.conversationKey(bob, alice));
+        assertNotEquals(Messages.conversationKey(alice, bob), Messages.conversationKey(alice, carol));
+    }
+
+    @Test
+    void findConversationBeforeAndAfter_WalkBothDirectionsWithoutOverlap() {
+        // Arrange: 5 tin nhắn 2 chiều giữa alice-bob, cùng created_at cho 2 tin cuối; 1 tin ở conversation khác
+        List<Messages> sent = new ArrayList<>();
+        sent.add(save(alice, bob, 1000));
+        sent.add(save(bob, alice, 2000));
+        sent.add(save(alice, bob, 3000));
+        sent.add(save(bob, alice, 4000));
+        sent.add(save(alice, bob, 4000));
+        save(alice, carol, 5000);
+        String key = Messages.conversationKey(bob, alice);
+
+        // Act: trang mới nhất (2 tin), rồi đi lùi bằng cursor của tin cũ nhất trong trang
+        List<Messages> latest = messagesRepository.findConversationLatest(key, PageRequest.of(0, 2));
+        Messages oldestOnPage = latest.get(1);
+        List<Messages> older = messagesRepository.findConversationBefore(
+                key, oldestOnPage.getCreated_at(), oldestOnPage.getId(), PageRequest.of(0, 10));
+        Messages first = older.get(older.size() - 1);
+        List<Messages> newer = messagesRepository.findConversationAfter(
+                key, first.getCreated_at(), first.getId(), PageRequest.of(0, 10));
+
+        // Assert
+        assertEquals(2, latest.size());
+        assertEquals(3, older.size());
+        assertEquals(sent.get(0).getId(), first.getId());
+        assertEquals(4, newer.size());
+        List<UUID> seen = new ArrayList<>();
+        latest.forEach(m -> seen.add(m.getId()));
+        older.forEach(m -> seen.add(m.getId()));
+        assertEquals(5, seen.stream().distinct().count());
+        for (int i = 1; i < newer.size(); i++) {
+            assertFalse(newer.get(i).getCreated_at().before(newer.get(i - 1).getCreated_at()));
+        }
+    }
+
+    @Test
+    void markAllAsRead_OnlyUnreadFromPeer_ReturnsAffectedCount() {
+        // Arrange
+        save(bob, alice, 1000);
+        save(bob, alice, 2000);
+        save(alice, bob, 3000);
+        save(carol, alice, 4000);
+
+        // Act
+        int updated = messagesRepository.markAllAsRead(alice, bob, new Date());
+
+        // Assert
+        assertEquals(2, updated);
+        assertEquals(0, messagesRepository.countUnreadMessages(alice, bob));
+        assertEquals(1, messagesRepository.countUnreadMessages(alice, carol));
+        assertEquals(1, messagesRepository.countUnreadMessages(bob, alice));
+        assertEquals(0, messagesRepository.markAllAsRead(alice, bob, new Date()));
+    }
+
+    private Messages save(UUID from, UUID to, long createdAt) {
+        Messages message = new Messages();
+        message.setFrom_user(from);
+        message.setTo_user(to);
+        message.setContent("hi");
+        message.setCreated_at(new Date(createdAt));
+        return messagesRepository.save(message);
+    }
+
+    private UUID insertUser(String email) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, is_active, created_at) VALUES (?, ?, 'x', TRUE, CURRENT_TIMESTAMP)",
+                id, email);
+        return id;
+    }
+}
@@ -0,0 +1,57 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.model.Notifications;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:notificationsrepo;DB_CLOSE_DELAY=-1")
+class NotificationsRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NotificationsRepository notificationsRepository;
+
+    private UUID ownerId;
+
+    @BeforeEach
+    void setUp() {
+        ownerId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, is_active, created_at) VALUES (?, ?, 'x', TRUE, CURRENT_TIMESTAMP)",
+                ownerId, "owner-notif@test.local");
+    }
+
+    @Test
+    void insertGroupIfAbsent_CalledTwice_CreatesSingleEmptyGroup() {
+        // Arrange
+        UUID postId = UUID.randomUUID();
+
+        // Act
+        notificationsRepository.insertGroupIfAbsent(ownerId, "post_reaction", "post", postId, new Date());
+        notificationsRepository.insertGroupIfAbsent(ownerId, "post_reaction", "post", postId, new Date());
+
+        // Assert: dòng trống, đã đọc, không hiện trong danh sách notification
+        Notifications group = notificationsRepository.findGroupForUpdate(ownerId, "post_reaction", postId).orElseThrow();
+        assertEquals(0, group.getActor_count());
+        assertTrue(group.getIs_read());
+        assertEquals("post", group.getObject_type());
+        assertEquals(postId, group.getObject_id());
+        assertEquals(1L, notificationsRepository.count());
+        assertTrue(notificationsRepository.findByUserIdOrderByCreatedAtDesc(ownerId).isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+package com.data.db_instagram.repository;
+
+import com.data.db_instagram.model.Post_reactions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:postreactions;DB_CLOSE_DELAY=-1")
+class PostReactionsRepositoryTest {
+    private static final long BASE_MILLIS = Timestamp.valueOf("2024-01-01 00:00:00").getTime();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostReactionsRepository postReactionsRepository;
+
+    private UUID authorId;
+    private List<UUID> reactorIds;
+
+    @BeforeEach
+    void setUp() {
+        authorId = insertUser();
+        reactorIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            reactorIds.add(insertUser());
+        }
+    }
+
+    @Test
+    void findLatestByPostIdIn_ManyReactions_ReturnsNewestPerPost() {
+        // Arrange: post 8 reactions, post 2 reactions, post 0 reactions
+        UUID busyPost = insertPost();
+        UUID quietPost = insertPost();
+        UUID emptyPost = insertPost();
+        for (int i = 0; i < 8; i++) {
+            insertReaction(busyPost, reactorIds.get(i), i);
+        }
+        insertReaction(quietPost, reactorIds.get(0), 0);
+        insertReaction(quietPost, reactorIds.get(1), 1);
+
+        // Act
+        List<Post_reactions> latest = postReactionsRepository.findLatestByPostIdIn(List.of(busyPost, quietPost, emptyPost), 5);
+
+        // Assert
+        Map<UUID, List<Post_reactions>> byPost = latest.stream().collect(Collectors.groupingBy(Post_reactions::getPostId));
+        assertEquals(5, byPost.get(busyPost).size());
+        assertEquals(List.of(reactorIds.get(7), reactorIds.get(6), reactorIds.get(5), reactorIds.get(4), reactorIds.get(3)),
+                byPost.get(busyPost).stream().map(Post_reactions::getUserId).collect(Collectors.toList()));
+        assertEquals(2, byPost.get(quietPost).size());
+        assertFalse(byPost.containsKey(emptyPost));
+    }
+
+    @Test
+    void findReactedPostIds_ReturnsOnlyPostsReactedByUser() {
+        // Arrange
+        UUID liked = insertPost();
+        UUID notLiked = insertPost();
+        insertReaction(liked, reactorIds.get(0), 0);
+        insertReaction(notLiked, reactorIds.get(1), 0);
+
+        // Act
+        List<UUID> reacted = postReactionsRepository.findReactedPostIds(reactorIds.get(0), List.of(liked, notLiked));
+
+        // Assert
+        assertEquals(List.of(liked), reacted);
+    }
+
+    private UUID insertUser() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, is_active, created_at) VALUES (?, ?, 'x', TRUE, CURRENT_TIMESTAMP)",
+                id, id + "@test.local");
+        return id;
+    }
+
+    private UUID insertPost() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO posts (id, user_id, visibility, created_at, is_deleted) VALUES (?, ?, 'public', CURRENT_TIMESTAMP, FALSE)",
+                id, authorId);
+        return id;
+    }
+
+    private void insertReaction(UUID postId, UUID userId, int minute) {
+        jdbcTemplate.update("INSERT INTO post_reactions (id, post_id, user_id, emoji, created_at) VALUES (?, ?, ?, 'x', ?)",
+                UUID.randomUUID(), postId, userId, new Timestamp(BASE_MILLIS + minute * 60_000L));
+    }
+}
@@ -0,0 +1,132 @@
+package com.data.db_instagram.security;
+
+import com.data.db_instagram.repository.IUserRepository;
+import com.data.db_instagram.repository.TokenRevocationsRepository;
+import com.data.db_instagram.security.jwt.JwtProvider;
+import com.data.db_instagram.security.jwt.JwtTokenFilter;
+import com.data.db_instagram.security.principal.MyUserDetails;
+import com.data.db_instagram.services.impl.DeactivatedUserCacheImpl;
+import com.data.db_instagram.services.impl.InMemoryTokenRevocationChannel;
+import com.data.db_instagram.services.impl.TokenRevocationServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JwtTokenFilterTest {
+
+    private IUserRepository userRepository;
+    private JwtProvider jwtProvider;
+    private DeactivatedUserCacheImpl deactivatedUserCache;
+    private TokenRevocationServiceImpl tokenRevocationService;
+    private JwtTokenFilter filter;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(IUserRepository.class);
+        jwtProvider = new JwtProvider();
+        ReflectionTestUtils.setField(jwtProvider, "SECRET_KEY", "ZGV2LW9ubHktc2VjcmV0LWtleS1mb3ItdGVzdHMtMzItYnl0ZXMtbG9uZw==");
+        ReflectionTestUtils.setField(jwtProvider, "EXPIRED_ACCESS", 3600L);
+        ReflectionTestUtils.setField(jwtProvider, "EXPIRED_REFRESH", 7200L);
+        ReflectionTestUtils.invokeMethod(jwtProvider, "init");
+        deactivatedUserCache = new DeactivatedUserCacheImpl(userRepository, new SimpleMeterRegistry());
+        tokenRevocationService = new TokenRevocationServiceImpl(mock(TokenRevocationsRepository.class),
+                new InMemoryTokenRevocationChannel(), new SimpleMeterRegistry(), 3600);
+        filter = new JwtTokenFilter(deactivatedUserCache, tokenRevocationService, jwtProvider, new ObjectMapper());
+        userId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_ValidToken_BuildsPrincipalFromClaimsWithoutDbLookup() throws Exception {
+        // Arrange
+        FilterChain chain = mock(FilterChain.class);
+
+        // Act
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(jwtProvider.generateToken("alice@example.com", userId)), response, chain);
+
+        // Assert
+        verify(chain).doFilter(any(), any());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        MyUserDetails principal = (MyUserDetails) authentication.getPrincipal();
+        assertEquals(userId, principal.getId());
+        assertEquals("alice@example.com", principal.getUsername());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void doFilter_DeactivatedUser_ReturnsUnauthorized() throws Exception {
+        // Arrange: snapshot nạp từ DB chứa user bị khóa
+        when(userRepository.findInactiveUserIds()).thenReturn(List.of(userId));
+        assertEquals(1, deactivatedUserCache.refresh());
+        FilterChain chain = mock(FilterChain.class);
+
+        // Act
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(jwtProvider.generateToken("alice@example.com", userId)), response, chain);
+
+        // Assert
+        assertEquals(401, response.getStatus());
+        assertTrue(response.getContentAsString().contains("deactivated"));
+        verifyNoInteractions(chain);
+    }
+
+    @Test
+    void doFilter_TokenIssuedBeforeLogoutAll_ReturnsUnauthorized() throws Exception {
+        // Arrange
+        String token = jwtProvider.generateToken("alice@example.com", userId);
+        tokenRevocationService.revokeAccessTokens(userId);
+        FilterChain chain = mock(FilterChain.class);
+
+        // Act
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(token), response, chain);
+
+        // Assert
+        assertEquals(401, response.getStatus());
+        assertTrue(response.getContentAsString().contains("revoked"));
+        verifyNoInteractions(chain);
+    }
+
+    @Test
+    void doFilter_TamperedToken_ReturnsUnauthorized() throws Exception {
+        // Arrange
+        String token = jwtProvider.generateToken("alice@example.com", userId);
+        FilterChain chain = mock(FilterChain.class);
+
+        // Act
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(token.substring(0, token.length() - 2) + "xx"), response, chain);
+
+        // Assert
+        assertEquals(401, response.getStatus());
+        verifyNoInteractions(chain);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    private MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/posts/feed");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
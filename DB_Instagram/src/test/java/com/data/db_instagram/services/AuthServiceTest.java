@@ -16,7 +16,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Date;
 import java.util.Optional;
@@ -36,7 +35,7 @@ class AuthServiceTest {
     private ProfilesRepository profilesRepository;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashing;
 
     @Mock
     private JwtProvider jwtProvider;
@@ -75,7 +74,7 @@ class AuthServiceTest {
         when(userRepository.existsByEmail(registerRequest.getEmail())).thenReturn(false);
         when(userRepository.existsByPhone(registerRequest.getPhone())).thenReturn(false);
         when(userRepository.save(any(Users.class))).thenReturn(testUser);
-        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        when(passwordHashing.encode(anyString())).thenReturn("encodedPassword");
         when(jwtProvider.generateToken(anyString(), any(UUID.class))).thenReturn("testToken");
         when(profilesRepository.save(any())).thenReturn(null);
 
@@ -118,7 +117,7 @@ class AuthServiceTest {
         // Arrange
         when(userRepository.findByEmailOrPhone(loginRequest.getEmail(), loginRequest.getEmail()))
             .thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches(loginRequest.getPassword(), testUser.getPassword_hash()))
+        when(passwordHashing.matches(loginRequest.getPassword(), testUser.getPassword_hash()))
             .thenReturn(true);
         when(jwtProvider.generateToken(anyString(), any(UUID.class))).thenReturn("testToken");
         when(profilesRepository.findByUserId(any(UUID.class))).thenReturn(Optional.empty());
@@ -133,6 +132,26 @@ class AuthServiceTest {
         assertEquals("test@example.com", result.getUser().getEmail());
     }
 
+    @Test
+    void login_LegacyPasswordHash_RehashesWithCurrentEncoder() {
+        // Arrange
+        String legacyHash = testUser.getPassword_hash();
+        when(userRepository.findByEmailOrPhone(loginRequest.getEmail(), loginRequest.getEmail()))
+            .thenReturn(Optional.of(testUser));
+        when(passwordHashing.matches(loginRequest.getPassword(), legacyHash)).thenReturn(true);
+        when(passwordHashing.needsRehash(legacyHash)).thenReturn(true);
+        when(passwordHashing.encode(loginRequest.getPassword())).thenReturn("{bcrypt}$2a$12$rehashed");
+        when(jwtProvider.generateToken(anyString(), any(UUID.class))).thenReturn("testToken");
+        when(profilesRepository.findByUserId(any(UUID.class))).thenReturn(Optional.empty());
+
+        // Act
+        authService.login(loginRequest);
+
+        // Assert
+        assertEquals("{bcrypt}$2a$12$rehashed", testUser.getPassword_hash());
+        verify(userRepository).save(testUser);
+    }
+
     @Test
     void login_InvalidCredentials_ThrowsUnauthorizedException() {
         // Arrange
@@ -148,7 +167,7 @@ class AuthServiceTest {
         // Arrange
         when(userRepository.findByEmailOrPhone(loginRequest.getEmail(), loginRequest.getEmail()))
             .thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches(loginRequest.getPassword(), testUser.getPassword_hash()))
+        when(passwordHashing.matches(loginRequest.getPassword(), testUser.getPassword_hash()))
             .thenReturn(false);
 
         // Act & Assert
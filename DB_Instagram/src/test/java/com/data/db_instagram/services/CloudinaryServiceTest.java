@@ -0,0 +1,29 @@
+package com.data.db_instagram.services;
+
+import com.cloudinary.Cloudinary;
+import com.data.db_instagram.exception.HttpServiceUnavailable;
+import com.data.db_instagram.services.impl.CloudinaryServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CloudinaryServiceTest {
+
+    @Test
+    void uploadImage_NoPermitWithinTimeout_ThrowsServiceUnavailable() {
+        // Arrange: không còn permit upload nào
+        Cloudinary cloudinary = mock(Cloudinary.class);
+        CloudinaryServiceImpl service = new CloudinaryServiceImpl(cloudinary, 0, 10);
+        MockMultipartFile file = new MockMultipartFile("file", "a.png", "image/png", new byte[]{1, 2, 3});
+
+        // Act
+        HttpServiceUnavailable ex = assertThrows(HttpServiceUnavailable.class,
+                () -> service.uploadImage(file, "instagram"));
+
+        // Assert: trả 503 + Retry-After, không gọi Cloudinary
+        assertEquals(1, ex.getRetryAfterSeconds());
+        verifyNoInteractions(cloudinary);
+    }
+}
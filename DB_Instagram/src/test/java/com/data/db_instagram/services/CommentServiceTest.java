@@ -0,0 +1,146 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.dto.response.CommentResponse;
+import com.data.db_instagram.dto.response.CursorPageResponse;
+import com.data.db_instagram.dto.response.UserInfo;
+import com.data.db_instagram.model.Comment_tags;
+import com.data.db_instagram.model.Comments;
+import com.data.db_instagram.repository.CommentTagsRepository;
+import com.data.db_instagram.repository.CommentsRepository;
+import com.data.db_instagram.repository.PostsRepository;
+import com.data.db_instagram.services.impl.CommentServiceImpl;
+import com.data.db_instagram.utils.PageCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommentServiceTest {
+
+    @Mock
+    private CommentsRepository commentsRepository;
+
+    @Mock
+    private CommentTagsRepository commentTagsRepository;
+
+    @Mock
+    private PostsRepository postsRepository;
+
+    @Mock
+    private UserInfoCache userInfoCache;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private PostCounterService postCounterService;
+
+    @InjectMocks
+    private CommentServiceImpl commentService;
+
+    private UUID postId;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        postId = UUID.randomUUID();
+        userId = UUID.randomUUID();
+    }
+
+    @Test
+    void getPostComments_ManyComments_LoadsRepliesTagsAndUsersInBatch() {
+        // Arrange
+        Comments first = comment(null, 2000);
+        Comments second = comment(null, 1000);
+        Comment_tags tag = new Comment_tags();
+        tag.setComment_id(first.getId());
+        tag.setTagged_user_id(UUID.randomUUID());
+
+        when(commentsRepository.findByPostIdAndParentCommentIsNullAndIsDeletedFalseOrderByCreatedAtDesc(postId))
+                .thenReturn(List.of(first, second));
+        when(userInfoCache.getAll(any())).thenReturn(Map.of(userId, UserInfo.builder().id(userId).build()));
+        when(commentsRepository.countRepliesByParentCommentIn(anyList()))
+                .thenReturn(Collections.singletonList(new Object[]{first.getId(), 3L}));
+        when(commentTagsRepository.findByCommentIdIn(anyList())).thenReturn(List.of(tag));
+
+        // Act
+        List<CommentResponse> result = commentService.getPostComments(postId, userId);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(3L, result.get(0).getReplyCount());
+        assertEquals(0L, result.get(1).getReplyCount());
+        assertEquals(List.of(tag.getTagged_user_id()), result.get(0).getTaggedUserIds());
+        assertTrue(result.get(1).getTaggedUserIds().isEmpty());
+        assertEquals(userId, result.get(1).getUser().getId());
+
+        verify(userInfoCache, times(1)).getAll(any());
+        verify(commentsRepository, times(1)).countRepliesByParentCommentIn(anyList());
+        verify(commentTagsRepository, times(1)).findByCommentIdIn(anyList());
+        verify(userInfoCache, never()).get(any());
+        verify(commentsRepository, never()).findByParentCommentAndIsDeletedFalseOrderByCreatedAtAsc(any());
+        verify(commentTagsRepository, never()).findByComment_id(any());
+    }
+
+    @Test
+    void getPostCommentsByCursor_MoreRowsThanSize_ReturnsNextCursorFromLastItem() {
+        // Arrange
+        Comments a = comment(null, 3000);
+        Comments b = comment(null, 2000);
+        Comments c = comment(null, 1000);
+        when(commentsRepository.findTopLevelLatest(eq(postId), any())).thenReturn(List.of(a, b, c));
+        when(userInfoCache.getAll(any())).thenReturn(Map.of());
+
+        // Act
+        CursorPageResponse<CommentResponse> page = commentService.getPostCommentsByCursor(postId, userId, null, 2);
+
+        // Assert
+        assertTrue(page.isHasMore());
+        assertEquals(2, page.getItems().size());
+        PageCursor next = PageCursor.decode(page.getNextCursor());
+        assertEquals(b.getId(), next.getId());
+        assertEquals(b.getCreatedAt(), next.getCreatedAt());
+    }
+
+    @Test
+    void getCommentRepliesByCursor_WithCursor_ReadsAfterCursorAndSkipsReplyCount() {
+        // Arrange
+        UUID parentId = UUID.randomUUID();
+        Comments reply = comment(parentId, 5000);
+        PageCursor cursor = new PageCursor(new Date(4000), UUID.randomUUID());
+        when(commentsRepository.findRepliesAfter(eq(parentId), eq(cursor.getCreatedAt()), eq(cursor.getId()), any()))
+                .thenReturn(List.of(reply));
+        when(userInfoCache.getAll(any())).thenReturn(Map.of());
+
+        // Act
+        CursorPageResponse<CommentResponse> page = commentService.getCommentRepliesByCursor(parentId, userId, cursor.encode(), 10);
+
+        // Assert
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+        assertEquals(reply.getId(), page.getItems().get(0).getId());
+        // Replies không có replies con nên không cần query đếm
+        verify(commentsRepository, never()).countRepliesByParentCommentIn(anyList());
+    }
+
+    private Comments comment(UUID parentId, long createdAt) {
+        Comments comment = new Comments();
+        comment.setId(UUID.randomUUID());
+        comment.setPostId(postId);
+        comment.setUserId(userId);
+        comment.setParentComment(parentId);
+        comment.setCreatedAt(new Date(createdAt));
+        return comment;
+    }
+}
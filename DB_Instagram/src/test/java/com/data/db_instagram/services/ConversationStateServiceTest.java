@@ -0,0 +1,193 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Conversation_state;
+import com.data.db_instagram.model.Messages;
+import com.data.db_instagram.repository.ConversationStateRepository;
+import com.data.db_instagram.repository.MessagesRepository;
+import com.data.db_instagram.services.impl.ConversationStateServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:conversationstate;DB_CLOSE_DELAY=-1")
+class ConversationStateServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private MessagesRepository messagesRepository;
+
+    @Autowired
+    private ConversationStateRepository conversationStateRepository;
+
+    private ConversationStateServiceImpl conversationStateService;
+    private UUID alice;
+    private UUID bob;
+
+    @BeforeEach
+    void setUp() {
+        conversationStateService = new ConversationStateServiceImpl(conversationStateRepository, messagesRepository);
+        alice = insertUser("alice@test.local");
+        bob = insertUser("bob@test.local");
+    }
+
+    @Test
+    void onMessageSent_BothDirections_TracksLastMessageAndUnreadPerSide() {
+        // Act
+        send(alice, bob, 1000);
+        send(alice, bob, 2000);
+        Messages reply = send(bob, alice, 3000);
+
+        // Assert
+        Conversation_state bobState = inbox(bob).get(0);
+        assertEquals(alice, bobState.getPeerId());
+        assertEquals(reply.getId(), bobState.getLastMessageId());
+        assertEquals(2L, bobState.getUnreadCount());
+
+        Conversation_state aliceState = inbox(alice).get(0);
+        assertEquals(bob, aliceState.getPeerId());
+        assertEquals(reply.getId(), aliceState.getLastMessageId());
+        assertEquals(1L, aliceState.getUnreadCount());
+    }
+
+    @Test
+    void onConversationRead_AfterSingleRead_ResetsWithoutGoingNegative() {
+        // Arrange
+        Messages first = send(alice, bob, 1000);
+        send(alice, bob, 2000);
+
+        // Act
+        conversationStateService.onMessageRead(first);
+        assertEquals(1L, inbox(bob).get(0).getUnreadCount());
+        conversationStateService.onConversationRead(bob, alice);
+        conversationStateService.onMessageRead(first);
+
+        // Assert
+        assertEquals(0L, inbox(bob).get(0).getUnreadCount());
+    }
+
+    @Test
+    void onMessageDeleted_LastUnreadMessage_RestoresPreviousLastMessage() {
+        // Arrange
+        Messages first = send(alice, bob, 1000);
+        Messages second = send(alice, bob, 2000);
+
+        // Act
+        messagesRepository.delete(second);
+        conversationStateService.onMessageDeleted(second);
+
+        // Assert
+        for (UUID owner : List.of(alice, bob)) {
+            Conversation_state state = inbox(owner).get(0);
+            assertEquals(first.getId(), state.getLastMessageId());
+            assertEquals(first.getCreated_at().getTime(), state.getLastMessageAt().getTime());
+        }
+        assertEquals(1L, inbox(bob).get(0).getUnreadCount());
+    }
+
+    @Test
+    void onMessageSent_SelfMessage_SingleReadStateRow() {
+        // Act
+        Messages note = new Messages();
+        note.setFrom_user(alice);
+        note.setTo_user(alice);
+        note.setContent("note");
+        note.setIs_read(true);
+        note.setCreated_at(new Date(1000));
+        note = messagesRepository.save(note);
+        conversationStateService.onMessageSent(note);
+
+        // Assert
+        List<Conversation_state> states = inbox(alice);
+        assertEquals(1, states.size());
+        assertEquals(alice, states.get(0).getPeerId());
+        assertEquals(0L, states.get(0).getUnreadCount());
+    }
+
+    @Test
+    void onMessageSent_StateInsertedConcurrently_UpdatesExistingRowWithoutFailing() {
+        // Arrange: request khác tạo dòng state giữa lúc kiểm tra và lúc insert
+        ConversationStateRepository racingRepository = mock(ConversationStateRepository.class);
+        when(racingRepository.existsByUserIdAndPeerId(any(), any())).thenReturn(false);
+        ConversationStateServiceImpl service = new ConversationStateServiceImpl(racingRepository, messagesRepository);
+        Messages message = new Messages();
+        message.setId(UUID.randomUUID());
+        message.setFrom_user(alice);
+        message.setTo_user(bob);
+        message.setIs_read(false);
+        message.setCreated_at(new Date(1000));
+
+        // Act
+        assertDoesNotThrow(() -> service.onMessageSent(message));
+
+        // Assert: insert-if-absent trên transaction hiện tại, không save entity (không có lỗi unique làm hỏng transaction)
+        verify(racingRepository).insertIfAbsent(eq(alice), eq(bob), any());
+        verify(racingRepository).insertIfAbsent(eq(bob), eq(alice), any());
+        verify(racingRepository, never()).saveAndFlush(any());
+        verify(racingRepository).recordMessage(eq(alice), eq(bob), eq(message.getId()), any(), eq(0L), any());
+        verify(racingRepository).recordMessage(eq(bob), eq(alice), eq(message.getId()), any(), eq(1L), any());
+    }
+
+    @Test
+    void insertIfAbsent_RowAlreadyExists_KeepsSingleRow() {
+        // Arrange
+        send(alice, bob, 1000);
+
+        // Act
+        conversationStateRepository.insertIfAbsent(bob, alice, new Date());
+        conversationStateRepository.insertIfAbsent(bob, alice, new Date());
+
+        // Assert: dòng đã có giữ nguyên unread
+        List<Conversation_state> states = inbox(bob);
+        assertEquals(1, states.size());
+        assertEquals(1L, states.get(0).getUnreadCount());
+    }
+
+    private Messages send(UUID from, UUID to, long createdAt) {
+        Messages message = new Messages();
+        message.setFrom_user(from);
+        message.setTo_user(to);
+        message.setContent("hi");
+        message.setIs_read(false);
+        message.setCreated_at(new Date(createdAt));
+        message = messagesRepository.save(message);
+        conversationStateService.onMessageSent(message);
+        return message;
+    }
+
+    // Bulk UPDATE không đi qua persistence context: clear để đọc giá trị mới từ DB
+    private List<Conversation_state> inbox(UUID userId) {
+        entityManager.flush();
+        entityManager.clear();
+        return conversationStateRepository.findInbox(userId);
+    }
+
+    private UUID insertUser(String email) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, is_active, created_at) VALUES (?, ?, 'x', TRUE, CURRENT_TIMESTAMP)",
+                id, email);
+        return id;
+    }
+}
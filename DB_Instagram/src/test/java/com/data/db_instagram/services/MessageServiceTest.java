@@ -0,0 +1,94 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.event.RealtimeEvent;
+import com.data.db_instagram.repository.*;
+import com.data.db_instagram.services.impl.MessageServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageServiceTest {
+
+    @Mock
+    private MessagesRepository messagesRepository;
+
+    @Mock
+    private MessageMediaRepository messageMediaRepository;
+
+    @Mock
+    private MessageReactionsRepository messageReactionsRepository;
+
+    @Mock
+    private IUserRepository userRepository;
+
+    @Mock
+    private UserInfoCache userInfoCache;
+
+    @Mock
+    private ConversationStateRepository conversationStateRepository;
+
+    @Mock
+    private ConversationStateService conversationStateService;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private MessageServiceImpl messageService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void markAllAsRead_UnreadMessages_SingleUpdateAndReadReceiptToSender() {
+        // Arrange
+        UUID readerId = UUID.randomUUID();
+        UUID senderId = UUID.randomUUID();
+        when(messagesRepository.markAllAsRead(eq(readerId), eq(senderId), any())).thenReturn(3);
+
+        // Act
+        int updated = messageService.markAllAsRead(readerId, senderId);
+
+        // Assert
+        assertEquals(3, updated);
+        verify(messagesRepository, never()).findConversation(anyString());
+        verify(conversationStateService).onConversationRead(readerId, senderId);
+        ArgumentCaptor<RealtimeEvent> event = ArgumentCaptor.forClass(RealtimeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(List.of(senderId), event.getValue().getRecipients());
+        Map<String, Object> payload = (Map<String, Object>) event.getValue().getPayload();
+        assertEquals("messages_read", payload.get("type"));
+        assertEquals(readerId, payload.get("readerId"));
+    }
+
+    @Test
+    void markAllAsRead_NothingUnread_NoReadReceipt() {
+        // Arrange
+        UUID readerId = UUID.randomUUID();
+        UUID senderId = UUID.randomUUID();
+        when(messagesRepository.markAllAsRead(eq(readerId), eq(senderId), any())).thenReturn(0);
+
+        // Act
+        int updated = messageService.markAllAsRead(readerId, senderId);
+
+        // Assert
+        assertEquals(0, updated);
+        verifyNoInteractions(eventPublisher);
+    }
+}
@@ -0,0 +1,239 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Notifications;
+import com.data.db_instagram.repository.NotificationsRepository;
+import com.data.db_instagram.services.impl.NotificationServiceImpl;
+import com.data.db_instagram.utils.NotificationPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationServiceTest {
+
+    @Mock
+    private NotificationsRepository notificationsRepository;
+
+    @Mock
+    private UserInfoCache userInfoCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private NotificationServiceImpl notificationService;
+
+    private UUID ownerId;
+    private UUID postId;
+
+    @BeforeEach
+    void setUp() {
+        ownerId = UUID.randomUUID();
+        postId = UUID.randomUUID();
+    }
+
+    @Test
+    void addToGroup_NoGroup_CreatesRowWithSingleActor() {
+        // Arrange: dòng trống được insert-if-absent rồi mới được lock
+        UUID actorId = UUID.randomUUID();
+        List<Notifications> inserted = new ArrayList<>();
+        when(notificationsRepository.existsGroup(ownerId, "post_reaction", postId)).thenReturn(false);
+        doAnswer(invocation -> {
+            Notifications empty = group(0, null);
+            empty.setType(invocation.getArgument(1));
+            empty.setObject_type(invocation.getArgument(2));
+            empty.setGroup_object_id(invocation.getArgument(3));
+            inserted.add(empty);
+            return null;
+        }).when(notificationsRepository).insertGroupIfAbsent(eq(ownerId), eq("post_reaction"), any(), eq(postId), any());
+        when(notificationsRepository.findGroupForUpdate(ownerId, "post_reaction", postId)).thenAnswer(invocation -> inserted.stream().findFirst());
+        when(notificationsRepository.save(any(Notifications.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userInfoCache.getAll(anyCollection())).thenReturn(Map.of());
+
+        // Act
+        notificationService.addToGroup(ownerId, actorId, "post_reaction", NotificationPayload.postReaction(postId), true);
+
+        // Assert
+        Notifications saved = captureSaved();
+        assertEquals(NotificationPayload.OBJECT_POST, saved.getObject_type());
+        assertEquals(postId, saved.getObject_id());
+        assertEquals(postId, saved.getGroup_object_id());
+        assertEquals("{\"postId\":\"" + postId + "\"}", saved.getPayload());
+        assertEquals(1, saved.getActor_count());
+        assertEquals(actorId.toString(), saved.getRecent_actor_ids());
+        assertEquals(actorId, saved.getActor_id());
+        assertFalse(saved.getIs_read());
+        verify(eventPublisher).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void addToGroup_ConcurrentFirstInsert_UpdatesRowCreatedByOtherRequest() {
+        // Arrange: request khác insert dòng gộp giữa lúc kiểm tra và lúc insert, insert-if-absent của request này bỏ qua
+        UUID a1 = UUID.randomUUID();
+        UUID actorId = UUID.randomUUID();
+        when(notificationsRepository.existsGroup(ownerId, "post_reaction", postId)).thenReturn(false);
+        when(notificationsRepository.findGroupForUpdate(ownerId, "post_reaction", postId)).thenReturn(Optional.of(group(1, a1.toString())));
+        when(notificationsRepository.save(any(Notifications.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userInfoCache.getAll(anyCollection())).thenReturn(Map.of());
+
+        // Act
+        notificationService.addToGroup(ownerId, actorId, "post_reaction", NotificationPayload.postReaction(postId), true);
+
+        // Assert
+        Notifications saved = captureSaved();
+        assertEquals(2, saved.getActor_count());
+        assertEquals(actorId + "," + a1, saved.getRecent_actor_ids());
+        verify(notificationsRepository).insertGroupIfAbsent(eq(ownerId), eq("post_reaction"), eq(NotificationPayload.OBJECT_POST), eq(postId), any());
+        verify(notificationsRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void addToGroup_ExistingGroup_IncrementsAndKeepsNewestActors() {
+        // Arrange
+        UUID a1 = UUID.randomUUID();
+        UUID a2 = UUID.randomUUID();
+        UUID a3 = UUID.randomUUID();
+        UUID newcomer = UUID.randomUUID();
+        Notifications group = group(5, a1 + "," + a2 + "," + a3);
+        group.setIs_read(true);
+        when(notificationsRepository.existsGroup(ownerId, "post_reaction", postId)).thenReturn(true);
+        when(notificationsRepository.findGroupForUpdate(ownerId, "post_reaction", postId)).thenReturn(Optional.of(group));
+        when(notificationsRepository.save(any(Notifications.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userInfoCache.getAll(anyCollection())).thenReturn(Map.of());
+
+        // Act
+        notificationService.addToGroup(ownerId, newcomer, "post_reaction", NotificationPayload.postReaction(postId), true);
+
+        // Assert
+        Notifications saved = captureSaved();
+        assertEquals(6, saved.getActor_count());
+        assertEquals(newcomer + "," + a1 + "," + a2, saved.getRecent_actor_ids());
+        assertFalse(saved.getIs_read());
+    }
+
+    @Test
+    void addToGroup_RecentActorAgain_MovesToFrontWithoutCounting() {
+        // Arrange: cùng user comment thêm lần nữa
+        UUID a1 = UUID.randomUUID();
+        UUID a2 = UUID.randomUUID();
+        when(notificationsRepository.existsGroup(ownerId, "comment", postId)).thenReturn(true);
+        when(notificationsRepository.findGroupForUpdate(ownerId, "comment", postId)).thenReturn(Optional.of(group(2, a1 + "," + a2)));
+        when(notificationsRepository.save(any(Notifications.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userInfoCache.getAll(anyCollection())).thenReturn(Map.of());
+
+        // Act
+        notificationService.addToGroup(ownerId, a2, "comment", NotificationPayload.comment(postId, UUID.randomUUID()), false);
+
+        // Assert
+        Notifications saved = captureSaved();
+        assertEquals(2, saved.getActor_count());
+        assertEquals(a2 + "," + a1, saved.getRecent_actor_ids());
+    }
+
+    @Test
+    void addToGroup_ActorOutsideRecentList_NotCountedAgain() {
+        // Arrange: a4 đã comment trước đó nhưng bị đẩy khỏi 3 recent actors
+        UUID a1 = UUID.randomUUID();
+        UUID a2 = UUID.randomUUID();
+        UUID a3 = UUID.randomUUID();
+        UUID a4 = UUID.randomUUID();
+        when(notificationsRepository.existsGroup(ownerId, "comment", postId)).thenReturn(true);
+        when(notificationsRepository.findGroupForUpdate(ownerId, "comment", postId)).thenReturn(Optional.of(group(4, a1 + "," + a2 + "," + a3)));
+        when(notificationsRepository.save(any(Notifications.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userInfoCache.getAll(anyCollection())).thenReturn(Map.of());
+
+        // Act
+        notificationService.addToGroup(ownerId, a4, "comment", NotificationPayload.comment(postId, UUID.randomUUID()), false);
+
+        // Assert
+        Notifications saved = captureSaved();
+        assertEquals(4, saved.getActor_count());
+        assertEquals(a4 + "," + a1 + "," + a2, saved.getRecent_actor_ids());
+    }
+
+    @Test
+    void createNotification_StoresTypedObjectAndEscapedJson() {
+        // Arrange
+        UUID actorId = UUID.randomUUID();
+        UUID requestId = UUID.randomUUID();
+        when(notificationsRepository.save(any(Notifications.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userInfoCache.getAll(anyCollection())).thenReturn(Map.of());
+
+        // Act
+        notificationService.createNotification(ownerId, actorId, "friend_request",
+                NotificationPayload.friendRequest(requestId, "say \"hi\""));
+
+        // Assert
+        Notifications saved = captureSaved();
+        assertEquals(NotificationPayload.OBJECT_FRIEND_REQUEST, saved.getObject_type());
+        assertEquals(requestId, saved.getObject_id());
+        assertEquals("{\"requestId\":\"" + requestId + "\",\"message\":\"say \\\"hi\\\"\"}", saved.getPayload());
+    }
+
+    @Test
+    void removeFromGroup_LastActor_DeletesRow() {
+        // Arrange
+        UUID actorId = UUID.randomUUID();
+        Notifications group = group(1, actorId.toString());
+        when(notificationsRepository.findGroupForUpdate(ownerId, "post_reaction", postId)).thenReturn(Optional.of(group));
+
+        // Act
+        notificationService.removeFromGroup(ownerId, actorId, "post_reaction", postId);
+
+        // Assert
+        verify(notificationsRepository).delete(group);
+        verify(notificationsRepository, never()).save(any());
+    }
+
+    @Test
+    void removeFromGroup_LatestActor_DecrementsAndPromotesNextActor() {
+        // Arrange
+        UUID a1 = UUID.randomUUID();
+        UUID a2 = UUID.randomUUID();
+        Notifications group = group(3, a1 + "," + a2);
+        group.setActor_id(a1);
+        when(notificationsRepository.findGroupForUpdate(ownerId, "post_reaction", postId)).thenReturn(Optional.of(group));
+
+        // Act
+        notificationService.removeFromGroup(ownerId, a1, "post_reaction", postId);
+
+        // Assert
+        Notifications saved = captureSaved();
+        assertEquals(2, saved.getActor_count());
+        assertEquals(a2.toString(), saved.getRecent_actor_ids());
+        assertEquals(a2, saved.getActor_id());
+    }
+
+    private Notifications group(int actorCount, String recentActorIds) {
+        Notifications group = new Notifications();
+        group.setId(UUID.randomUUID());
+        group.setUser_id(ownerId);
+        group.setObject_id(postId);
+        group.setActor_count(actorCount);
+        group.setRecent_actor_ids(recentActorIds);
+        return group;
+    }
+
+    private Notifications captureSaved() {
+        ArgumentCaptor<Notifications> captor = ArgumentCaptor.forClass(Notifications.class);
+        verify(notificationsRepository).save(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,87 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.exception.HttpTooManyRequests;
+import com.data.db_instagram.services.impl.PasswordHashingServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PasswordHashingServiceTest {
+
+    private PasswordHashingServiceImpl hashingService;
+
+    @AfterEach
+    void tearDown() {
+        hashingService.shutdown();
+    }
+
+    @Test
+    void encode_QueueFull_ThrowsTooManyRequestsWithRetryAfter() throws Exception {
+        // Arrange: 1 thread + hàng đợi 1, encoder bị chặn cho tới khi test nhả
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.encode(anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "hash";
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        hashingService = new PasswordHashingServiceImpl(slowEncoder, meterRegistry, 1, 1, 5000, 3);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hashingService.encode("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hashingService.encode("b"));
+        waitForQueued(meterRegistry);
+
+        // Act
+        HttpTooManyRequests rejected = assertThrows(HttpTooManyRequests.class, () -> hashingService.encode("c"));
+        release.countDown();
+
+        // Assert
+        assertEquals(3, rejected.getRetryAfterSeconds());
+        assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.get("auth.password.hash.rejected").counter().count());
+    }
+
+    @Test
+    void needsRehash_LegacyOrWeakerHash_ReturnsTrue() {
+        // Arrange: cấu hình giống SecurityConfig với cost 12
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", new BCryptPasswordEncoder(12)));
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        hashingService = new PasswordHashingServiceImpl(encoder, new SimpleMeterRegistry(), 2, 8, 5000, 1);
+        String legacy = new BCryptPasswordEncoder(4).encode("secret");
+        String weaker = "{bcrypt}" + new BCryptPasswordEncoder(4).encode("secret");
+
+        // Act
+        String current = hashingService.encode("secret");
+
+        // Assert
+        assertTrue(hashingService.matches("secret", legacy));
+        assertTrue(hashingService.needsRehash(legacy));
+        assertTrue(hashingService.needsRehash(weaker));
+        assertTrue(current.startsWith("{bcrypt}$2a$12$"));
+        assertFalse(hashingService.needsRehash(current));
+        assertTrue(hashingService.matches("secret", current));
+    }
+
+    private void waitForQueued(SimpleMeterRegistry meterRegistry) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("auth.password.hash.queue").gauge().value() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
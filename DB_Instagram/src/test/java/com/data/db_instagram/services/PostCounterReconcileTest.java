@@ -0,0 +1,120 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Posts;
+import com.data.db_instagram.repository.PostsRepository;
+import com.data.db_instagram.services.impl.PostCounterServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:postcounters;DB_CLOSE_DELAY=-1")
+class PostCounterReconcileTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostsRepository postsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void reconcileAll_DriftedCounters_RepairsAcrossBatches() {
+        // Arrange: 3 posts, batch size 2 để đi qua nhiều batch
+        UUID userId = insertUser("counter-user@test.local");
+        UUID otherId = insertUser("counter-other@test.local");
+        UUID drifted = insertPost(userId, 7, 0);
+        UUID correct = insertPost(userId, 1, 1);
+        UUID overCounted = insertPost(userId, 0, 5);
+
+        insertReaction(drifted, userId);
+        insertReaction(drifted, otherId);
+        insertReaction(correct, userId);
+        insertComment(correct, userId, false);
+        insertComment(overCounted, userId, false);
+        insertComment(overCounted, userId, true);
+
+        PostCounterServiceImpl counterService = new PostCounterServiceImpl(postsRepository);
+        ReflectionTestUtils.setField(counterService, "batchSize", 2);
+
+        // Act
+        int repaired = counterService.reconcileAll();
+
+        // Assert
+        assertEquals(2, repaired);
+        assertCounters(drifted, 2, 0);
+        assertCounters(correct, 1, 1);
+        assertCounters(overCounted, 0, 1);
+        assertEquals(0, counterService.reconcileAll());
+    }
+
+    @Test
+    void savePost_AfterConcurrentIncrement_KeepsCounters() {
+        // Arrange: post được load (như updatePost/deletePost), rồi request khác like + comment và commit
+        UUID userId = insertUser("counter-editor@test.local");
+        UUID postId = insertPost(userId, 3, 1);
+        Posts loaded = postsRepository.findById(postId).orElseThrow();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            postsRepository.incrementReactionCount(postId, 1);
+            postsRepository.incrementCommentCount(postId, 1);
+        });
+
+        // Act: sửa post với entity cũ
+        loaded.setContent("edited");
+        postsRepository.save(loaded);
+
+        // Assert
+        assertCounters(postId, 4, 2);
+        assertEquals("edited", postsRepository.findById(postId).orElseThrow().getContent());
+        // Counter cố ý lệch so với bảng reactions/comments: xóa để không ảnh hưởng test reconcile dùng chung DB
+        jdbcTemplate.update("DELETE FROM posts WHERE id = ?", postId);
+    }
+
+    private void assertCounters(UUID postId, long reactions, long comments) {
+        Posts post = postsRepository.findById(postId).orElseThrow();
+        assertEquals(reactions, post.getReactionCount());
+        assertEquals(comments, post.getCommentCount());
+    }
+
+    private UUID insertUser(String email) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, is_active, created_at) VALUES (?, ?, 'x', TRUE, CURRENT_TIMESTAMP)",
+                id, email);
+        return id;
+    }
+
+    private UUID insertPost(UUID userId, long reactionCount, long commentCount) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO posts (id, user_id, visibility, created_at, is_deleted, reaction_count, comment_count) " +
+                "VALUES (?, ?, 'public', CURRENT_TIMESTAMP, FALSE, ?, ?)", id, userId, reactionCount, commentCount);
+        return id;
+    }
+
+    private void insertReaction(UUID postId, UUID userId) {
+        jdbcTemplate.update("INSERT INTO post_reactions (id, post_id, user_id, emoji, created_at) VALUES (?, ?, ?, 'x', CURRENT_TIMESTAMP)",
+                UUID.randomUUID(), postId, userId);
+    }
+
+    private void insertComment(UUID postId, UUID userId, boolean deleted) {
+        jdbcTemplate.update("INSERT INTO comments (id, post_id, user_id, content, created_at, is_deleted) VALUES (?, ?, ?, 'c', CURRENT_TIMESTAMP, ?)",
+                UUID.randomUUID(), postId, userId, deleted);
+    }
+}
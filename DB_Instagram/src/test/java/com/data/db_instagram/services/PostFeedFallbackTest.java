@@ -0,0 +1,147 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.dto.response.PostResponse;
+import com.data.db_instagram.mapper.UserMapper;
+import com.data.db_instagram.repository.*;
+import com.data.db_instagram.services.impl.PostServiceImpl;
+import com.data.db_instagram.services.impl.UserInfoCacheImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fallback feed (timeline trống) trên 1M posts: chỉ được đọc page*size + size dòng mỗi nguồn,
+ * không load toàn bộ bảng posts vào heap.
+ * Seed 1M dòng mất hơn 1 phút nên không chạy trong `gradle test`: chạy bằng `gradle largeDatasetTest`.
+ */
+@Tag("large-dataset")
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Commit từng batch khi seed; phần heap đo chỉ là phần thread test cấp phát khi đọc feed
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:feed-fallback;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.com.data.db_instagram=INFO"
+})
+class PostFeedFallbackTest {
+    private static final int SEEDED_POSTS = 1_000_000;
+    private static final int SEED_BATCH = 100_000;
+    private static final long BASE_MILLIS = Timestamp.valueOf("2024-01-01 00:00:00").getTime();
+    // Load toàn bộ 1M posts (cách cũ) cần hàng trăm MB; fallback có giới hạn chỉ cần vài MB
+    private static final long MAX_ALLOCATED_BYTES = 64L * 1024 * 1024;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PostsRepository postsRepository;
+
+    @Autowired
+    private PostMediaRepository postMediaRepository;
+
+    @Autowired
+    private PostReactionsRepository postReactionsRepository;
+
+    @Autowired
+    private IUserRepository userRepository;
+
+    @Autowired
+    private ProfilesRepository profilesRepository;
+
+    private PostServiceImpl postService;
+    private UUID readerId;
+
+    @BeforeEach
+    void setUp() {
+        TimelineService timelineService = mock(TimelineService.class);
+        when(timelineService.getTimeline(any(), anyInt(), anyInt())).thenReturn(List.of());
+        postService = new PostServiceImpl(postsRepository, postMediaRepository, postReactionsRepository,
+                new UserInfoCacheImpl(userRepository, profilesRepository, new UserMapper(), new SimpleMeterRegistry(), 1000, 60),
+                mock(SavedPostsService.class), timelineService);
+
+        readerId = UUID.randomUUID();
+        UUID authorId = UUID.randomUUID();
+        insertUser(readerId, "reader@test.local");
+        insertUser(authorId, "author@test.local");
+
+        // Index giống migration 012 để H2 đọc theo range thay vì sort toàn bảng
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_posts_user_deleted_created_id ON posts(user_id, is_deleted, created_at, id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_posts_visibility_deleted_created_id ON posts(visibility, is_deleted, created_at, id)");
+
+        // 1M posts public, cách nhau 1 giây; mỗi post thứ 10 là 'friends'
+        for (int from = 1; from <= SEEDED_POSTS; from += SEED_BATCH) {
+            jdbcTemplate.update("INSERT INTO posts (id, user_id, visibility, created_at, is_deleted) " +
+                    "SELECT RANDOM_UUID(), ?, CASE WHEN MOD(X, 10) = 0 THEN 'friends' ELSE 'public' END, " +
+                    "DATEADD(SECOND, X, CAST(? AS TIMESTAMP)), FALSE FROM SYSTEM_RANGE(?, ?)",
+                    authorId, new Timestamp(BASE_MILLIS), from, from + SEED_BATCH - 1);
+        }
+
+        // Posts của reader (visibility 'private') xen giữa các posts mới nhất
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO posts (id, user_id, visibility, created_at, is_deleted) VALUES (?, ?, 'private', ?, FALSE)",
+                    UUID.randomUUID(), readerId, new Timestamp(BASE_MILLIS + (SEEDED_POSTS - i * 7L) * 1000 + 500));
+        }
+    }
+
+    @Test
+    void getFriendsPosts_EmptyTimeline_ReadsBoundedRowsAndHeap() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+
+        // Act
+        List<PostResponse> firstPage = postService.getFriendsPosts(readerId, 0, 10);
+        List<PostResponse> thirdPage = postService.getFriendsPosts(readerId, 2, 10);
+
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        // Assert: thứ tự newest-first, posts của reader được merge vào đúng vị trí
+        assertEquals(10, firstPage.size());
+        assertEquals(readerId, firstPage.get(0).getUser().getId());
+        assertEquals(readerId, firstPage.get(7).getUser().getId());
+        for (int i = 1; i < firstPage.size(); i++) {
+            assertFalse(firstPage.get(i).getCreatedAt().after(firstPage.get(i - 1).getCreatedAt()));
+        }
+        assertEquals(10, thirdPage.size());
+        assertTrue(thirdPage.get(0).getCreatedAt().before(firstPage.get(9).getCreatedAt()));
+
+        // Mỗi nguồn đọc tối đa page*size + size dòng: (10 + 30) * 2 nguồn
+        assertTrue(statistics.getEntityLoadCount() <= 80 + 10,
+                "Loaded " + statistics.getEntityLoadCount() + " entities");
+        assertTrue(allocated < MAX_ALLOCATED_BYTES, "Allocated " + allocated + " bytes");
+    }
+
+    private void insertUser(UUID id, String email) {
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, is_active, created_at) VALUES (?, ?, 'x', TRUE, CURRENT_TIMESTAMP)",
+                id, email);
+    }
+}
@@ -0,0 +1,69 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.dto.response.PostResponse;
+import com.data.db_instagram.model.Posts;
+import com.data.db_instagram.repository.PostMediaRepository;
+import com.data.db_instagram.repository.PostReactionsRepository;
+import com.data.db_instagram.repository.PostsRepository;
+import com.data.db_instagram.services.impl.PostServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostServiceTest {
+
+    @Mock
+    private PostsRepository postsRepository;
+
+    @Mock
+    private PostMediaRepository postMediaRepository;
+
+    @Mock
+    private PostReactionsRepository postReactionsRepository;
+
+    @Mock
+    private UserInfoCache userInfoCache;
+
+    @Mock
+    private SavedPostsService savedPostsService;
+
+    @Mock
+    private TimelineService timelineService;
+
+    @InjectMocks
+    private PostServiceImpl postService;
+
+    private UUID readerId;
+
+    @BeforeEach
+    void setUp() {
+        readerId = UUID.randomUUID();
+    }
+
+    @Test
+    void getFriendsPosts_PastEndOfNonEmptyTimeline_ReturnsEmptyWithoutFallback() {
+        // Arrange: timeline có entry nhưng trang 2 (size 10) đã đi quá trang cuối
+        Posts post = new Posts();
+        post.setId(UUID.randomUUID());
+        post.setUserId(UUID.randomUUID());
+        when(timelineService.getTimeline(readerId, 2, 10)).thenReturn(List.of());
+        when(timelineService.getTimeline(readerId, 0, 1)).thenReturn(List.of(post));
+
+        // Act
+        List<PostResponse> posts = postService.getFriendsPosts(readerId, 2, 10);
+
+        // Assert: không đọc posts của user / posts public
+        assertTrue(posts.isEmpty());
+        verifyNoInteractions(postsRepository);
+    }
+}
@@ -0,0 +1,82 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Post_reactions;
+import com.data.db_instagram.model.Posts;
+import com.data.db_instagram.repository.PostReactionsRepository;
+import com.data.db_instagram.repository.PostsRepository;
+import com.data.db_instagram.services.impl.ReactionServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactionServiceTest {
+
+    @Mock
+    private PostReactionsRepository postReactionsRepository;
+
+    @Mock
+    private PostsRepository postsRepository;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private PostCounterService postCounterService;
+
+    @InjectMocks
+    private ReactionServiceImpl reactionService;
+
+    private UUID userId;
+    private UUID postId;
+
+    @BeforeEach
+    void setUp() {
+        userId = UUID.randomUUID();
+        postId = UUID.randomUUID();
+
+        Posts post = new Posts();
+        post.setId(postId);
+        post.setUserId(userId);
+        when(postsRepository.findByIdAndIsDeletedFalse(postId)).thenReturn(Optional.of(post));
+    }
+
+    @Test
+    void toggleReaction_NotReacted_IncrementsReactionCount() {
+        // Arrange
+        when(postReactionsRepository.findAllByPostIdAndUserId(postId, userId)).thenReturn(List.of());
+        when(postReactionsRepository.deleteByPostIdAndUserId(postId, userId)).thenReturn(0L);
+
+        // Act
+        reactionService.toggleReaction(userId, postId);
+
+        // Assert
+        verify(postReactionsRepository).save(any(Post_reactions.class));
+        verify(postCounterService).addReactions(postId, 1);
+    }
+
+    @Test
+    void toggleReaction_AlreadyReactedWithDuplicates_DecrementsByRemovedRows() {
+        // Arrange
+        when(postReactionsRepository.findAllByPostIdAndUserId(postId, userId))
+                .thenReturn(List.of(new Post_reactions(), new Post_reactions()));
+        when(postReactionsRepository.deleteByPostIdAndUserId(postId, userId)).thenReturn(2L);
+
+        // Act
+        reactionService.toggleReaction(userId, postId);
+
+        // Assert
+        verify(postReactionsRepository, never()).save(any());
+        verify(postCounterService).addReactions(postId, -2);
+    }
+}
@@ -0,0 +1,118 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.dto.request.RealtimeFrameRequest;
+import com.data.db_instagram.event.RealtimeEvent;
+import com.data.db_instagram.repository.FriendRepository;
+import com.data.db_instagram.services.impl.RealtimeInboundServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RealtimeInboundServiceTest {
+
+    private MessageService messageService;
+    private FriendRepository friendRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private RealtimeInboundServiceImpl inboundService;
+    private UUID alice;
+    private UUID bob;
+
+    @BeforeEach
+    void setUp() {
+        messageService = mock(MessageService.class);
+        friendRepository = mock(FriendRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // Refresh dài để trạng thái lặp lại trong test luôn bị coalesce
+        inboundService = new RealtimeInboundServiceImpl(messageService, friendRepository, eventPublisher, meterRegistry,
+                5, 60_000, 60_000);
+        alice = UUID.randomUUID();
+        bob = UUID.randomUUID();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void handle_RepeatedTyping_ForwardsOnlyStateChanges() {
+        // Act
+        boolean first = inboundService.handle(alice, typing(bob, true));
+        boolean repeated = inboundService.handle(alice, typing(bob, true));
+        boolean stopped = inboundService.handle(alice, typing(bob, false));
+
+        // Assert
+        assertTrue(first);
+        assertFalse(repeated);
+        assertTrue(stopped);
+        ArgumentCaptor<RealtimeEvent> events = ArgumentCaptor.forClass(RealtimeEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        RealtimeEvent stopEvent = events.getAllValues().get(1);
+        assertEquals(List.of(bob), stopEvent.getRecipients());
+        Map<String, Object> payload = (Map<String, Object>) stopEvent.getPayload();
+        assertEquals("typing", payload.get("type"));
+        assertEquals(alice, payload.get("userId"));
+        assertEquals(false, payload.get("isTyping"));
+        assertEquals(1.0, meterRegistry.get("realtime.inbound.frames").tag("result", "coalesced").counter().count());
+    }
+
+    @Test
+    void handle_PresenceChange_FansOutToFriendsOnce() {
+        // Arrange
+        UUID carol = UUID.randomUUID();
+        when(friendRepository.findFriendIds(alice)).thenReturn(List.of(bob, carol));
+
+        // Act
+        inboundService.handle(alice, presence("online"));
+        inboundService.handle(alice, presence("online"));
+        inboundService.handle(alice, presence("bogus"));
+
+        // Assert
+        ArgumentCaptor<RealtimeEvent> event = ArgumentCaptor.forClass(RealtimeEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(List.of(bob, carol), event.getValue().getRecipients());
+        verify(friendRepository, times(1)).findFriendIds(alice);
+    }
+
+    @Test
+    void handle_ReadFrame_MarksConversationReadWithoutHttp() {
+        // Act
+        boolean handled = inboundService.handle(alice, new RealtimeFrameRequest("read", bob, null, null));
+
+        // Assert
+        assertTrue(handled);
+        verify(messageService).markAllAsRead(alice, bob);
+    }
+
+    @Test
+    void handle_OverRateLimit_DropsExtraFrames() {
+        // Act: giới hạn 5 frame/giây
+        int handled = 0;
+        for (int i = 0; i < 8; i++) {
+            if (inboundService.handle(alice, new RealtimeFrameRequest("read", bob, null, null))) {
+                handled++;
+            }
+        }
+
+        // Assert
+        assertEquals(5, handled);
+        verify(messageService, times(5)).markAllAsRead(any(), any());
+        assertEquals(3.0, meterRegistry.get("realtime.inbound.frames").tag("result", "rate_limited").counter().count());
+    }
+
+    private RealtimeFrameRequest typing(UUID peerId, boolean isTyping) {
+        return new RealtimeFrameRequest("typing", peerId, isTyping, null);
+    }
+
+    private RealtimeFrameRequest presence(String status) {
+        return new RealtimeFrameRequest("presence", null, null, status);
+    }
+}
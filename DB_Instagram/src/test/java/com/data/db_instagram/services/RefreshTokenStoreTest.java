@@ -0,0 +1,152 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Auth_tokens;
+import com.data.db_instagram.repository.AuthTokensRepository;
+import com.data.db_instagram.services.impl.RefreshTokenStoreImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({RefreshTokenStoreImpl.class, RefreshTokenStoreTest.Metrics.class})
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:refreshtokens;DB_CLOSE_DELAY=-1",
+        "auth.refresh-tokens.max-per-user=2",
+        "auth.refresh-tokens.purge-batch-size=2"
+})
+class RefreshTokenStoreTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private AuthTokensRepository authTokensRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void save_StoresHashOnlyAndFindsByRawToken() {
+        // Arrange
+        UUID userId = insertUser("hash-user@test.local");
+
+        // Act
+        refreshTokenStore.save(userId, "refresh.jwt.value", inHours(1), "iphone");
+
+        // Assert
+        Auth_tokens stored = refreshTokenStore.find("refresh.jwt.value").orElseThrow();
+        assertNull(stored.getToken());
+        assertEquals(64, stored.getToken_hash().length());
+        assertEquals("iphone", stored.getDevice_info());
+        assertTrue(refreshTokenStore.find("other.jwt.value").isEmpty());
+    }
+
+    @Test
+    void save_OverActiveLimit_RevokesOldestTokens() throws Exception {
+        // Arrange
+        UUID userId = insertUser("cap-user@test.local");
+
+        // Act: giới hạn 2 token active
+        for (int i = 1; i <= 3; i++) {
+            refreshTokenStore.save(userId, "device-" + i, inHours(1), null);
+            Thread.sleep(5);
+        }
+
+        // Assert
+        assertTrue(refreshTokenStore.find("device-1").orElseThrow().getRevoked());
+        assertFalse(refreshTokenStore.find("device-2").orElseThrow().getRevoked());
+        assertFalse(refreshTokenStore.find("device-3").orElseThrow().getRevoked());
+        assertEquals(1.0, meterRegistry.get("auth.tokens.capped").counter().count());
+    }
+
+    @Test
+    void purge_ExpiredAndOldRevoked_DeletesInBatches() {
+        // Arrange: 3 token hết hạn (batch size 2 -> 2 batch), 1 revoke lâu, 1 revoke mới, 1 còn hạn
+        UUID userId = insertUser("purge-user@test.local");
+        for (int i = 0; i < 3; i++) {
+            insertToken(userId, inHours(-1), new Date(), null);
+        }
+        insertToken(userId, inHours(24), inHours(-48), inHours(-48));
+        UUID recentlyRevoked = insertToken(userId, inHours(24), new Date(), new Date());
+        UUID active = insertToken(userId, inHours(24), new Date(), null);
+
+        // Act
+        int deleted = refreshTokenStore.purge();
+
+        // Assert
+        assertEquals(4, deleted);
+        assertTrue(authTokensRepository.existsById(recentlyRevoked));
+        assertTrue(authTokensRepository.existsById(active));
+        assertEquals(0, refreshTokenStore.purge());
+        assertEquals(4.0, meterRegistry.get("auth.tokens.purged").counter().count());
+        assertEquals((double) authTokensRepository.count(), meterRegistry.get("auth.tokens.rows").gauge().value());
+    }
+
+    @Test
+    void purge_OldTokenRevokedRecently_KeptForRetention() {
+        // Arrange: token tạo 2 ngày trước (vẫn còn hạn) vừa bị revoke
+        UUID userId = insertUser("late-revoke-user@test.local");
+        UUID tokenId = insertToken(userId, inHours(24), inHours(-48), null);
+        refreshTokenStore.revokeAll(userId);
+
+        // Act
+        int deleted = refreshTokenStore.purge();
+
+        // Assert: thời gian giữ lại tính từ lúc revoke, không phải lúc tạo
+        assertEquals(0, deleted);
+        Auth_tokens revoked = authTokensRepository.findById(tokenId).orElseThrow();
+        assertTrue(revoked.getRevoked());
+        assertNotNull(revoked.getRevoked_at());
+    }
+
+    private Date inHours(long hours) {
+        return new Date(System.currentTimeMillis() + hours * 3_600_000);
+    }
+
+    private UUID insertUser(String email) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (id, email, password_hash, is_active, created_at) VALUES (?, ?, 'x', TRUE, CURRENT_TIMESTAMP)",
+                id, email);
+        return id;
+    }
+
+    // revokedAt null = token còn active
+    private UUID insertToken(UUID userId, Date expiresAt, Date createdAt, Date revokedAt) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO auth_tokens (id, user_id, token_hash, expires_at, revoked, revoked_at, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                id, userId, id.toString().replace("-", ""), new Timestamp(expiresAt.getTime()), revokedAt != null,
+                revokedAt != null ? new Timestamp(revokedAt.getTime()) : null, new Timestamp(createdAt.getTime()));
+        return id;
+    }
+}
@@ -0,0 +1,225 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.handler.MessageWebSocketHandler;
+import com.data.db_instagram.handler.SessionOutbox;
+import com.data.db_instagram.services.impl.InMemoryPresenceDirectory;
+import com.data.db_instagram.services.impl.InMemoryRealtimeEventLog;
+import com.data.db_instagram.services.impl.TcpRealtimeBroker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 2 node nhúng trong cùng JVM (mỗi node 1 TcpRealtimeBroker + 1 MessageWebSocketHandler),
+ * dùng chung presence: message gửi ở node A phải tới socket đang nối vào node B.
+ */
+class TcpRealtimeBrokerTest {
+    private static final String SECRET = "test-secret";
+
+    private InMemoryPresenceDirectory presenceDirectory;
+    private TcpRealtimeBroker brokerA;
+    private TcpRealtimeBroker brokerB;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MessageWebSocketHandler nodeA;
+    private MessageWebSocketHandler nodeB;
+    private final ExecutorService sendExecutor = Executors.newFixedThreadPool(4);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        presenceDirectory = new InMemoryPresenceDirectory();
+        brokerA = new TcpRealtimeBroker(presenceDirectory, "127.0.0.1", "127.0.0.1", 0, SECRET, 16);
+        brokerB = new TcpRealtimeBroker(presenceDirectory, "127.0.0.1", "127.0.0.1", 0, SECRET, 16);
+        nodeA = handler(brokerA);
+        nodeB = handler(brokerB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        brokerA.close();
+        brokerB.close();
+        sendExecutor.shutdownNow();
+    }
+
+    @Test
+    void sendMessageToUser_SocketOnOtherNode_DeliveredAcrossTcp() throws Exception {
+        // Arrange
+        WebSocketSession socketOnB = session("b-1", "user-1");
+        connect(nodeB, socketOnB);
+
+        // Act
+        nodeA.sendMessageToUser("user-1", Map.of("type", "new_message", "text", "xin chào"));
+
+        // Assert
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(socketOnB, timeout(2000)).sendMessage(captor.capture());
+        assertTrue(captor.getValue().getPayload().contains("xin chào"));
+        assertEquals(Set.of(brokerB.getNodeId()), presenceDirectory.nodesOf("user-1"));
+    }
+
+    @Test
+    void sendMessageToUser_DevicesOnBothNodes_EachDeviceGetsOneCopy() throws Exception {
+        // Arrange
+        WebSocketSession socketOnA = session("a-1", "user-1");
+        WebSocketSession socketOnB = session("b-1", "user-1");
+        connect(nodeA, socketOnA);
+        connect(nodeB, socketOnB);
+
+        // Act
+        nodeB.sendMessageToUser("user-1", Map.of("n", 1));
+        nodeB.sendMessageToUser("user-1", Map.of("n", 2));
+
+        // Assert
+        verify(socketOnA, timeout(2000).times(2)).sendMessage(any(TextMessage.class));
+        verify(socketOnB, timeout(2000).times(2)).sendMessage(any(TextMessage.class));
+        Thread.sleep(100);
+        verify(socketOnA, times(2)).sendMessage(any(TextMessage.class));
+        verify(socketOnB, times(2)).sendMessage(any(TextMessage.class));
+    }
+
+    @Test
+    void afterConnectionClosed_EventsPublishedOnOtherNode_ReplayedOnReconnect() throws Exception {
+        // Arrange: user-1 offline khỏi node B, node A gửi 2 sự kiện trong lúc đó
+        WebSocketSession before = session("b-1", "user-1");
+        nodeB.afterConnectionEstablished(before);
+        ArgumentCaptor<TextMessage> sync = ArgumentCaptor.forClass(TextMessage.class);
+        verify(before, timeout(2000)).sendMessage(sync.capture());
+        long lastSeq = objectMapper.readTree(sync.getValue().getPayload()).get("latestSeq").asLong();
+        nodeB.afterConnectionClosed(before, CloseStatus.NORMAL);
+        nodeA.sendMessageToUser("user-1", Map.of("type", "new_message", "n", 1));
+        nodeA.sendMessageToUser("user-1", Map.of("type", "new_message", "n", 2));
+        Thread.sleep(200);
+
+        // Act: kết nối lại vào node B
+        WebSocketSession resumed = session("b-2", "user-1");
+        resumed.getAttributes().put("lastSeq", lastSeq);
+        nodeB.afterConnectionEstablished(resumed);
+
+        // Assert: seq do node B gắn nên khớp lastSeq, replay đủ 2 sự kiện rồi sync
+        assertEquals(Set.of(brokerB.getNodeId()), presenceDirectory.nodesOf("user-1"));
+        ArgumentCaptor<TextMessage> replayed = ArgumentCaptor.forClass(TextMessage.class);
+        verify(resumed, timeout(2000).times(3)).sendMessage(replayed.capture());
+        List<TextMessage> frames = replayed.getAllValues();
+        assertEquals(lastSeq + 1, objectMapper.readTree(frames.get(0).getPayload()).get("seq").asLong());
+        assertEquals(2, objectMapper.readTree(frames.get(1).getPayload()).get("n").asInt());
+        assertEquals("sync", objectMapper.readTree(frames.get(2).getPayload()).get("type").asText());
+    }
+
+    @Test
+    void afterConnectionClosed_LogEvicted_RemovesPresence() throws Exception {
+        // Arrange: event log của node B không giữ được log nào (max-bytes = 1)
+        nodeB = handler(brokerB, 1);
+        WebSocketSession socketOnB = session("b-1", "user-1");
+        connect(nodeB, socketOnB);
+
+        // Act
+        nodeB.afterConnectionClosed(socketOnB, CloseStatus.NORMAL);
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!presenceDirectory.nodesOf("user-1").isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(presenceDirectory.nodesOf("user-1").isEmpty());
+    }
+
+    @Test
+    void readLoop_PeerWithoutSecret_FramesNotDelivered() throws Exception {
+        // Arrange
+        WebSocketSession socketOnB = session("b-1", "user-1");
+        connect(nodeB, socketOnB);
+        String nodeId = brokerB.getNodeId();
+        int port = Integer.parseInt(nodeId.substring(nodeId.lastIndexOf(':') + 1));
+
+        // Act: client lạ trả lời challenge bằng HMAC sai rồi gửi frame
+        try (Socket attacker = new Socket("127.0.0.1", port)) {
+            new DataInputStream(attacker.getInputStream()).readFully(new byte[32]);
+            DataOutputStream out = new DataOutputStream(attacker.getOutputStream());
+            out.write(new byte[32]);
+            out.writeUTF("user-1");
+            out.writeBoolean(false);
+            byte[] payload = "{\"type\":\"forged\"}".getBytes(StandardCharsets.UTF_8);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+        } catch (IOException e) {
+            // Node B có thể đóng kết nối ngay khi HMAC sai, trước khi client lạ ghi xong frame
+        }
+        Thread.sleep(200);
+
+        // Assert
+        verify(socketOnB, never()).sendMessage(any());
+    }
+
+    @Test
+    void publish_UnreachablePeer_DropsFramesDuringBackoff() throws Exception {
+        // Arrange: presence trỏ tới 1 cổng không còn ai nghe
+        int deadPort;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            deadPort = probe.getLocalPort();
+        }
+        presenceDirectory.register("user-1", "127.0.0.1:" + deadPort);
+        TextMessage frame = new TextMessage("{}");
+
+        // Act: frame đầu thử connect và thất bại, các frame sau bị bỏ ngay trong thời gian backoff
+        for (int i = 0; i < 5; i++) {
+            brokerA.publish("user-1", frame, true);
+        }
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 2000;
+        while (brokerA.getDroppedFrames() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(5, brokerA.getDroppedFrames());
+    }
+
+    // Kết nối và bỏ qua frame sync gửi ngay khi kết nối
+    private void connect(MessageWebSocketHandler node, WebSocketSession session) throws Exception {
+        node.afterConnectionEstablished(session);
+        verify(session, timeout(2000)).sendMessage(any(TextMessage.class));
+        clearInvocations(session);
+    }
+
+    private MessageWebSocketHandler handler(TcpRealtimeBroker broker) {
+        return handler(broker, 1024 * 1024);
+    }
+
+    private MessageWebSocketHandler handler(TcpRealtimeBroker broker, long eventLogMaxBytes) {
+        return new MessageWebSocketHandler(new SimpleMeterRegistry(), broker, objectMapper, mock(RealtimeInboundService.class),
+                new InMemoryRealtimeEventLog(200, eventLogMaxBytes, 60), sendExecutor, 64, 1024 * 1024, 10_000,
+                SessionOutbox.OverflowStrategy.CLOSE, 75_000);
+    }
+
+    private WebSocketSession session(String id, String userId) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("userId", userId);
+        lenient().when(session.getId()).thenReturn(id);
+        lenient().when(session.getAttributes()).thenReturn(attributes);
+        lenient().when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
@@ -0,0 +1,185 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Posts;
+import com.data.db_instagram.model.Timeline_entries;
+import com.data.db_instagram.repository.FriendRepository;
+import com.data.db_instagram.repository.IUserRepository;
+import com.data.db_instagram.repository.PostsRepository;
+import com.data.db_instagram.repository.TimelineEntriesRepository;
+import com.data.db_instagram.services.impl.TimelineServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TimelineServiceTest {
+
+    @Mock
+    private TimelineEntriesRepository timelineEntriesRepository;
+
+    @Mock
+    private FriendRepository friendRepository;
+
+    @Mock
+    private PostsRepository postsRepository;
+
+    @Mock
+    private IUserRepository userRepository;
+
+    @InjectMocks
+    private TimelineServiceImpl timelineService;
+
+    private UUID authorId;
+
+    @BeforeEach
+    void setUp() {
+        authorId = UUID.randomUUID();
+        ReflectionTestUtils.setField(timelineService, "maxFanOutFriends", 2L);
+        ReflectionTestUtils.setField(timelineService, "backfillSize", 20);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fanOutPost_FewFriends_WritesAuthorAndFriendTimelines() {
+        // Arrange
+        UUID friendA = UUID.randomUUID();
+        UUID friendB = UUID.randomUUID();
+        when(friendRepository.findFriendIds(authorId)).thenReturn(List.of(friendA, friendB));
+
+        // Act
+        timelineService.fanOutPost(post(authorId, 1000));
+
+        // Assert
+        ArgumentCaptor<List<Timeline_entries>> captor = ArgumentCaptor.forClass(List.class);
+        verify(timelineEntriesRepository).saveAll(captor.capture());
+        Set<UUID> recipients = new HashSet<>();
+        captor.getValue().forEach(e -> recipients.add(e.getUserId()));
+        assertEquals(Set.of(authorId, friendA, friendB), recipients);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fanOutPost_TooManyFriends_OnlyWritesAuthorTimeline() {
+        // Arrange
+        when(friendRepository.findFriendIds(authorId))
+                .thenReturn(List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()));
+
+        // Act
+        timelineService.fanOutPost(post(authorId, 1000));
+
+        // Assert
+        ArgumentCaptor<List<Timeline_entries>> captor = ArgumentCaptor.forClass(List.class);
+        verify(timelineEntriesRepository).saveAll(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(authorId, captor.getValue().get(0).getUserId());
+    }
+
+    @Test
+    void getTimeline_WithHighFanOutFriend_MergesPulledPostsNewestFirst() {
+        // Arrange
+        UUID readerId = UUID.randomUUID();
+        UUID celebrityId = UUID.randomUUID();
+        Posts older = post(authorId, 1000);
+        Posts newer = post(celebrityId, 2000);
+
+        Timeline_entries entry = new Timeline_entries();
+        entry.setUserId(readerId);
+        entry.setPostId(older.getId());
+        entry.setAuthorId(authorId);
+        entry.setCreatedAt(older.getCreatedAt());
+
+        when(friendRepository.findFriendIdsWithFriendCountAbove(eq(readerId), anyLong())).thenReturn(List.of(celebrityId));
+        when(timelineEntriesRepository.findByUserIdOrderByCreatedAtDescPostIdDesc(eq(readerId), any()))
+                .thenReturn(List.of(entry));
+        when(postsRepository.findRecentByUserIdIn(eq(List.of(celebrityId)), any())).thenReturn(List.of(newer));
+        when(postsRepository.findAllById(any())).thenReturn(List.of(older, newer));
+
+        // Act
+        List<Posts> result = timelineService.getTimeline(readerId, 0, 10);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(newer.getId(), result.get(0).getId());
+        assertEquals(older.getId(), result.get(1).getId());
+    }
+
+    @Test
+    void getTimeline_WithHighFanOutFriendPastMergeCap_ReturnsEmptyWithoutQuerying() {
+        // Arrange: page 100 x size 50 vượt MAX_MERGE_ROWS
+        UUID readerId = UUID.randomUUID();
+        when(friendRepository.findFriendIdsWithFriendCountAbove(eq(readerId), anyLong()))
+                .thenReturn(List.of(UUID.randomUUID()));
+
+        // Act
+        List<Posts> result = timelineService.getTimeline(readerId, 100, 50);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(timelineEntriesRepository, postsRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onFriendshipRemoved_AuthorDropsBelowThreshold_BackfillsFriendTimelines() {
+        // Arrange: author từ 3 bạn (vượt ngưỡng 2) xuống 2 bạn
+        UUID exFriendId = UUID.randomUUID();
+        UUID friendA = UUID.randomUUID();
+        UUID friendB = UUID.randomUUID();
+        Posts recent = post(authorId, 1000);
+        when(userRepository.findFriendCount(authorId)).thenReturn(2L);
+        when(userRepository.findFriendCount(exFriendId)).thenReturn(0L);
+        when(postsRepository.findRecentByUserIdIn(eq(List.of(authorId)), any())).thenReturn(List.of(recent));
+        when(friendRepository.findFriendIds(authorId)).thenReturn(List.of(friendA, friendB));
+        when(timelineEntriesRepository.findPostIdsByUserIdAndPostIdIn(eq(friendA), any())).thenReturn(List.of());
+        when(timelineEntriesRepository.findPostIdsByUserIdAndPostIdIn(eq(friendB), any()))
+                .thenReturn(List.of(recent.getId()));
+
+        // Act
+        timelineService.onFriendshipRemoved(authorId, exFriendId, 1);
+
+        // Assert: friendA nhận post, friendB đã có nên không ghi trùng
+        ArgumentCaptor<List<Timeline_entries>> captor = ArgumentCaptor.forClass(List.class);
+        verify(timelineEntriesRepository, times(2)).saveAll(captor.capture());
+        List<Timeline_entries> written = new ArrayList<>();
+        captor.getAllValues().forEach(written::addAll);
+        assertEquals(1, written.size());
+        assertEquals(friendA, written.get(0).getUserId());
+        assertEquals(recent.getId(), written.get(0).getPostId());
+    }
+
+    @Test
+    void onFriendshipRemoved_StillAboveThreshold_DoesNotBackfill() {
+        // Arrange
+        UUID exFriendId = UUID.randomUUID();
+        when(userRepository.findFriendCount(authorId)).thenReturn(5L);
+        when(userRepository.findFriendCount(exFriendId)).thenReturn(0L);
+
+        // Act
+        timelineService.onFriendshipRemoved(authorId, exFriendId, 1);
+
+        // Assert
+        verifyNoInteractions(postsRepository);
+        verify(timelineEntriesRepository, never()).saveAll(any());
+    }
+
+    private Posts post(UUID userId, long createdAt) {
+        Posts post = new Posts();
+        post.setId(UUID.randomUUID());
+        post.setUserId(userId);
+        post.setCreatedAt(new Date(createdAt));
+        return post;
+    }
+}
@@ -0,0 +1,65 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.model.Token_revocations;
+import com.data.db_instagram.repository.TokenRevocationsRepository;
+import com.data.db_instagram.services.impl.InMemoryTokenRevocationChannel;
+import com.data.db_instagram.services.impl.TokenRevocationServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationServiceTest {
+
+    private TokenRevocationsRepository repository;
+    private InMemoryTokenRevocationChannel channel;
+    private TokenRevocationServiceImpl revocationService;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(TokenRevocationsRepository.class);
+        when(repository.findById(any())).thenReturn(Optional.empty());
+        channel = new InMemoryTokenRevocationChannel();
+        revocationService = new TokenRevocationServiceImpl(repository, channel, new SimpleMeterRegistry(), 3600);
+        userId = UUID.randomUUID();
+    }
+
+    @Test
+    void revokeAccessTokens_PersistsWatermarkAndRejectsOlderTokens() {
+        // Arrange
+        Date issuedBefore = new Date();
+
+        // Act
+        revocationService.revokeAccessTokens(userId);
+
+        // Assert: token cùng giây với lệnh thu hồi cũng bị chặn, token phát hành sau watermark thì không
+        ArgumentCaptor<Token_revocations> saved = ArgumentCaptor.forClass(Token_revocations.class);
+        verify(repository).save(saved.capture());
+        Date revokedBefore = saved.getValue().getRevokedBefore();
+        assertEquals(0, revokedBefore.getTime() % 1000);
+        assertTrue(revocationService.isRevoked(userId, issuedBefore));
+        assertTrue(revocationService.isRevoked(userId, null));
+        assertFalse(revocationService.isRevoked(userId, revokedBefore));
+        assertFalse(revocationService.isRevoked(UUID.randomUUID(), issuedBefore));
+    }
+
+    @Test
+    void onRevoked_OutOfOrderDelivery_KeepsHighestWatermark() {
+        // Act: node khác gửi watermark mới rồi bản cũ tới muộn
+        channel.publish(userId, 20_000);
+        channel.publish(userId, 10_000);
+
+        // Assert
+        assertTrue(revocationService.isRevoked(userId, new Date(15_000)));
+        assertFalse(revocationService.isRevoked(userId, new Date(20_000)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.data.db_instagram.services;
+
+import com.data.db_instagram.dto.response.UserInfo;
+import com.data.db_instagram.mapper.UserMapper;
+import com.data.db_instagram.model.Profiles;
+import com.data.db_instagram.model.Users;
+import com.data.db_instagram.repository.IUserRepository;
+import com.data.db_instagram.repository.ProfilesRepository;
+import com.data.db_instagram.services.impl.UserInfoCacheImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserInfoCacheTest {
+
+    @Mock
+    private IUserRepository userRepository;
+
+    @Mock
+    private ProfilesRepository profilesRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserInfoCacheImpl userInfoCache;
+    private Users user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userInfoCache = new UserInfoCacheImpl(userRepository, profilesRepository, new UserMapper(), meterRegistry, 100, 60);
+
+        user = new Users();
+        user.setId(UUID.randomUUID());
+        user.setEmail("cached@example.com");
+        Profiles profile = new Profiles();
+        profile.setUser_id(user.getId());
+        profile.setFull_name("Cached User");
+
+        when(userRepository.findAllById(anyIterable())).thenReturn(List.of(user));
+        when(profilesRepository.findByUserIdIn(any())).thenReturn(List.of(profile));
+    }
+
+    @Test
+    void getAll_SecondCall_ServedFromCacheAndMissingUsersSkipped() {
+        // Arrange
+        UUID missingId = UUID.randomUUID();
+
+        // Act
+        Map<UUID, UserInfo> first = userInfoCache.getAll(List.of(user.getId(), missingId));
+        UserInfo second = userInfoCache.get(user.getId());
+
+        // Assert
+        assertEquals(1, first.size());
+        assertEquals("Cached User", first.get(user.getId()).getProfile().getFullName());
+        assertSame(first.get(user.getId()), second);
+        verify(userRepository, times(1)).findAllById(anyIterable());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "userInfo").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void invalidate_ReloadsOnNextGet() {
+        // Act
+        userInfoCache.get(user.getId());
+        userInfoCache.invalidate(user.getId());
+        userInfoCache.get(user.getId());
+
+        // Assert
+        verify(userRepository, times(2)).findAllById(anyIterable());
+    }
+}
@@ -32,6 +32,9 @@ class UserServiceTest {
     @Mock
     private ProfilesRepository profilesRepository;
 
+    @Mock
+    private UserInfoCache userInfoCache;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -107,6 +110,7 @@ class UserServiceTest {
         assertNotNull(result);
         assertEquals("Updated Name", result.getProfile().getFullName());
         verify(profilesRepository).save(any(Profiles.class));
+        verify(userInfoCache).invalidate(userId);
     }
 
     @Test
@@ -0,0 +1,50 @@
+package com.data.db_instagram.utils;
+
+import com.data.db_instagram.exception.HttpBadRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void encodeDecode_RoundTrip_KeepsAllFields() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        Date createdAt = new Date(1700000000123L);
+
+        // Act
+        PageCursor decoded = PageCursor.decode(new PageCursor("timeline", createdAt, id).encode());
+
+        // Assert
+        assertEquals("timeline", decoded.getSource());
+        assertEquals(createdAt, decoded.getCreatedAt());
+        assertEquals(id, decoded.getId());
+    }
+
+    @Test
+    void decode_BlankCursor_ReturnsNull() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+    }
+
+    @Test
+    void decode_GarbageCursor_ThrowsBadRequest() {
+        assertThrows(HttpBadRequest.class, () -> PageCursor.decode("not-a-cursor"));
+    }
+
+    @Test
+    void compareNewestFirst_SameTime_OrdersByIdDescending() {
+        // Arrange
+        Date now = new Date();
+        UUID low = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID high = UUID.fromString("ffffffff-0000-0000-0000-000000000001");
+
+        // Act & Assert
+        assertTrue(PageCursor.compareNewestFirst(now, high, now, low) < 0);
+        assertTrue(PageCursor.compareNewestFirst(new Date(now.getTime() + 1), low, now, high) < 0);
+    }
+}